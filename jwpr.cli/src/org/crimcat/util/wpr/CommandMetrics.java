@@ -0,0 +1,269 @@
+/*
+    (Java) Weekly Plans and Reports - simple and handy todo planning tool.
+
+    Copyright (C) 2011-2014  Stas Torgashov
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+/* File:    CommandMetrics.java
+ * Author:  Stas Torgashov aka Crimson Cat (crimcat@yandex.ru)
+ * Created: 2026, October 19
+ */
+package org.crimcat.util.wpr;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Per command metrics: latency histogram, number of errors and number of
+ * weeks data bytes read and written. Histogram has fixed buckets of power
+ * of two microseconds, so recording is a few arithmetic operations on a
+ * preallocated array. Metrics are exported in Prometheus text format: to
+ * a file which is merged with the metrics of previous runs (all values are
+ * counters, so they are summed) and on a local HTTP endpoint.
+ * @author Stas Torgashov
+ */
+public class CommandMetrics {
+
+    /**
+     * Metric families names.
+     */
+    private static final String DURATION = "wpr_command_duration_seconds";
+    private static final String ERRORS = "wpr_command_errors_total";
+    private static final String READ_BYTES = "wpr_command_read_bytes_total";
+    private static final String WRITTEN_BYTES = "wpr_command_written_bytes_total";
+
+    /**
+     * Help and type lines of the metric families in the output order.
+     */
+    private static final String[][] FAMILIES = {
+        { DURATION, "histogram", "Command execution time including weekly loading." },
+        { ERRORS, "counter", "Errors reported by commands." },
+        { READ_BYTES, "counter", "Weeks data bytes read by commands." },
+        { WRITTEN_BYTES, "counter", "Weeks data bytes written by commands." },
+    };
+
+    /**
+     * Number of histogram buckets: upper bounds are 2^0 ... 2^26 microseconds
+     * (about 67 seconds), the last bucket is unbounded.
+     */
+    private static final int BUCKETS = 28;
+
+    /**
+     * Record one command execution.
+     * @param command command name
+     * @param nanos execution time
+     * @param errors number of errors reported by the command
+     * @param bytesRead weeks data bytes read
+     * @param bytesWritten weeks data bytes written
+     */
+    public synchronized void record(String command, long nanos, int errors, long bytesRead, long bytesWritten) {
+        Counters c = commands.get(command);
+        if(null == c) {
+            c = new Counters();
+            commands.put(command, c);
+        }
+        long micros = Math.max(0, nanos) / 1000;
+        int bucket = (micros <= 1) ? 0 : 64 - Long.numberOfLeadingZeros(micros - 1);
+        ++c.buckets[Math.min(bucket, BUCKETS - 1)];
+        c.nanos += nanos;
+        c.errors += errors;
+        c.bytesRead += bytesRead;
+        c.bytesWritten += bytesWritten;
+    }
+
+    /**
+     * Get metrics in Prometheus text exposition format.
+     * @return metrics text
+     */
+    public synchronized String toText() {
+        return format(series());
+    }
+
+    /**
+     * Add metrics to the file. Values already stored in the file are added
+     * to the current ones, the file is replaced atomically, concurrent
+     * writers wait for each other.
+     * @param file metrics file
+     * @throws IOException
+     */
+    public synchronized void mergeInto(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path lockFile = Paths.get(file.toString() + ".lock");
+        try(FileChannel ch = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            FileLock lock = ch.lock();
+            try {
+                Map<String, Map<String, Double>> merged = new LinkedHashMap<>();
+                if(Files.exists(file)) {
+                    try(BufferedReader br = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                        String line;
+                        while(null != (line = br.readLine())) {
+                            int sep = line.lastIndexOf(' ');
+                            String family = familyOf(line);
+                            if(line.startsWith("#") || (sep < 0) || (null == family)) {
+                                continue;
+                            }
+                            try {
+                                add(merged, family, line.substring(0, sep), Double.parseDouble(line.substring(sep + 1)));
+                            } catch(NumberFormatException ex) { }
+                        }
+                    }
+                }
+                for(Map.Entry<String, Map<String, Double>> f : series().entrySet()) {
+                    for(Map.Entry<String, Double> e : f.getValue().entrySet()) {
+                        add(merged, f.getKey(), e.getKey(), e.getValue());
+                    }
+                }
+                Path tmp = Files.createTempFile(parent, ".metrics", ".tmp");
+                try {
+                    Files.write(tmp, format(merged).getBytes(StandardCharsets.UTF_8));
+                    Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } finally {
+                    Files.deleteIfExists(tmp);
+                }
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    /**
+     * Start HTTP endpoint serving metrics on <code>/metrics</code> of the
+     * loopback interface. It's served by a daemon thread.
+     * @param port port number
+     * @return started server, it's stopped by the caller
+     * @throws IOException
+     */
+    public HttpServer startEndpoint(int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/metrics", exchange -> {
+            byte[] body = toText().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try(OutputStream os = exchange.getResponseBody()) {
+                os.write(body);
+            }
+        });
+        server.setExecutor(runnable -> {
+            Thread t = new Thread(runnable, "wpr-metrics");
+            t.setDaemon(true);
+            t.start();
+        });
+        server.start();
+        return server;
+    }
+
+    /**
+     * Get current metrics as series values grouped by families.
+     * @return map of families to maps of series names to values
+     */
+    private Map<String, Map<String, Double>> series() {
+        Map<String, Map<String, Double>> result = new LinkedHashMap<>();
+        for(Map.Entry<String, Counters> e : commands.entrySet()) {
+            String label = "command=\"" + e.getKey().replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+            Counters c = e.getValue();
+            long cumulative = 0;
+            for(int i = 0; i < BUCKETS; ++i) {
+                cumulative += c.buckets[i];
+                String le = (BUCKETS - 1 == i) ? "+Inf" : formatValue((1L << i) / 1e6);
+                add(result, DURATION, DURATION + "_bucket{" + label + ",le=\"" + le + "\"}", cumulative);
+            }
+            add(result, DURATION, DURATION + "_sum{" + label + "}", c.nanos / 1e9);
+            add(result, DURATION, DURATION + "_count{" + label + "}", cumulative);
+            add(result, ERRORS, ERRORS + "{" + label + "}", c.errors);
+            add(result, READ_BYTES, READ_BYTES + "{" + label + "}", c.bytesRead);
+            add(result, WRITTEN_BYTES, WRITTEN_BYTES + "{" + label + "}", c.bytesWritten);
+        }
+        return result;
+    }
+
+    /**
+     * Format series in the exposition format.
+     * @param series map of families to maps of series names to values
+     * @return metrics text
+     */
+    private static String format(Map<String, Map<String, Double>> series) {
+        StringBuilder sb = new StringBuilder();
+        for(String[] family : FAMILIES) {
+            Map<String, Double> values = series.get(family[0]);
+            if(null == values) {
+                continue;
+            }
+            sb.append("# HELP ").append(family[0]).append(' ').append(family[2]).append('\n');
+            sb.append("# TYPE ").append(family[0]).append(' ').append(family[1]).append('\n');
+            for(Map.Entry<String, Double> e : values.entrySet()) {
+                sb.append(e.getKey()).append(' ').append(formatValue(e.getValue())).append('\n');
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Get family of the series line.
+     * @param line series line
+     * @return family name or null if it's not one of known families
+     */
+    private static String familyOf(String line) {
+        for(String[] family : FAMILIES) {
+            if(line.startsWith(family[0] + "{") || line.startsWith(family[0] + "_")) {
+                return family[0];
+            }
+        }
+        return null;
+    }
+
+    private static void add(Map<String, Map<String, Double>> series, String family, String name, double value) {
+        series.computeIfAbsent(family, k -> new LinkedHashMap<>()).merge(name, value, Double::sum);
+    }
+
+    private static String formatValue(double v) {
+        if((v == Math.rint(v)) && (Math.abs(v) < 1e15)) {
+            return Long.toString((long)v);
+        }
+        return Double.toString(v);
+    }
+
+    /**
+     * Counters of one command.
+     */
+    private static final class Counters {
+        final long[] buckets = new long[BUCKETS];
+        long nanos = 0;
+        long errors = 0;
+        long bytesRead = 0;
+        long bytesWritten = 0;
+    }
+
+    /**
+     * Counters by command names.
+     */
+    private final Map<String, Counters> commands = new TreeMap<>();
+}
@@ -62,6 +62,15 @@ public class DistanceDictionary {
         return nearest;
     }
     
+    /**
+     * Check if the word is in the dictionary.
+     * @param word to check
+     * @return true if the dictionary has exactly this word
+     */
+    public boolean contains(String word) {
+        return words.contains(word);
+    }
+    
     private final List<String> words;
     private final WordsDistanceCalculators.ICalculator distCalc;
 }
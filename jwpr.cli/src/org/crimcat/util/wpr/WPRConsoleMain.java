@@ -24,15 +24,45 @@
 
 package org.crimcat.util.wpr;
 
+import com.sun.net.httpserver.HttpServer;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
 import org.crimcat.lib.wpr.AppDatabase;
-
+import org.crimcat.lib.wpr.ChecksumException;
+import org.crimcat.lib.wpr.DatabaseBackup;
+import org.crimcat.lib.wpr.DatabaseExport;
+import org.crimcat.lib.wpr.DatabaseSync;
+import org.crimcat.lib.wpr.DatabaseVerifier;
+import org.crimcat.lib.wpr.PeriodRollups;
 import org.crimcat.lib.wpr.TaskDate;
+import org.crimcat.lib.wpr.TaskEntry;
+import org.crimcat.lib.wpr.TaskFilter;
+import org.crimcat.lib.wpr.TaskLineage;
+import org.crimcat.lib.wpr.TaskQuery;
 import org.crimcat.lib.wpr.TodoTask;
+import org.crimcat.lib.wpr.WeekKey;
+import org.crimcat.lib.wpr.WeekPrefetcher;
 import org.crimcat.lib.wpr.Weekly;
+import org.crimcat.lib.wpr.WeeklyColumns;
 import org.crimcat.lib.wpr.TaskDate.WeekDay;
 
 /**
@@ -50,28 +80,31 @@ public class WPRConsoleMain {
             System.err.println("No commands specified.");
             System.err.println("Run with help command to see help information.");
         } else {
-            AppDatabase.Configuration configuration = AppDatabase.getAppConfig();
-            opt_verbose = configuration.doVerboseOuput();
-            opt_do_copy_on_mondays = configuration.doCopyFromThePastOnMondays();
-            
-            List<String> argList = Arrays.asList(args);
+            List<String> argList = new ArrayList<>(Arrays.asList(args));
             if(readOptions(argList)) {
                 if(validateOptions()) {
-                    try {
-                        Weekly weekly = opt_groups
-                            ? new Weekly(selectedDate, groupName)
-                            : new Weekly(selectedDate);
-                        if(opt_do_copy_on_mondays) {
-                            if(weekly.isEditable() && (0 == weekly.size()) &&
-                               (TaskDate.WeekDay.MONDAY == selectedDate.weekDay())) {
-                                info("Info: copying items from previous week.");
-                                processCmdCopyFromThePast(weekly);
-                            }
+                    if(argList.isEmpty()) {
+                        System.err.println("No commands specified.");
+                    } else if(CMD_BATCH.equals(argList.get(0))) {
+                        argList.remove(0);
+                        processCmdBatch(argList);
+                        exportMetrics();
+                    } else {
+                        Measurement m = new Measurement(argList.get(0));
+                        try {
+                            Set<Weekly.Part> parts = requiredParts(argList.get(0));
+                            readAndExecuteCommand(argList, (null == parts) ? null : openWeekly(argList.get(0), parts));
+                        } catch(IOException ex) {
+                            m.failed();
+                            System.err.println("Error: cannot open or process weekly database.");
+                            System.err.println(ex.toString());
+                        } catch(RuntimeException ex) {
+                            m.failed();
+                            throw ex;
+                        } finally {
+                            m.finish();
+                            exportMetrics();
                         }
-                        readAndExecuteCommand(argList, weekly);
-                    } catch(IOException ex) {
-                        System.err.println("Error: cannot open or process weekly database.");
-                        System.err.println(ex.toString());
                     }
                 }
             } else {
@@ -80,46 +113,101 @@ public class WPRConsoleMain {
         }
     }
 
+    /**
+     * Open weekly for the currently selected date and group. If automatic
+     * copy on Mondays is on and the week is still empty, uncompleted tasks
+     * are copied from the previous week. For copy command the previous week
+     * is loaded in the background meanwhile, automatic copy loads it only
+     * when the current week turns out to be empty. In batch mode neighbour
+     * weeks are loaded in the background for next lines.
+     * @param cmd command name
+     * @param parts weekly parts to load immediately, others are loaded on demand
+     * @return loaded weekly object
+     * @throws IOException 
+     */
+    private static Weekly openWeekly(String cmd, Set<Weekly.Part> parts) throws IOException {
+        WeekKey key = new WeekKey(opt_groups ? groupName : null, selectedDate);
+        if(CMD_COPY_FROM_THE_PAST.equals(cmd)) {
+            prefetcher().prefetch(new WeekKey(key.group(), key.monday().shift(-7)));
+        }
+        Weekly weekly;
+        if(opt_batch) {
+            weekly = prefetcher().take(key, parts);
+            prefetcher().prefetchAround(key);
+        } else {
+            weekly = new Weekly(selectedDate, key.group(), parts);
+        }
+        if(weekly.damagedRecords() > 0) {
+            warning("Warning: " + weekly.damagedRecords() + " damaged records of the week are skipped, use " +
+                CMD_VERIFY + " command to repair them.");
+        }
+        if((TaskDate.WeekDay.MONDAY == selectedDate.weekDay()) && weekly.isEditable() &&
+           AppDatabase.getAppConfig().doCopyFromThePastOnMondays() && (0 == weekly.size())) {
+            info("Info: copying items from previous week.");
+            processCmdCopyFromThePast(weekly);
+        }
+        return weekly;
+    }
+
+    /**
+     * Get prefetcher of weeks, it's created on first use.
+     * @return prefetcher object
+     */
+    private static WeekPrefetcher prefetcher() {
+        if(null == weekPrefetcher) {
+            weekPrefetcher = new WeekPrefetcher();
+        }
+        return weekPrefetcher;
+    }
+
     /**
      * Read and store command line options if any.
      * @param args list with command line arguments (the list is modified - recognized options are extracted)
      * @return true if there were no errors processing command line option
      */
     private static boolean readOptions(List<String> args) {
-        for(String arg : args) {
-            if(arg.charAt(0) == '-') {
-                switch(args.remove(0)) {
-                    case OPT_DBDIR:
-                        if(0 == args.size()) return false;
-                        if(!AppDatabase.setDefaultAppDatabasePath(args.remove(0))) {
-                            System.err.println("Error: cannot use provided database path in " + OPT_DBDIR + " option.");
-                            return false;
-                        }
-                        break;
-                    case OPT_GROUP_SEL:
-                        if(0 == args.size()) return false;
-                        opt_groups = true;
-                        groupName = args.remove(0);
-                        break;
-                    case OPT_PREVIOUS_WEEK:
-                        opt_prev_week = true;
-                        selectedDate.shiftToWeekDay(WeekDay.MONDAY).shift(-1);
-                        break;
-                    case OPT_SETDATE:
-                        if(0 == args.size()) return false;
-                        opt_date_selection = true;
-                        if(!selectedDate.fromString(args.remove(0))) {
-                            System.err.println("Error: cannot parse date for " + OPT_SETDATE + " option.");
-                            return false;
-                        }
-                        break;
-                    case OPT_VERBOSE:
-                        opt_verbose = true;
-                        break;
-                    default:
+        while(!args.isEmpty() && !args.get(0).isEmpty() && (args.get(0).charAt(0) == '-')) {
+            switch(args.remove(0)) {
+                case OPT_DBDIR:
+                    if(0 == args.size()) return false;
+                    if(opt_batch) {
+                        // loaded weeklies, configuration and metrics belong to one database
+                        System.err.println("Error: " + OPT_DBDIR + " option cannot be used in " + CMD_BATCH + " lines.");
                         return false;
-                }
-            } else break;
+                    }
+                    if(!AppDatabase.setDefaultAppDatabasePath(args.remove(0))) {
+                        System.err.println("Error: cannot use provided database path in " + OPT_DBDIR + " option.");
+                        return false;
+                    }
+                    break;
+                case OPT_GROUP_SEL:
+                    if(0 == args.size()) return false;
+                    opt_groups = true;
+                    groupName = args.remove(0);
+                    break;
+                case OPT_PREVIOUS_WEEK:
+                    opt_prev_week = true;
+                    selectedDate = selectedDate.shiftToWeekDay(WeekDay.MONDAY).shift(-1);
+                    break;
+                case OPT_SETDATE:
+                    if(0 == args.size()) return false;
+                    opt_date_selection = true;
+                    if(!selectedDate.fromString(args.remove(0))) {
+                        System.err.println("Error: cannot parse date for " + OPT_SETDATE + " option.");
+                        return false;
+                    }
+                    break;
+                case OPT_VERBOSE:
+                    opt_verbose = true;
+                    break;
+                case CMD_HELP_CANONICAL:
+                case CMD_HELP_CANINOCAL_LONG:
+                    // help command looks like an option, leave it for the command parser
+                    args.add(0, CMD_HELP);
+                    return true;
+                default:
+                    return false;
+            }
         }
         return true;
     }
@@ -140,7 +228,8 @@ public class WPRConsoleMain {
      * Read command from the command line, parse it and its parameters and
      * execute if we can.
      * @param args list with remaining part of the command line (list is modified - parsed elements are extracted)
-     * @param weekly loaded weekly object to apply command on
+     * @param weekly loaded weekly object to apply command on, null for commands
+     * which do not need a weekly (see @see requiredParts)
      * @throws IOException 
      */
     private static void readAndExecuteCommand(List<String> args, Weekly weekly) throws IOException {
@@ -185,9 +274,45 @@ public class WPRConsoleMain {
             case CMD_WEEKLY:
                 processCmdWeekly(weekly);
                 break;
+            case CMD_PACK:
+                processCmdPack(args);
+                break;
+            case CMD_BACKUP:
+                processCmdBackup(args);
+                break;
+            case CMD_RESTORE:
+                processCmdRestore(args);
+                break;
+            case CMD_VERIFY:
+                processCmdVerify(args);
+                break;
+            case CMD_SYNC:
+                processCmdSync(args);
+                break;
+            case CMD_QUERY:
+                processCmdQuery(args);
+                break;
+            case CMD_AGES:
+                processCmdAges(args);
+                break;
+            case CMD_FIND:
+                processCmdFind(args);
+                break;
+            case CMD_ROLLUPS:
+                processCmdRollups(args);
+                break;
+            case CMD_EXPORT:
+                processCmdExport(args);
+                break;
+            case CMD_BATCH:
+                error("Error: " + CMD_BATCH + " command cannot be nested.");
+                break;
+            case CMD_COMMIT:
+                error("Error: " + CMD_COMMIT + " command is allowed only in " + CMD_BATCH + " mode.");
+                break;
             default: {
-                System.err.println("Unknown command: \'" + expectedCmd + "\'.");
-                String possibleCmd = distanceDict.findNearest(expectedCmd);
+                error("Unknown command: \'" + expectedCmd + "\'.");
+                String possibleCmd = DistanceDictionaryHolder.distanceDict.findNearest(expectedCmd);
                 if(possibleCmd != null) {
                     System.err.println("Did you mean \'" + possibleCmd + "\'?");
                 }
@@ -196,6 +321,30 @@ public class WPRConsoleMain {
         }
     }
 
+    /**
+     * Get weekly parts the command needs to be loaded.
+     * @param cmd command name
+     * @return set of weekly parts or null if the command does not use weekly
+     */
+    private static Set<Weekly.Part> requiredParts(String cmd) {
+        switch(cmd) {
+            case CMD_ADD:
+            case CMD_SETMEMO:
+                return EnumSet.noneOf(Weekly.Part.class);
+            case CMD_COMPLETE:
+            case CMD_COPY_FROM_THE_PAST:
+            case CMD_DAILY:
+            case CMD_SUMMARY:
+            case CMD_TODAY:
+            case CMD_WEEKLY:
+                return EnumSet.of(Weekly.Part.TASKS);
+            case CMD_MEMO:
+                return EnumSet.of(Weekly.Part.MEMO);
+            default:
+                return null;
+        }
+    }
+
     /**
      * Print week header: week number, Monday date and Sunday date.
      * @param w weekly object
@@ -232,7 +381,7 @@ public class WPRConsoleMain {
      * @param tt todo task object
      */
     private static void printTodoTaskHeadLineWithId(int id, TodoTask tt) {
-        System.out.println(String.format("\t= (id:%3d) %s", id, tt.title()));
+        System.out.println("\t= (id:" + padLeft(id, 3) + ") " + tt.title());
     }
 
     /**
@@ -242,7 +391,22 @@ public class WPRConsoleMain {
      * @param tt todo task object
      */
     private static void printTodoTaskItemNoStatus(int itemNo, TodoTask tt) {
-        System.out.println(String.format("[%s] (id:%3d) %s", tt.originatedOn(), itemNo, tt.title()));
+        System.out.println("[" + tt.originatedOn() + "] (id:" + padLeft(itemNo, 3) + ") " + tt.title());
+    }
+
+    /**
+     * Convert number to string padded with spaces on the left, the same as
+     * "%Nd" format does without loading formatter classes.
+     * @param number number to convert
+     * @param width minimum string width
+     * @return padded string
+     */
+    private static String padLeft(long number, int width) {
+        StringBuilder sb = new StringBuilder(Long.toString(number));
+        while(sb.length() < width) {
+            sb.insert(0, ' ');
+        }
+        return sb.toString();
     }
 
     /**
@@ -261,26 +425,53 @@ public class WPRConsoleMain {
     private static final String CMD_SETMEMO = "set-memo";
     private static final String CMD_GROUPS = "groups";
     private static final String CMD_COPY_FROM_THE_PAST = "copy-from-the-past";
+    private static final String CMD_PACK = "pack";
+    private static final String CMD_BACKUP = "backup";
+    private static final String CMD_RESTORE = "restore";
+    private static final String CMD_VERIFY = "verify";
+    private static final String CMD_SYNC = "sync";
+    private static final String CMD_QUERY = "query";
+    private static final String CMD_AGES = "ages";
+    private static final String CMD_FIND = "find";
+    private static final String CMD_ROLLUPS = "rollups";
+    private static final String CMD_EXPORT = "export";
+    private static final String CMD_BATCH = "batch";
+    private static final String CMD_COMMIT = "commit";
     
     /**
-     * Distance dictionary made of application commands.
-     */
-    private static final DistanceDictionary distanceDict = new DistanceDictionary(
-        new String[] {
-            CMD_HELP,
-            CMD_TODAY,
-            CMD_DAILY,
-            CMD_WEEKLY,
-            CMD_ADD,
-            CMD_COMPLETE,
-            CMD_SUMMARY,
-            CMD_MEMO,
-            CMD_SETMEMO,
-            CMD_GROUPS,
-            CMD_COPY_FROM_THE_PAST
-        },
-        WordsDistanceCalculators.LEVENSTEIN
-    );
+     * Distance dictionary made of application commands. It's needed only
+     * for unknown commands, so it's created on first use.
+     */
+    private static final class DistanceDictionaryHolder {
+        static final DistanceDictionary distanceDict = new DistanceDictionary(
+            new String[] {
+                CMD_HELP,
+                CMD_TODAY,
+                CMD_DAILY,
+                CMD_WEEKLY,
+                CMD_ADD,
+                CMD_COMPLETE,
+                CMD_SUMMARY,
+                CMD_MEMO,
+                CMD_SETMEMO,
+                CMD_GROUPS,
+                CMD_COPY_FROM_THE_PAST,
+                CMD_PACK,
+                CMD_BACKUP,
+                CMD_RESTORE,
+                CMD_VERIFY,
+                CMD_SYNC,
+                CMD_QUERY,
+                CMD_AGES,
+                CMD_FIND,
+                CMD_ROLLUPS,
+                CMD_EXPORT,
+                CMD_BATCH,
+                CMD_COMMIT
+            },
+            WordsDistanceCalculators.LEVENSTEIN
+        );
+    }
 
     /**
      * Print help info: utility title and help information.
@@ -297,14 +488,14 @@ public class WPRConsoleMain {
      */
     private static void processCmdToday(Weekly w) {
         int cnt = 0;
-        for(int i = 0; i < w.size(); ++i) {
-            TodoTask tt = w.taskAt(i);
-            if(!tt.isCompleted() && tt.originatedOn().equals(selectedDate)) {
-                if(0 == cnt++) {
-                    System.out.println("Today ToDo on " + selectedDate.toString() + ":");
-                }
-                printTodoTaskItemNoStatus(i + 1, tt);
+        WeeklyColumns wc = w.columns();
+        BitSet found = wc.active();
+        found.and(wc.createdOn(selectedDate.epochDay()));
+        for(int i = found.nextSetBit(0); i >= 0; i = found.nextSetBit(i + 1)) {
+            if(0 == cnt++) {
+                System.out.println("Today ToDo on " + selectedDate.toString() + ":");
             }
+            printTodoTaskItemNoStatus(i + 1, w.taskAt(i));
         }
         if(0 == cnt) {
             info("No today plan on " + selectedDate.toString());
@@ -318,14 +509,14 @@ public class WPRConsoleMain {
      */
     private static void processCmdDaily(Weekly w) {
         int cnt = 0;
-        for(int i = 0; i < w.size(); ++i) {
-            TodoTask tt = w.taskAt(i);
-            if(!tt.isCompleted() && (tt.originatedOn().compare(selectedDate) <= 0)) {
-                if(0 == cnt++) {
-                    System.out.println("Daily ToDo up to " + selectedDate.toString() + ":");
-                }
-                printTodoTaskItemNoStatus(i + 1, tt);
+        WeeklyColumns wc = w.columns();
+        BitSet found = wc.active();
+        found.and(wc.createdBetween(Integer.MIN_VALUE, selectedDate.epochDay()));
+        for(int i = found.nextSetBit(0); i >= 0; i = found.nextSetBit(i + 1)) {
+            if(0 == cnt++) {
+                System.out.println("Daily ToDo up to " + selectedDate.toString() + ":");
             }
+            printTodoTaskItemNoStatus(i + 1, w.taskAt(i));
         }
         if(0 == cnt) {
             info("No tasks found up to " + selectedDate.toString());
@@ -357,13 +548,13 @@ public class WPRConsoleMain {
      */
     private static void processCmdAdd(Weekly w, List<String> args) throws IOException {
         if(!w.isEditable()) {
-            System.err.println("Error: can edit only current weekly plan.");
+            error("Error: can edit only current weekly plan.");
         } else {
             if(args.isEmpty()) {
-                System.err.println("Error: " + CMD_ADD + " command required task description.");
+                error("Error: " + CMD_ADD + " command required task description.");
             } else {
                 w.getEditor().addTask(args.remove(0));
-                w.sync();
+                syncWeekly(w);
             }
         }
     }
@@ -377,29 +568,29 @@ public class WPRConsoleMain {
      */
     private static void processCmdComplete(Weekly w, List<String> args) throws IOException {
         if(!w.isEditable()) {
-            System.err.println("Error: can edit only current weekly plan.");
+            error("Error: can edit only current weekly plan.");
         } else {
             if(args.isEmpty()) {
-                System.err.println("Error: " + CMD_COMPLETE + " operation requires task index number.");
+                error("Error: " + CMD_COMPLETE + " operation requires task index number.");
             } else {
                 String taskIdxStr = args.remove(0);
                 try {
                     int idx = Integer.parseInt(taskIdxStr);
                     if((idx <= 0) || (idx > w.size())) {
-                        System.err.println("Error: cannot identify a task with the index - " + taskIdxStr);
+                        error("Error: cannot identify a task with the index - " + taskIdxStr);
                     } else {
                         TodoTask task = w.taskAt(idx - 1);
                         if(task.isCompleted()) {
-                            System.err.println("Error: cannot complete already completed task " +
+                            error("Error: cannot complete already completed task " +
                                 "(id = " + idx + ")");
                         } else {
                             w.getEditor().markTaskCompleted(task);
                             info("Task with id = " + idx + " is completed.");
-                            w.sync();
+                            syncWeekly(w);
                         }
                     }
                 } catch(NumberFormatException nfe) {
-                    System.err.println("Error: " + CMD_COMPLETE + " command cannot parse index value of " + taskIdxStr);
+                    error("Error: " + CMD_COMPLETE + " command cannot parse index value of " + taskIdxStr);
                 }
             }
         }
@@ -412,29 +603,22 @@ public class WPRConsoleMain {
      */
     private static void processCmdSummary(Weekly w) {
         printWeekHeader(w);
-        int cnt = 0;
+        WeeklyColumns wc = w.columns();
+        BitSet found = wc.active();
         System.out.println("- List of open items:");
-        for(int i = 0; i < w.size(); ++i) {
-            TodoTask tt = w.taskAt(i);
-            if(!tt.isCompleted()) {
-                printTodoTaskHeadLineWithId(i + 1, tt);
-                ++cnt;
-            }
+        for(int i = found.nextSetBit(0); i >= 0; i = found.nextSetBit(i + 1)) {
+            printTodoTaskHeadLineWithId(i + 1, w.taskAt(i));
         }
-        if(0 == cnt) {
+        if(found.isEmpty()) {
             info("  No active tasks found.");
         }
         
-        cnt = 0;
+        found = wc.completed();
         System.out.println("- List of completed items:");
-        for(int i = 0; i < w.size(); ++i) {
-            TodoTask tt = w.taskAt(i);
-            if(tt.isCompleted()) {
-                printTodoTaskHeadline(tt);
-                ++cnt;
-            }
+        for(int i = found.nextSetBit(0); i >= 0; i = found.nextSetBit(i + 1)) {
+            printTodoTaskHeadline(w.taskAt(i));
         }
-        if(0 == cnt) {
+        if(found.isEmpty()) {
             info("\tNo completed tasks found.");
         }
     }
@@ -462,13 +646,13 @@ public class WPRConsoleMain {
      */
     private static void processCmdSetmemo(Weekly w, List<String> args) throws IOException {
         if(!w.isEditable()) {
-            System.err.println("Error: can edit only current weekly plan.");
+            error("Error: can edit only current weekly plan.");
         } else {
             if(args.size() == 0) {
-                System.err.println("Error: " + CMD_SETMEMO + " command needs argument of memo text.");
+                error("Error: " + CMD_SETMEMO + " command needs argument of memo text.");
             } else {
                 w.getEditor().setMemo(args.remove(0));
-                w.sync();
+                syncWeekly(w);
             }
         }
     }
@@ -481,7 +665,7 @@ public class WPRConsoleMain {
         File[] dbList = defaultDbDir.listFiles(
             (File item) -> item.isDirectory() && item.canRead() && item.canWrite()
         );
-        if(0 == dbList.length) {
+        if((null == dbList) || (0 == dbList.length)) {
             info("No groups found.");
         } else {
             for(File f : dbList) {
@@ -495,14 +679,15 @@ public class WPRConsoleMain {
      */
     private static void processCmdCopyFromThePast(Weekly thisWeek) throws IOException {
         if(thisWeek.size() != 0) {
-            System.err.println("Error: current week is not empty, copying from previous week is not possible.");
+            error("Error: current week is not empty, copying from previous week is not possible.");
         } else {
-            Weekly previousWeek = new Weekly(thisWeek.startedOn().shift(-7));
+            Weekly previousWeek = prefetcher().take(new WeekKey(thisWeek.group(), thisWeek.startedOn().shift(-7)),
+                EnumSet.of(Weekly.Part.TASKS));
             int cnt = 0;
             for(int i = 0; i < previousWeek.size(); ++i) {
                 TodoTask tt = previousWeek.taskAt(i);
                 if(!tt.isCompleted()) {
-                    thisWeek.getEditor().addTask(tt.title());
+                    thisWeek.getEditor().carryOver(tt);
                     ++cnt;
                 }
             }
@@ -510,8 +695,624 @@ public class WPRConsoleMain {
                 info("Warning: no unfinished tasks found, none is copied.");
             } else {
                 info("Info: " + cnt + " tasks were copied.");
-                thisWeek.sync();
+                syncWeekly(thisWeek);
+            }
+        }
+    }
+
+    /**
+     * Pack all weeks of the given past year of the selected group into one
+     * compressed file. Year is extracted from the command line parameters.
+     * @param args array of command line parameters
+     */
+    private static void processCmdPack(List<String> args) throws IOException {
+        if(args.isEmpty()) {
+            error("Error: " + CMD_PACK + " command requires year number.");
+        } else {
+            String yearStr = args.remove(0);
+            try {
+                int year = Integer.parseInt(yearStr);
+                int cnt = AppDatabase.packYear(opt_groups ? groupName : null, year);
+                if(0 == cnt) {
+                    info("Warning: no weeks of " + year + " found to pack.");
+                } else {
+                    info("Info: " + cnt + " weeks of " + year + " were packed.");
+                }
+            } catch(NumberFormatException nfe) {
+                error("Error: " + CMD_PACK + " command cannot parse year value of " + yearStr);
+            } catch(IllegalArgumentException ex) {
+                error("Error: " + CMD_PACK + " command: " + ex.getMessage() + ".");
+            } catch(ChecksumException ex) {
+                error("Error: damaged weeks found, nothing is packed.");
+            }
+        }
+    }
+
+    /**
+     * Make incremental backup of the database: only files bundles changed
+     * since the previous backup are copied. Backup directory is extracted
+     * from the command line parameters.
+     * @param args array of command line parameters
+     */
+    private static void processCmdBackup(List<String> args) throws IOException {
+        if(args.isEmpty()) {
+            error("Error: " + CMD_BACKUP + " command requires backup directory.");
+        } else {
+            DatabaseBackup backup = new DatabaseBackup(
+                AppDatabase.getDefaultAppDatabasePath(), Paths.get(args.remove(0)));
+            String id = backup.backup();
+            info("Info: snapshot " + id + " is created, " + backup.lastChangedCount() + " changed items copied.");
+        }
+    }
+
+    /**
+     * Restore the database from backup snapshot to an empty directory.
+     * Backup directory, snapshot id and target directory are extracted from
+     * the command line parameters.
+     * @param args array of command line parameters
+     */
+    private static void processCmdRestore(List<String> args) throws IOException {
+        if(args.size() < 3) {
+            error("Error: " + CMD_RESTORE + " command requires backup directory, snapshot id and target directory.");
+        } else {
+            DatabaseBackup backup = new DatabaseBackup(
+                AppDatabase.getDefaultAppDatabasePath(), Paths.get(args.remove(0)));
+            String id = args.remove(0);
+            backup.restore(id, Paths.get(args.remove(0)));
+            info("Info: snapshot " + id + " is restored.");
+        }
+    }
+
+    /**
+     * Verify all weeks of the selected group or of all groups and report
+     * problems found. Optional repair action is extracted from the command
+     * line parameters.
+     * @param args array of command line parameters
+     */
+    private static void processCmdVerify(List<String> args) throws IOException {
+        DatabaseVerifier.Repair repair = DatabaseVerifier.Repair.NONE;
+        if(!args.isEmpty()) {
+            String action = args.remove(0);
+            switch(action) {
+                case VERIFY_REBUILD_CHECKSUM:
+                    repair = DatabaseVerifier.Repair.REBUILD_CHECKSUM;
+                    break;
+                case VERIFY_DROP_DAMAGED:
+                    repair = DatabaseVerifier.Repair.DROP_DAMAGED_RECORDS;
+                    break;
+                case VERIFY_QUARANTINE:
+                    repair = DatabaseVerifier.Repair.QUARANTINE;
+                    break;
+                default:
+                    error("Error: unknown " + CMD_VERIFY + " action: " + action);
+                    return;
+            }
+        }
+        List<String> groups = new ArrayList<>();
+        if(opt_groups) {
+            groups.add(groupName);
+        } else {
+            groups.add(null);
+            groups.addAll(AppDatabase.listGroups());
+        }
+        DatabaseVerifier verifier = new DatabaseVerifier(AppDatabase.getDefaultAppDatabasePath(),
+            repair, 2 * Runtime.getRuntime().availableProcessors());
+        List<DatabaseVerifier.Problem> problems = verifier.verify(groups);
+        for(DatabaseVerifier.Problem p : problems) {
+            System.out.println(p);
+        }
+        info("Info: " + verifier.checkedCount() + " weeks checked, " + problems.size() + " problems found.");
+    }
+
+    /**
+     * Synchronize the database with another one. Another database directory
+     * is extracted from the command line parameters.
+     * @param args array of command line parameters
+     */
+    private static void processCmdSync(List<String> args) throws IOException {
+        if(args.isEmpty()) {
+            error("Error: " + CMD_SYNC + " command requires database directory.");
+        } else {
+            DatabaseSync.Result result = new DatabaseSync(
+                AppDatabase.getDefaultAppDatabasePath(), Paths.get(args.remove(0))).sync();
+            for(String conflict : result.conflicts()) {
+                System.out.println(conflict);
+            }
+            info("Info: " + result.copiedToLocal() + " items received, " + result.copiedToRemote() +
+                " items sent, " + result.merged() + " weeks merged, " + result.conflicts().size() + " conflicts.");
+        }
+    }
+
+    /**
+     * Print tasks created in the date range. Date range, optional status and
+     * optional group names are extracted from the command line parameters.
+     * Without group names the selected group or all groups are queried.
+     * @param args array of command line parameters
+     */
+    private static void processCmdQuery(List<String> args) throws IOException {
+        if(args.size() < 2) {
+            error("Error: " + CMD_QUERY + " command requires date range.");
+            return;
+        }
+        TaskDate[] range = new TaskDate[2];
+        for(int i = 0; i < range.length; ++i) {
+            String dateStr = args.remove(0);
+            if(!QUERY_OPEN_DATE.equals(dateStr)) {
+                range[i] = new TaskDate();
+                if(!range[i].fromString(dateStr)) {
+                    error("Error: cannot parse date for " + CMD_QUERY + " command: " + dateStr);
+                    return;
+                }
+            }
+        }
+        TaskQuery.Status status = TaskQuery.Status.ANY;
+        if(!args.isEmpty() && QUERY_ACTIVE.equals(args.get(0))) {
+            args.remove(0);
+            status = TaskQuery.Status.ACTIVE;
+        } else if(!args.isEmpty() && QUERY_COMPLETED.equals(args.get(0))) {
+            args.remove(0);
+            status = TaskQuery.Status.COMPLETED;
+        }
+        List<String> groups = new ArrayList<>();
+        if(opt_groups) {
+            groups.add(groupName);
+        } else if(!args.isEmpty()) {
+            groups.addAll(args);
+            args.clear();
+        } else {
+            groups.add(null);
+            groups.addAll(AppDatabase.listGroups());
+        }
+        TaskQuery query = new TaskQuery(AppDatabase.getDefaultAppDatabasePath(),
+            Runtime.getRuntime().availableProcessors());
+        int cnt = 0;
+        try(Stream<TaskEntry> found = query.select(groups, range[0], range[1], status)) {
+            for(Iterator<TaskEntry> it = found.iterator(); it.hasNext(); ++cnt) {
+                TaskEntry te = it.next();
+                if(null != te.group()) {
+                    System.out.print("[" + te.group() + "] ");
+                }
+                printTodoTaskItem(te.index() + 1, te.task());
+            }
+        }
+        info("Info: " + cnt + " tasks found, " + query.partitionCount() + " weeks in range, " +
+            query.prunedCount() + " skipped by summary.");
+    }
+
+    /**
+     * Export tasks of the selected group or of all groups created in the
+     * optional date range as CSV or NDJSON table to the file or to the
+     * standard output.
+     * @param args array of command line parameters: format, optional date
+     *  range and optional output file name
+     */
+    private static void processCmdExport(List<String> args) throws IOException {
+        DatabaseExport.Format format = null;
+        if(!args.isEmpty() && EXPORT_CSV.equals(args.get(0))) {
+            format = DatabaseExport.Format.CSV;
+        } else if(!args.isEmpty() && EXPORT_NDJSON.equals(args.get(0))) {
+            format = DatabaseExport.Format.NDJSON;
+        }
+        if(null == format) {
+            error("Error: " + CMD_EXPORT + " command requires format: " + EXPORT_CSV + " or " + EXPORT_NDJSON + ".");
+            return;
+        }
+        args.remove(0);
+        TaskDate[] range = new TaskDate[2];
+        if(args.size() >= 2) {
+            for(int i = 0; i < range.length; ++i) {
+                String dateStr = args.remove(0);
+                if(!QUERY_OPEN_DATE.equals(dateStr)) {
+                    range[i] = new TaskDate();
+                    if(!range[i].fromString(dateStr)) {
+                        error("Error: cannot parse date for " + CMD_EXPORT + " command: " + dateStr);
+                        return;
+                    }
+                }
+            }
+        }
+        if(args.size() > 1) {
+            error("Error: " + CMD_EXPORT + " command accepts only one output file name.");
+            return;
+        }
+        List<String> groups = new ArrayList<>();
+        if(opt_groups) {
+            groups.add(groupName);
+        } else {
+            groups.add(null);
+            groups.addAll(AppDatabase.listGroups());
+        }
+        DatabaseExport export = new DatabaseExport(AppDatabase.getDefaultAppDatabasePath(),
+            Runtime.getRuntime().availableProcessors());
+        if(args.isEmpty()) {
+            // no info output, it would be mixed with the exported rows
+            Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8), 1 << 16);
+            export.write(groups, range[0], range[1], format, out);
+            out.flush();
+        } else {
+            long started = System.nanoTime();
+            long rows;
+            try(Writer out = Files.newBufferedWriter(Paths.get(args.get(0)), StandardCharsets.UTF_8)) {
+                rows = export.write(groups, range[0], range[1], format, out);
+            }
+            info("Info: " + rows + " tasks exported in " + (System.nanoTime() - started) / 1000000 + " ms.");
+        }
+    }
+
+    /**
+     * Find tasks matching the query expression (see @see TaskFilter) in the
+     * selected group or in all groups.
+     * @param args array of command line parameters: query expression words
+     */
+    private static void processCmdFind(List<String> args) throws IOException {
+        TaskFilter filter;
+        try {
+            filter = TaskFilter.compile(String.join(" ", args));
+        } catch(IllegalArgumentException ex) {
+            error("Error: " + ex.getMessage());
+            return;
+        }
+        args.clear();
+        List<String> groups = new ArrayList<>();
+        if(opt_groups) {
+            groups.add(groupName);
+        } else {
+            groups.add(null);
+            groups.addAll(AppDatabase.listGroups());
+        }
+        TaskQuery query = new TaskQuery(AppDatabase.getDefaultAppDatabasePath(),
+            Runtime.getRuntime().availableProcessors());
+        int cnt = 0;
+        try(Stream<TaskEntry> found = query.select(groups, filter)) {
+            for(Iterator<TaskEntry> it = found.iterator(); it.hasNext(); ++cnt) {
+                TaskEntry te = it.next();
+                if(null != te.group()) {
+                    System.out.print("[" + te.group() + "] ");
+                }
+                printTodoTaskItem(te.index() + 1, te.task());
+            }
+        }
+        info("Info: " + filter + ": " + cnt + " tasks found, " + query.partitionCount() + " weeks in range, " +
+            query.prunedCount() + " skipped by summary.");
+    }
+
+    /**
+     * Print carry-over chains of the selected group or of all groups with
+     * their age, the oldest first. Only active tasks are printed unless
+     * 'all' parameter is given.
+     * @param args array of command line parameters
+     */
+    private static void processCmdAges(List<String> args) throws IOException {
+        boolean all = !args.isEmpty() && AGES_ALL.equals(args.get(0));
+        if(all) {
+            args.remove(0);
+        }
+        List<String> groups = new ArrayList<>();
+        if(opt_groups) {
+            groups.add(groupName);
+        } else {
+            groups.add(null);
+            groups.addAll(AppDatabase.listGroups());
+        }
+        TaskLineage lineage = new TaskLineage(AppDatabase.getDefaultAppDatabasePath(),
+            Runtime.getRuntime().availableProcessors());
+        int cnt = 0;
+        for(TaskLineage.Chain c : lineage.analyze(groups)) {
+            if(all || !c.isCompleted()) {
+                ++cnt;
+                if(null != c.group()) {
+                    System.out.print("[" + c.group() + "] ");
+                }
+                System.out.println(c.firstSeenOn() + "|" + (c.isCompleted() ? "DONE" : "WORK") + "|" +
+                    padLeft(c.ageDays(selectedDate), 4) + " days, " + padLeft(c.weeks(), 3) + " weeks: " + c.title());
+            }
+        }
+        if(0 == cnt) {
+            info("No tasks found.");
+        }
+    }
+
+    /**
+     * Print monthly and quarterly rollups of the selected group or of all
+     * groups, or rebuild them from all weeks. Rollups are kept up to date by
+     * the commands changing weeks once they are built.
+     * @param args array of command line parameters
+     */
+    private static void processCmdRollups(List<String> args) throws IOException {
+        String mode = args.isEmpty() ? "" : args.get(0);
+        if(!mode.isEmpty() && !ROLLUPS_MONTHS.equals(mode) && !ROLLUPS_QUARTERS.equals(mode)
+                && !ROLLUPS_REBUILD.equals(mode)) {
+            error("Error: unknown " + CMD_ROLLUPS + " parameter: " + mode);
+            return;
+        }
+        List<String> groups = new ArrayList<>();
+        if(opt_groups) {
+            groups.add(groupName);
+        } else {
+            groups.add(null);
+            groups.addAll(AppDatabase.listGroups());
+        }
+        Path root = AppDatabase.getDefaultAppDatabasePath();
+        for(String group : groups) {
+            String prefix = (null == group) ? "" : "[" + group + "] ";
+            if(ROLLUPS_REBUILD.equals(mode)) {
+                int weeks = PeriodRollups.rebuild(root, group);
+                info(prefix + "rollups rebuilt from " + weeks + " weeks.");
+                continue;
+            }
+            Map<String, PeriodRollups.Counts> rollups = PeriodRollups.read(root, group);
+            if(null == rollups) {
+                System.out.println(prefix + "no rollups, run '" + CMD_ROLLUPS + " " + ROLLUPS_REBUILD + "' to make them.");
+                continue;
+            }
+            for(Map.Entry<String, PeriodRollups.Counts> e : rollups.entrySet()) {
+                boolean quarter = e.getKey().contains("Q");
+                if((quarter && ROLLUPS_MONTHS.equals(mode)) || (!quarter && ROLLUPS_QUARTERS.equals(mode))) {
+                    continue;
+                }
+                PeriodRollups.Counts c = e.getValue();
+                System.out.println(prefix + e.getKey() + "|created " + padLeft(c.created(), 5) +
+                    "|carried " + padLeft(c.carried(), 5) + "|completed " + padLeft(c.completed(), 5) +
+                    "|open " + padLeft(c.open(), 5));
+            }
+        }
+    }
+
+    /**
+     * Execute commands read line by line from the script file or from the
+     * standard input. Every line has the same syntax as the command line
+     * (options followed by a command and its arguments), options are applied
+     * to this line only. Database directory option is not accepted in lines,
+     * the whole script runs against one database. All lines addressing the same group and week share
+     * one loaded weekly object, changes are saved once at the end or on
+     * explicit <code>commit</code> lines.
+     * @param args list with remaining part of the command line: optional script file name
+     */
+    private static void processCmdBatch(List<String> args) {
+        if(args.size() > 1) {
+            error("Error: " + CMD_BATCH + " command accepts only one script file name.");
+            return;
+        }
+        opt_batch = true;
+        final TaskDate baseDate = selectedDate;
+        final boolean baseGroups = opt_groups;
+        final String baseGroupName = groupName;
+        final boolean baseVerbose = opt_verbose;
+        final Map<String, Weekly> loaded = new LinkedHashMap<>();
+        int linesCount = 0;
+        HttpServer endpoint = null;
+        if(0 != AppDatabase.getAppConfig().getMetricsPort()) try {
+            endpoint = metrics().startEndpoint(AppDatabase.getAppConfig().getMetricsPort());
+        } catch(IOException ex) {
+            error("Error: cannot start metrics endpoint.");
+            error(ex.toString());
+        }
+        try(BufferedReader br = args.isEmpty()
+                ? new BufferedReader(new InputStreamReader(System.in))
+                : Files.newBufferedReader(Paths.get(args.get(0)))) {
+            String line;
+            while(null != (line = br.readLine())) {
+                ++batchLineNo;
+                List<String> lineArgs = splitCommandLine(line);
+                if(lineArgs.isEmpty() || lineArgs.get(0).startsWith("#")) {
+                    continue;
+                }
+                ++linesCount;
+                // every line starts from the options given on the command line
+                selectedDate = (TaskDate)baseDate.clone();
+                opt_groups = baseGroups;
+                groupName = baseGroupName;
+                opt_verbose = baseVerbose;
+                opt_prev_week = false;
+                opt_date_selection = false;
+                if(!readOptions(lineArgs) || !validateOptions()) {
+                    error("Error: unknown option or insufficient parameters.");
+                } else if(lineArgs.isEmpty()) {
+                    error("Error: no command specified.");
+                } else if(CMD_COMMIT.equals(lineArgs.get(0))) {
+                    Measurement m = new Measurement(CMD_COMMIT);
+                    commitWeeklies(loaded.values());
+                    m.finish();
+                } else {
+                    Measurement m = new Measurement(lineArgs.get(0));
+                    try {
+                        String key = AppDatabase.getDefaultAppDatabasePath() + "|" + (opt_groups ? groupName : "") + "/" +
+                            selectedDate.shiftToWeekDay(WeekDay.MONDAY).toString();
+                        Weekly weekly = loaded.get(key);
+                        Set<Weekly.Part> parts = requiredParts(lineArgs.get(0));
+                        if((null == weekly) && (null != parts)) {
+                            weekly = openWeekly(lineArgs.get(0), parts);
+                            loaded.put(key, weekly);
+                        }
+                        readAndExecuteCommand(lineArgs, weekly);
+                    } catch(IOException | RuntimeException ex) {
+                        error("Error: " + ex.toString());
+                    } finally {
+                        m.finish();
+                    }
+                }
             }
+        } catch(IOException ex) {
+            error("Error: cannot read batch script.");
+            error(ex.toString());
+        }
+        batchLineNo = 0;
+        Measurement m = new Measurement(CMD_COMMIT);
+        commitWeeklies(loaded.values());
+        m.finish();
+        if(null != endpoint) {
+            endpoint.stop(0);
+        }
+        opt_batch = false;
+        opt_verbose = baseVerbose;
+        info("Info: " + linesCount + " commands processed, " + errorsCount + " errors.");
+    }
+
+    /**
+     * Save all changed weekly objects loaded in batch mode.
+     * @param weeklies collection of loaded weekly objects
+     */
+    private static void commitWeeklies(Iterable<Weekly> weeklies) {
+        for(Weekly w : weeklies) {
+            try {
+                w.sync();
+            } catch(IOException ex) {
+                error("Error: cannot save weekly started on " + w.startedOn() + ".");
+                error(ex.toString());
+            }
+        }
+    }
+
+    /**
+     * Split the batch script line into separate arguments. Arguments are
+     * separated by white spaces, single or double quotes can be used to keep
+     * spaces inside one argument, backslash escapes the next character.
+     * @param line string to split
+     * @return list of arguments (can be empty)
+     */
+    private static List<String> splitCommandLine(String line) {
+        List<String> result = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean inArg = false;
+        char quote = 0;
+        for(int i = 0; i < line.length(); ++i) {
+            char c = line.charAt(i);
+            if(('\\' == c) && (i + 1 < line.length())) {
+                current.append(line.charAt(++i));
+                inArg = true;
+            } else if(0 != quote) {
+                if(c == quote) {
+                    quote = 0;
+                } else {
+                    current.append(c);
+                }
+            } else if(('"' == c) || ('\'' == c)) {
+                quote = c;
+                inArg = true;
+            } else if(Character.isWhitespace(c)) {
+                if(inArg) {
+                    result.add(current.toString());
+                    current.setLength(0);
+                    inArg = false;
+                }
+            } else {
+                current.append(c);
+                inArg = true;
+            }
+        }
+        if(inArg) {
+            result.add(current.toString());
+        }
+        return result;
+    }
+
+    /**
+     * Save weekly changes. In batch mode saving is postponed till commit.
+     * @param w weekly object
+     * @throws IOException 
+     */
+    private static void syncWeekly(Weekly w) throws IOException {
+        if(!opt_batch) {
+            w.sync();
+        }
+    }
+
+    /**
+     * Get command metrics, they are created on first use.
+     * @return metrics object
+     */
+    private static CommandMetrics metrics() {
+        if(null == commandMetrics) {
+            commandMetrics = new CommandMetrics();
+        }
+        return commandMetrics;
+    }
+    
+    /**
+     * Merge metrics of executed commands into the metrics file if it's
+     * configured.
+     */
+    private static void exportMetrics() {
+        Path file = AppDatabase.getAppConfig().getMetricsFile();
+        if((null != file) && (null != commandMetrics)) try {
+            commandMetrics.mergeInto(AppDatabase.getDefaultAppDatabasePath().resolve(file));
+        } catch(IOException ex) {
+            System.err.println("Error: cannot export metrics.");
+            System.err.println(ex.toString());
+        }
+    }
+    
+    /**
+     * Measurement of one command execution: time, errors and weeks data
+     * I/O. Nothing is measured if metrics are not exported.
+     */
+    private static final class Measurement {
+        Measurement(String command) {
+            enabled = (null != AppDatabase.getAppConfig().getMetricsFile()) ||
+                (0 != AppDatabase.getAppConfig().getMetricsPort());
+            this.command = command;
+            errors = errorsCount;
+            if(enabled) {
+                bytesRead = AppDatabase.getBytesRead();
+                bytesWritten = AppDatabase.getBytesWritten();
+                started = System.nanoTime();
+            }
+        }
+        
+        /**
+         * Count failure which was not reported as error.
+         */
+        void failed() {
+            ++extraErrors;
+        }
+        
+        /**
+         * Record the measurement.
+         */
+        void finish() {
+            if(enabled) {
+                long elapsed = System.nanoTime() - started;
+                // unknown commands are not recorded by name, so typos don't make new metrics
+                String name = (CMD_COMMIT.equals(command) || DistanceDictionaryHolder.distanceDict.contains(command))
+                    ? command : "unknown";
+                metrics().record(name, elapsed, errorsCount - errors + extraErrors,
+                    AppDatabase.getBytesRead() - bytesRead, AppDatabase.getBytesWritten() - bytesWritten);
+            }
+        }
+        
+        private final boolean enabled;
+        private final String command;
+        private final int errors;
+        private int extraErrors = 0;
+        private long bytesRead = 0;
+        private long bytesWritten = 0;
+        private long started = 0;
+    }
+
+    /**
+     * Print error string to system err. In batch mode the message is prefixed
+     * with the script line number.
+     * @param msg string to be printed
+     */
+    private static void error(String msg) {
+        ++errorsCount;
+        if(batchLineNo > 0) {
+            System.err.println("Line " + batchLineNo + ": " + msg);
+        } else {
+            System.err.println(msg);
+        }
+    }
+
+    /**
+     * Print warning string to system err, it's not counted as error. In batch
+     * mode the message is prefixed with the script line number.
+     * @param msg string to be printed
+     */
+    private static void warning(String msg) {
+        if(batchLineNo > 0) {
+            System.err.println("Line " + batchLineNo + ": " + msg);
+        } else {
+            System.err.println(msg);
         }
     }
 
@@ -520,7 +1321,7 @@ public class WPRConsoleMain {
      * @param msg string to be printed
      */
     private static void info(String msg) {
-        if(opt_verbose) {
+        if(opt_verbose || AppDatabase.getAppConfig().doVerboseOuput()) {
             System.out.println(msg);
         }
     }
@@ -537,10 +1338,6 @@ public class WPRConsoleMain {
      * Flag if verbose option is selected.
      */
     private static boolean opt_verbose = false;
-    /**
-     * Flag if automatic copy on mondays is selected.
-     */
-    private static boolean opt_do_copy_on_mondays = false;
     /**
      * Flag if group selector was used.
      */
@@ -558,10 +1355,33 @@ public class WPRConsoleMain {
      */
     private static boolean opt_prev_week = false;
     
+    /**
+     * Flag if commands are executed in batch mode.
+     */
+    private static boolean opt_batch = false;
+    /**
+     * Current line number of the batch script, 0 if not in batch mode.
+     */
+    private static int batchLineNo = 0;
+    /**
+     * Number of errors reported.
+     */
+    private static int errorsCount = 0;
+    
     /**
      * Selected date for which weekly is loaded.
      */
-    private final static TaskDate selectedDate = new TaskDate();
+    private static TaskDate selectedDate = new TaskDate();
+    
+    /**
+     * Background loader of weeks needed next, null until first use.
+     */
+    private static WeekPrefetcher weekPrefetcher = null;
+    
+    /**
+     * Metrics of executed commands, null until first use.
+     */
+    private static CommandMetrics commandMetrics = null;
     
     // Application information
     private static final String VERSION = "0.3cj";
@@ -594,8 +1414,59 @@ public class WPRConsoleMain {
         System.out.println("\t" + CMD_SETMEMO + " <memo text> : set new weekly memo");
         System.out.println("\t" + CMD_GROUPS + " : print groups list");
         System.out.println("\t" + CMD_COPY_FROM_THE_PAST + " : copy uncompleted tasks from previous week (works only if current week is empty)");
+        System.out.println("\t" + CMD_PACK + " <year> : pack all weeks of the past year into one compressed file;");
+        System.out.println("\t\tpacked weeks are not seen by the C++ and .NET versions of the utility");
+        System.out.println("\t" + CMD_BACKUP + " <backup directory> : make snapshot copying only weeks changed since the previous one");
+        System.out.println("\t" + CMD_RESTORE + " <backup directory> <snapshot id> <empty directory> : restore database snapshot");
+        System.out.println("\t" + CMD_VERIFY + " [" + VERIFY_REBUILD_CHECKSUM + "|" + VERIFY_DROP_DAMAGED + "|" + VERIFY_QUARANTINE
+            + "] : check all weeks, optionally rebuild checksums of readable weeks, drop damaged records or quarantine damaged weeks");
+        System.out.println("\t" + CMD_SYNC + " <database directory> : exchange changed weeks with another database, merge weeks changed in both");
+        System.out.println("\t" + CMD_QUERY + " <from date|" + QUERY_OPEN_DATE + "> <to date|" + QUERY_OPEN_DATE + "> [" + QUERY_ACTIVE + "|" + QUERY_COMPLETED
+            + "] [group ...] : list tasks created in the date range in the selected, listed or all groups");
+        System.out.println("\t" + CMD_AGES + " [" + AGES_ALL + "] : show how long active (or all) tasks live, following their copies to next weeks");
+        System.out.println("\t" + CMD_FIND + " <expression> : list tasks matching the expression of terms active, completed, date:D[..D],");
+        System.out.println("\t\tweek:D, title:text, title~regex, group:name combined with and, or, not, parentheses; D is YYYY-MM-DD or today[-N]");
+        System.out.println("\t" + CMD_ROLLUPS + " [" + ROLLUPS_MONTHS + "|" + ROLLUPS_QUARTERS + "|" + ROLLUPS_REBUILD
+            + "] : show created, carried over, completed and open tasks by months and quarters, rebuild rollups");
+        System.out.println("\t" + CMD_EXPORT + " <" + EXPORT_CSV + "|" + EXPORT_NDJSON + "> [<from date|" + QUERY_OPEN_DATE + "> <to date|" + QUERY_OPEN_DATE
+            + ">] [output file] : write tasks of the selected or all groups as a table to the file or standard output");
+        System.out.println("\t" + CMD_BATCH + " [script file] : execute commands line by line from the file or standard input,");
+        System.out.println("\t\teach line is [option] <command> [arguments], changes are saved at the end or on '" + CMD_COMMIT + "' line,");
+        System.out.println("\t\t" + OPT_DBDIR + " option is not accepted in lines");
     }
     
+    /**
+     * Export command formats.
+     */
+    private static final String EXPORT_CSV = "csv";
+    private static final String EXPORT_NDJSON = "ndjson";
+
+    /**
+     * Rollups command parameters.
+     */
+    private static final String ROLLUPS_MONTHS = "months";
+    private static final String ROLLUPS_QUARTERS = "quarters";
+    private static final String ROLLUPS_REBUILD = "rebuild";
+
+    /**
+     * Verify command repair actions.
+     */
+    private static final String VERIFY_REBUILD_CHECKSUM = "rebuild-checksum";
+    private static final String VERIFY_DROP_DAMAGED = "drop-damaged";
+    private static final String VERIFY_QUARANTINE = "quarantine";
+
+    /**
+     * Query command parameters.
+     */
+    private static final String QUERY_OPEN_DATE = "-";
+    private static final String QUERY_ACTIVE = "active";
+    private static final String QUERY_COMPLETED = "completed";
+
+    /**
+     * Ages command parameter.
+     */
+    private static final String AGES_ALL = "all";
+    
     /**
      * Utility options.
      */
@@ -0,0 +1,235 @@
+/*
+    (Java) Weekly Plans and Reports - simple and handy todo planning tool.
+
+    Copyright (C) 2011-2014  Stas Torgashov
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+/* File:    ColdStartBenchmark.java
+ * Author:  Stas Torgashov aka Crimson Cat (crimcat@yandex.ru)
+ * Created: 2026, October 19
+ */
+
+package org.crimcat.util.wpr.bench;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Cold start benchmark: every utility command is run in a fresh JVM
+ * many times against a prepared database in a temporary directory.
+ * For every command the wall time (median and 90th percentile), the number
+ * of loaded classes and the number of bytes allocated by the main thread are
+ * reported, the last two relative to a JVM which runs no command at all.
+ * The first runs are warm-up only, so the disk cache is warm.
+ * Usage: ColdStartBenchmark [runs] [java options...]
+ * @author Stas Torgashov
+ */
+public class ColdStartBenchmark {
+    
+    /**
+     * Commands to measure.
+     */
+    private static final String[][] COMMANDS = {
+        { "help" },
+        { "today" },
+        { "daily" },
+        { "weekly" },
+        { "summary" },
+        { "memo" },
+        { "groups" },
+        { "add", "benchmark task" },
+        { "complete", "1" },
+    };
+    
+    /**
+     * Number of warm-up runs of every command.
+     */
+    private static final int WARMUP_RUNS = 2;
+    
+    /**
+     * Default number of measured runs of every command.
+     */
+    private static final int DEFAULT_RUNS = 10;
+    
+    /**
+     * main function.
+     * @param args command line arguments: number of runs and JVM options
+     * @throws Exception 
+     */
+    public static void main(String[] args) throws Exception {
+        int runs = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_RUNS;
+        List<String> jvmOptions = (args.length > 1)
+            ? Arrays.asList(args).subList(1, args.length)
+            : Collections.<String>emptyList();
+        
+        Path dbDir = Files.createTempDirectory("wpr-coldstart");
+        try {
+            prepareDatabase(dbDir, jvmOptions);
+            Sample jvm = measure(dbDir, jvmOptions, new String[0], runs);
+            System.out.println(String.format("%-22s %10s %10s %8s %12s",
+                "command", "median ms", "p90 ms", "classes", "alloc bytes"));
+            System.out.println(String.format("%-22s %10.1f %10.1f %8d %12d",
+                "(jvm only)", jvm.medianMs(), jvm.p90Ms(), jvm.classes, jvm.allocated));
+            for(String[] cmd : COMMANDS) {
+                Sample s = measure(dbDir, jvmOptions, cmd, runs);
+                System.out.println(String.format("%-22s %10.1f %10.1f %8d %12d",
+                    String.join(" ", cmd), s.medianMs(), s.p90Ms(),
+                    s.classes - jvm.classes, s.allocated - jvm.allocated));
+            }
+        } finally {
+            deleteRecursively(dbDir.toFile());
+        }
+    }
+    
+    /**
+     * Prepare database with some tasks and memo in the current week.
+     * @param dbDir database directory
+     * @param jvmOptions JVM options
+     * @throws Exception 
+     */
+    private static void prepareDatabase(Path dbDir, List<String> jvmOptions) throws Exception {
+        for(int i = 1; i <= 20; ++i) {
+            run(dbDir, jvmOptions, new String[] { "add", "prepared task number " + i });
+        }
+        run(dbDir, jvmOptions, new String[] { "set-memo", "prepared memo" });
+        Files.createDirectory(dbDir.resolve("group"));
+    }
+    
+    /**
+     * Measure one command.
+     * @param dbDir database directory
+     * @param jvmOptions JVM options
+     * @param cmd command with arguments, empty for JVM only run
+     * @param runs number of measured runs
+     * @return collected sample
+     * @throws Exception 
+     */
+    private static Sample measure(Path dbDir, List<String> jvmOptions, String[] cmd, int runs) throws Exception {
+        Sample sample = new Sample();
+        for(int i = 0; i < WARMUP_RUNS + runs; ++i) {
+            long started = System.nanoTime();
+            String report = run(dbDir, jvmOptions, cmd);
+            long elapsed = System.nanoTime() - started;
+            if(i >= WARMUP_RUNS) {
+                sample.add(elapsed, report);
+            }
+        }
+        return sample;
+    }
+    
+    /**
+     * Run command in a separate JVM.
+     * @param dbDir database directory
+     * @param jvmOptions JVM options
+     * @param cmd command with arguments, empty for JVM only run
+     * @return probe report line
+     * @throws Exception 
+     */
+    private static String run(Path dbDir, List<String> jvmOptions, String[] cmd) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.addAll(jvmOptions);
+        command.add("-Duser.home=" + dbDir);
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(ColdStartProbe.class.getName());
+        if(cmd.length > 0) {
+            command.add("-b");
+            command.add(dbDir.toString());
+            command.addAll(Arrays.asList(cmd));
+        }
+        ProcessBuilder pb = new ProcessBuilder(command);
+        pb.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+        Process p = pb.start();
+        String report = null;
+        try(BufferedReader br = new BufferedReader(new InputStreamReader(p.getErrorStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while(null != (line = br.readLine())) {
+                if(line.startsWith(ColdStartProbe.REPORT_PREFIX)) {
+                    report = line;
+                }
+            }
+        }
+        if((0 != p.waitFor()) || (null == report)) {
+            throw new IllegalStateException("Run failed: " + String.join(" ", command));
+        }
+        return report;
+    }
+    
+    /**
+     * Remove directory with all its contents.
+     * @param f file or directory
+     */
+    private static void deleteRecursively(File f) {
+        File[] children = f.listFiles();
+        if(null != children) {
+            for(File c : children) {
+                deleteRecursively(c);
+            }
+        }
+        f.delete();
+    }
+    
+    /**
+     * Measurements of one command.
+     */
+    private static final class Sample {
+        /**
+         * Add one run measurements.
+         * @param elapsedNanos wall time
+         * @param report probe report line
+         */
+        void add(long elapsedNanos, String report) {
+            times.add(elapsedNanos);
+            for(String field : report.substring(ColdStartProbe.REPORT_PREFIX.length()).split(" ")) {
+                String[] kv = field.split("=");
+                if("classes".equals(kv[0])) {
+                    classes = Math.max(classes, Long.parseLong(kv[1]));
+                } else if("allocated".equals(kv[0])) {
+                    allocated = Math.max(allocated, Long.parseLong(kv[1]));
+                }
+            }
+        }
+        
+        double medianMs() {
+            return percentileMs(50);
+        }
+        
+        double p90Ms() {
+            return percentileMs(90);
+        }
+        
+        private double percentileMs(int p) {
+            List<Long> sorted = new ArrayList<>(times);
+            Collections.sort(sorted);
+            int idx = Math.min(sorted.size() - 1, (sorted.size() * p + 99) / 100 - 1);
+            return sorted.get(Math.max(0, idx)) / 1e6;
+        }
+        
+        final List<Long> times = new ArrayList<>();
+        long classes = 0;
+        long allocated = 0;
+    }
+}
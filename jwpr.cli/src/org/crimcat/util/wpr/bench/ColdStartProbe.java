@@ -0,0 +1,63 @@
+/*
+    (Java) Weekly Plans and Reports - simple and handy todo planning tool.
+
+    Copyright (C) 2011-2014  Stas Torgashov
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+/* File:    ColdStartProbe.java
+ * Author:  Stas Torgashov aka Crimson Cat (crimcat@yandex.ru)
+ * Created: 2026, October 19
+ */
+
+package org.crimcat.util.wpr.bench;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import org.crimcat.util.wpr.WPRConsoleMain;
+
+/**
+ * Entry point for one measured utility run: runs the command as the
+ * utility does and then reports JVM statistics to standard error as
+ * <code>PROBE classes=N allocated=BYTES</code>. Management classes are
+ * touched only after the command, so they don't affect what's measured
+ * besides a constant offset; run without arguments to measure the offset.
+ * @author Stas Torgashov
+ */
+public class ColdStartProbe {
+    
+    /**
+     * Report prefix.
+     */
+    static final String REPORT_PREFIX = "PROBE ";
+    
+    /**
+     * main function.
+     * @param args utility command line, nothing to measure JVM only
+     */
+    public static void main(String[] args) {
+        if(args.length > 0) {
+            WPRConsoleMain.main(args);
+        }
+        long classes = ManagementFactory.getClassLoadingMXBean().getTotalLoadedClassCount();
+        long allocated = -1;
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if(threads instanceof com.sun.management.ThreadMXBean) {
+            allocated = ((com.sun.management.ThreadMXBean)threads)
+                .getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        System.err.println(REPORT_PREFIX + "classes=" + classes + " allocated=" + allocated);
+    }
+}
@@ -0,0 +1,297 @@
+/*
+    (Java) Weekly Plans and Reports - simple and handy todo planning tool.
+
+    Copyright (C) 2011-2014  Stas Torgashov
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+/* File:    DatasetGenerator.java
+ * Author:  Stas Torgashov aka Crimson Cat (crimcat@yandex.ru)
+ * Created: 2026, October 19
+ */
+
+package org.crimcat.util.wpr.bench;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.crimcat.lib.wpr.AppDatabase;
+import org.crimcat.lib.wpr.TaskDate;
+import org.crimcat.lib.wpr.TodoTask;
+import org.crimcat.lib.wpr.Weekly;
+
+/**
+ * Synthetic database generator: fills the database with weeks of many
+ * groups up to the current week, as if they were used for years. Titles
+ * are taken from a vocabulary with Zipf distribution (few titles are very
+ * common), active tasks are carried over to the next week with the given
+ * rate keeping their lineage, and some weeks have memo. Files are written
+ * through files bundles, so checksums are the same as the utility makes.
+ * Usage: DatasetGenerator &lt;database directory&gt; [option=value ...]
+ * with options (default values are in brackets):
+ * groups (10) - number of groups, the first one is the default group;
+ * weeks (104) - number of weeks of every group;
+ * tasks (20) - average number of new tasks per week;
+ * titles (2000) - vocabulary size;
+ * zipf (1.1) - exponent of the titles distribution;
+ * carry (0.6) - rate of active tasks carried over to the next week;
+ * complete (0.7) - rate of completed tasks;
+ * memo (0.3) - rate of weeks with memo;
+ * seed (1) - random generator seed.
+ * @author Stas Torgashov
+ */
+public class DatasetGenerator {
+
+    /**
+     * Words to make titles of.
+     */
+    private static final String[] VERBS = {
+        "review", "write", "fix", "call", "prepare", "check", "update", "send",
+        "plan", "discuss", "buy", "read", "test", "deploy", "clean", "book",
+    };
+    private static final String[] OBJECTS = {
+        "report", "budget", "release notes", "dentist", "slides", "backup",
+        "design doc", "invoice", "team meeting", "groceries", "contract",
+        "build server", "tax forms", "travel", "roadmap", "customer issue",
+        "documentation", "car service", "interview", "newsletter",
+    };
+
+    /**
+     * main function.
+     * @param args command line arguments: database directory and options
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+        if(args.length < 1) {
+            System.err.println("Usage: DatasetGenerator <database directory> [option=value ...]");
+            System.exit(1);
+        }
+        Map<String, String> options = parseOptions(Arrays.asList(args).subList(1, args.length));
+        DatasetGenerator generator = new DatasetGenerator(
+            intOption(options, "groups", 10),
+            intOption(options, "weeks", 104),
+            intOption(options, "tasks", 20),
+            intOption(options, "titles", 2000),
+            doubleOption(options, "zipf", 1.1),
+            doubleOption(options, "carry", 0.6),
+            doubleOption(options, "complete", 0.7),
+            doubleOption(options, "memo", 0.3),
+            intOption(options, "seed", 1));
+        Path root = Paths.get(args[0]);
+        Files.createDirectories(root);
+        long started = System.nanoTime();
+        generator.generate(root);
+        long elapsed = System.nanoTime() - started;
+        System.out.println(String.format("%d weeks, %d tasks, %d bytes written in %.1f s",
+            generator.weekCount, generator.taskCount, generator.byteCount, elapsed / 1e9));
+    }
+
+    /**
+     * Ctor: generator with the given parameters.
+     * @param groups number of groups
+     * @param weeks number of weeks of every group
+     * @param tasksPerWeek average number of new tasks per week
+     * @param titles vocabulary size
+     * @param zipf exponent of titles distribution
+     * @param carryRate rate of active tasks carried over to the next week
+     * @param completeRate rate of completed tasks
+     * @param memoRate rate of weeks with memo
+     * @param seed random generator seed
+     */
+    public DatasetGenerator(int groups, int weeks, int tasksPerWeek, int titles, double zipf,
+            double carryRate, double completeRate, double memoRate, long seed) {
+        this.groups = groups;
+        this.weeks = weeks;
+        this.tasksPerWeek = tasksPerWeek;
+        this.carryRate = carryRate;
+        this.completeRate = completeRate;
+        this.memoRate = memoRate;
+        this.seed = seed;
+        vocabulary = new String[Math.max(1, titles)];
+        titlesCdf = new double[vocabulary.length];
+        double sum = 0;
+        for(int i = 0; i < vocabulary.length; ++i) {
+            vocabulary[i] = makeTitle(i);
+            sum += 1.0 / Math.pow(i + 1, zipf);
+            titlesCdf[i] = sum;
+        }
+        for(int i = 0; i < titlesCdf.length; ++i) {
+            titlesCdf[i] /= sum;
+        }
+    }
+
+    /**
+     * Generate the database. Existing weeks of the generated groups are
+     * overwritten.
+     * @param root database root directory, it becomes the default one
+     * @throws IOException
+     */
+    public void generate(Path root) throws IOException {
+        if(!AppDatabase.setDefaultAppDatabasePath(root.toString())) {
+            throw new IOException("cannot use database directory " + root);
+        }
+        final TaskDate today = new TaskDate();
+        final TaskDate thisMonday = today.shiftToWeekDay(TaskDate.WeekDay.MONDAY);
+        for(int g = 0; g < groups; ++g) {
+            final String group = groupName(g);
+            Random rnd = new Random(seed * 31 + g);
+            List<TodoTask> active = new ArrayList<>();
+            for(int w = weeks - 1; w >= 0; --w) {
+                TaskDate monday = thisMonday.shift(-7 * w);
+                int days = (0 == w) ? monday.daysTo(today) + 1 : 7;
+                List<TodoTask> week = new ArrayList<>();
+                for(TodoTask prev : active) {
+                    if(rnd.nextDouble() < carryRate) {
+                        week.add(task(monday, rnd, prev.title(), prev));
+                    }
+                }
+                int count = tasksPerWeek / 2 + rnd.nextInt(tasksPerWeek + 1);
+                List<TodoTask> created = new ArrayList<>(count);
+                for(int i = 0; i < count; ++i) {
+                    created.add(task(monday.shift(rnd.nextInt(days)), rnd, nextTitle(rnd), null));
+                }
+                created.sort((a, b) -> a.originatedOn().compare(b.originatedOn()));
+                week.addAll(created);
+                active.clear();
+                for(TodoTask tt : week) {
+                    if(!tt.isCompleted()) {
+                        active.add(tt);
+                    }
+                }
+                AppDatabase.FilesBundle bundle = AppDatabase.getFilesBundle(monday, group);
+                Weekly.writeTasks(bundle, week);
+                byte[] memo = new byte[0];
+                if(rnd.nextDouble() < memoRate) {
+                    memo = ("Week " + monday.weekNumber() + ": focus on " + nextTitle(rnd) + System.lineSeparator())
+                        .getBytes(StandardCharsets.UTF_8);
+                }
+                bundle.writeComponent(AppDatabase.FilesBundle.Component.MEMO, memo);
+                bundle.updateChecksum();
+                ++weekCount;
+                taskCount += week.size();
+                Path todoList = bundle.getTodoListFilePath();
+                byteCount += (Files.exists(todoList) ? Files.size(todoList) : 0) + memo.length;
+            }
+        }
+    }
+
+    /**
+     * Get name of the generated group.
+     * @param idx group index
+     * @return group name, null for the default group
+     */
+    static String groupName(int idx) {
+        return (0 == idx) ? null : String.format("group%03d", idx);
+    }
+
+    /**
+     * Make task: new one through its string form, so the format is owned by
+     * the task class, or a copy of the previous week task keeping its lineage.
+     * @param date creation date
+     * @param rnd random generator
+     * @param title task title
+     * @param carriedFrom task of the previous week this one is copy of or null
+     * @return task object
+     */
+    private TodoTask task(TaskDate date, Random rnd, String title, TodoTask carriedFrom) {
+        boolean completed = rnd.nextDouble() < completeRate;
+        if(null != carriedFrom) {
+            return TodoTask.copyOf(carriedFrom, date, completed);
+        }
+        TodoTask tt = new TodoTask(title);
+        if(!tt.fromString(date + ":" + (completed ? "C" : "A") + ":" + title)) {
+            throw new IllegalStateException("Cannot make task record: " + title);
+        }
+        return tt;
+    }
+
+    /**
+     * Get random title according to the Zipf distribution.
+     * @param rnd random generator
+     * @return title
+     */
+    private String nextTitle(Random rnd) {
+        int idx = Arrays.binarySearch(titlesCdf, rnd.nextDouble());
+        if(idx < 0) {
+            idx = -idx - 1;
+        }
+        return vocabulary[Math.min(idx, vocabulary.length - 1)];
+    }
+
+    /**
+     * Make title of the given vocabulary rank.
+     * @param rank title rank
+     * @return title
+     */
+    private static String makeTitle(int rank) {
+        int combinations = VERBS.length * OBJECTS.length;
+        String title = VERBS[rank % VERBS.length] + " " + OBJECTS[(rank / VERBS.length) % OBJECTS.length];
+        return (rank < combinations) ? title : title + " #" + (rank / combinations);
+    }
+
+    /**
+     * Parse option=value command line arguments.
+     * @param args arguments
+     * @return options map
+     */
+    static Map<String, String> parseOptions(List<String> args) {
+        Map<String, String> options = new HashMap<>();
+        for(String arg : args) {
+            int sep = arg.indexOf('=');
+            if(sep <= 0) {
+                throw new IllegalArgumentException("Bad option: " + arg);
+            }
+            options.put(arg.substring(0, sep), arg.substring(sep + 1));
+        }
+        return options;
+    }
+
+    static int intOption(Map<String, String> options, String name, int defaultValue) {
+        return options.containsKey(name) ? Integer.parseInt(options.get(name)) : defaultValue;
+    }
+
+    static double doubleOption(Map<String, String> options, String name, double defaultValue) {
+        return options.containsKey(name) ? Double.parseDouble(options.get(name)) : defaultValue;
+    }
+
+    private final int groups;
+    private final int weeks;
+    private final int tasksPerWeek;
+    private final double carryRate;
+    private final double completeRate;
+    private final double memoRate;
+    private final long seed;
+
+    /**
+     * Titles by rank and cumulative distribution of ranks.
+     */
+    private final String[] vocabulary;
+    private final double[] titlesCdf;
+
+    /**
+     * Generation statistics.
+     */
+    private int weekCount = 0;
+    private long taskCount = 0;
+    private long byteCount = 0;
+}
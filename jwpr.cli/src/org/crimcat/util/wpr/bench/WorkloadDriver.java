@@ -0,0 +1,381 @@
+/*
+    (Java) Weekly Plans and Reports - simple and handy todo planning tool.
+
+    Copyright (C) 2011-2014  Stas Torgashov
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+/* File:    WorkloadDriver.java
+ * Author:  Stas Torgashov aka Crimson Cat (crimcat@yandex.ru)
+ * Created: 2026, October 19
+ */
+
+package org.crimcat.util.wpr.bench;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import org.crimcat.lib.wpr.AppDatabase;
+import org.crimcat.lib.wpr.TaskDate;
+import org.crimcat.lib.wpr.TaskEntry;
+import org.crimcat.lib.wpr.TaskQuery;
+import org.crimcat.lib.wpr.Weekly;
+import org.crimcat.lib.wpr.WeeklyColumns;
+
+/**
+ * Concurrent workload driver: several threads replay a mix of operations
+ * against the current week of random groups of an existing database (see
+ * @see DatasetGenerator), every operation opens the weekly the same way a
+ * utility command does. Throughput, latency percentiles and errors are
+ * reported per operation. Threads don't coordinate, like separate utility
+ * processes, unless the lock option is set.
+ * Usage: WorkloadDriver &lt;database directory&gt; [option=value ...]
+ * with options (default values are in brackets):
+ * threads (4) - number of threads;
+ * ops (20000) - number of measured operations;
+ * warmup (2000) - number of warm-up operations;
+ * profile (add:30,complete:20,summary:40,query:10) - operations weights;
+ * lock (false) - serialize operations on the same group;
+ * seed (1) - random generator seed.
+ * @author Stas Torgashov
+ */
+public class WorkloadDriver {
+
+    /**
+     * Operation kinds.
+     */
+    enum Operation {
+        /**
+         * Add a task to the current week.
+         */
+        ADD,
+        /**
+         * Complete a random active task of the current week.
+         */
+        COMPLETE,
+        /**
+         * Count active and completed tasks of the current week and read memo.
+         */
+        SUMMARY,
+        /**
+         * Query active tasks of the last four weeks.
+         */
+        QUERY
+    }
+
+    /**
+     * main function.
+     * @param args command line arguments: database directory and options
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+        if(args.length < 1) {
+            System.err.println("Usage: WorkloadDriver <database directory> [option=value ...]");
+            System.exit(1);
+        }
+        Map<String, String> options = DatasetGenerator.parseOptions(Arrays.asList(args).subList(1, args.length));
+        Path root = Paths.get(args[0]);
+        if(!AppDatabase.setDefaultAppDatabasePath(root.toString())) {
+            System.err.println("Cannot use database directory " + root);
+            System.exit(1);
+        }
+        List<String> groups = new ArrayList<>();
+        groups.add(null);
+        groups.addAll(AppDatabase.listGroups());
+        WorkloadDriver driver = new WorkloadDriver(root, groups,
+            parseProfile(options.containsKey("profile") ? options.get("profile") : "add:30,complete:20,summary:40,query:10"),
+            Boolean.parseBoolean(options.get("lock")),
+            DatasetGenerator.intOption(options, "seed", 1));
+        int threads = DatasetGenerator.intOption(options, "threads", 4);
+        driver.run(threads, DatasetGenerator.intOption(options, "warmup", 2000));
+        Result result = driver.run(threads, DatasetGenerator.intOption(options, "ops", 20000));
+        result.print();
+    }
+
+    /**
+     * Ctor: driver over the given database.
+     * @param root database root directory, it's the default database
+     * @param groups groups to run operations on, null for the default group
+     * @param weights weights of operations, indexed by operation ordinal
+     * @param lock true to serialize operations on the same group
+     * @param seed random generator seed
+     */
+    public WorkloadDriver(Path root, List<String> groups, int[] weights, boolean lock, long seed) {
+        this.root = root;
+        this.groups = new ArrayList<>(groups);
+        this.weights = weights.clone();
+        this.lock = lock;
+        this.seed = seed;
+        groupLocks = new Object[this.groups.size()];
+        for(int i = 0; i < groupLocks.length; ++i) {
+            groupLocks[i] = new Object();
+        }
+        int total = 0;
+        for(int w : weights) {
+            total += w;
+        }
+        if(total <= 0) {
+            throw new IllegalArgumentException("Empty operations profile");
+        }
+        totalWeight = total;
+    }
+
+    /**
+     * Run operations by several threads and collect results.
+     * @param threads number of threads
+     * @param ops total number of operations
+     * @return collected result
+     * @throws InterruptedException
+     */
+    Result run(int threads, int ops) throws InterruptedException {
+        final Result result = new Result();
+        final AtomicLong remaining = new AtomicLong(ops);
+        final CountDownLatch start = new CountDownLatch(1);
+        List<Thread> workers = new ArrayList<>();
+        for(int t = 0; t < threads; ++t) {
+            final Random rnd = new Random(seed * 131 + t + runCount * 7919L);
+            Thread worker = new Thread(() -> {
+                Recorder rec = new Recorder();
+                try {
+                    start.await();
+                    while(remaining.getAndDecrement() > 0) {
+                        Operation op = nextOperation(rnd);
+                        int g = rnd.nextInt(groups.size());
+                        long started = System.nanoTime();
+                        boolean ok;
+                        if(lock) {
+                            synchronized(groupLocks[g]) {
+                                ok = execute(op, groups.get(g), rnd);
+                            }
+                        } else {
+                            ok = execute(op, groups.get(g), rnd);
+                        }
+                        rec.add(op, System.nanoTime() - started, ok);
+                    }
+                } catch(InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                result.merge(rec);
+            }, "wpr-load-" + t);
+            workers.add(worker);
+            worker.start();
+        }
+        long started = System.nanoTime();
+        start.countDown();
+        for(Thread worker : workers) {
+            worker.join();
+        }
+        result.elapsedNanos = System.nanoTime() - started;
+        ++runCount;
+        return result;
+    }
+
+    /**
+     * Execute one operation.
+     * @param op operation
+     * @param group group name or null
+     * @param rnd random generator
+     * @return true if succeeded
+     */
+    private boolean execute(Operation op, String group, Random rnd) {
+        try {
+            final TaskDate today = new TaskDate();
+            switch(op) {
+                case ADD: {
+                    Weekly w = new Weekly(today, group, EnumSet.noneOf(Weekly.Part.class));
+                    w.getEditor().addTask("load task " + rnd.nextInt(1000000));
+                    w.sync();
+                    break;
+                }
+                case COMPLETE: {
+                    Weekly w = new Weekly(today, group, EnumSet.of(Weekly.Part.TASKS));
+                    BitSet active = w.columns().active();
+                    if(!active.isEmpty()) {
+                        int idx = active.nextSetBit(0);
+                        for(int skip = rnd.nextInt(active.cardinality()); skip > 0; --skip) {
+                            idx = active.nextSetBit(idx + 1);
+                        }
+                        w.getEditor().markTaskCompleted(w.taskAt(idx));
+                        w.sync();
+                    }
+                    break;
+                }
+                case SUMMARY: {
+                    Weekly w = new Weekly(today, group);
+                    WeeklyColumns cols = w.columns();
+                    sink += cols.active().cardinality() + cols.completed().cardinality() + w.memo().length();
+                    break;
+                }
+                case QUERY: {
+                    TaskQuery query = new TaskQuery(root, 1);
+                    try(Stream<TaskEntry> s = query.select(Collections.singletonList(group),
+                            today.shift(-28), today, TaskQuery.Status.ACTIVE)) {
+                        sink += s.count();
+                    }
+                    break;
+                }
+            }
+            return true;
+        } catch(IOException | RuntimeException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Pick random operation according to the profile weights.
+     * @param rnd random generator
+     * @return operation
+     */
+    private Operation nextOperation(Random rnd) {
+        int v = rnd.nextInt(totalWeight);
+        for(Operation op : Operation.values()) {
+            v -= weights[op.ordinal()];
+            if(v < 0) {
+                return op;
+            }
+        }
+        return Operation.SUMMARY;
+    }
+
+    /**
+     * Parse operations profile: comma separated name:weight pairs.
+     * @param profile profile string
+     * @return weights indexed by operation ordinal
+     */
+    static int[] parseProfile(String profile) {
+        int[] weights = new int[Operation.values().length];
+        for(String item : profile.split(",")) {
+            String[] kv = item.trim().split(":");
+            if(2 != kv.length) {
+                throw new IllegalArgumentException("Bad profile item: " + item);
+            }
+            weights[Operation.valueOf(kv[0].trim().toUpperCase()).ordinal()] = Integer.parseInt(kv[1].trim());
+        }
+        return weights;
+    }
+
+    /**
+     * Latencies and errors recorded by one thread.
+     */
+    private static final class Recorder {
+        void add(Operation op, long nanos, boolean ok) {
+            int i = op.ordinal();
+            if(counts[i] == latencies[i].length) {
+                latencies[i] = Arrays.copyOf(latencies[i], 2 * latencies[i].length);
+            }
+            latencies[i][counts[i]++] = nanos;
+            if(!ok) {
+                ++errors[i];
+            }
+        }
+
+        final long[][] latencies = new long[Operation.values().length][1024];
+        final int[] counts = new int[Operation.values().length];
+        final int[] errors = new int[Operation.values().length];
+    }
+
+    /**
+     * Results of one run.
+     */
+    static final class Result {
+        synchronized void merge(Recorder rec) {
+            for(int i = 0; i < latencies.length; ++i) {
+                long[] merged = Arrays.copyOf(latencies[i], latencies[i].length + rec.counts[i]);
+                System.arraycopy(rec.latencies[i], 0, merged, latencies[i].length, rec.counts[i]);
+                latencies[i] = merged;
+                errors[i] += rec.errors[i];
+            }
+        }
+
+        /**
+         * Print throughput and latency percentiles per operation and in total.
+         */
+        void print() {
+            double seconds = elapsedNanos / 1e9;
+            System.out.println(String.format("%-10s %8s %10s %10s %10s %10s %8s",
+                "operation", "count", "ops/s", "p50 ms", "p99 ms", "p999 ms", "errors"));
+            long[] all = new long[0];
+            int allErrors = 0;
+            for(Operation op : Operation.values()) {
+                long[] l = latencies[op.ordinal()];
+                if(0 != l.length) {
+                    printLine(op.toString().toLowerCase(), l, errors[op.ordinal()], seconds);
+                    long[] merged = Arrays.copyOf(all, all.length + l.length);
+                    System.arraycopy(l, 0, merged, all.length, l.length);
+                    all = merged;
+                    allErrors += errors[op.ordinal()];
+                }
+            }
+            printLine("total", all, allErrors, seconds);
+        }
+
+        private static void printLine(String name, long[] l, int errors, double seconds) {
+            long[] sorted = l.clone();
+            Arrays.sort(sorted);
+            System.out.println(String.format("%-10s %8d %10.1f %10.3f %10.3f %10.3f %8d",
+                name, sorted.length, sorted.length / seconds,
+                percentile(sorted, 500) / 1e6, percentile(sorted, 990) / 1e6, percentile(sorted, 999) / 1e6,
+                errors));
+        }
+
+        /**
+         * Get percentile of the sorted values.
+         * @param sorted sorted values
+         * @param perMille percentile in tenths of percent
+         * @return value
+         */
+        private static long percentile(long[] sorted, int perMille) {
+            if(0 == sorted.length) {
+                return 0;
+            }
+            int idx = (int)Math.min(sorted.length - 1, ((long)sorted.length * perMille + 999) / 1000 - 1);
+            return sorted[Math.max(0, idx)];
+        }
+
+        long[][] latencies = new long[Operation.values().length][0];
+        final int[] errors = new int[Operation.values().length];
+        long elapsedNanos = 0;
+    }
+
+    private final Path root;
+    private final List<String> groups;
+    private final int[] weights;
+    private final int totalWeight;
+    private final boolean lock;
+    private final long seed;
+    private final Object[] groupLocks;
+
+    /**
+     * Number of finished runs, it changes random sequences of the next run.
+     */
+    private int runCount = 0;
+
+    /**
+     * Results of read operations are accumulated here, so they are not
+     * optimized away.
+     */
+    private volatile long sink = 0;
+}
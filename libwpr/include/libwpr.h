@@ -29,6 +29,7 @@
 #include <time.h>
 #include <iostream>
 #include <string>
+#include <map>
 #include <vector>
 
 /**
@@ -222,6 +223,17 @@ namespace wpr {
          * @return true if operations is successful
          */
         bool read(std::istream *is);
+
+        /**
+         * Deserialize the task object from the input stream. The task title
+         * can be encoded as DATE:[A|C];t:CODE, the code is looked up in
+         * the title dictionary of the group. If operation fails, the current
+         * object contents is not changed.
+         * @param is pointer to the input stream
+         * @param titles pointer to the titles dictionary or NULL
+         * @return true if operations is successful
+         */
+        bool read(std::istream *is, const std::map<std::string, std::string> *titles);
     };
 
     /**
@@ -32,6 +32,9 @@ namespace wpr {
 
     /** todo_task */
 
+    // status field flag of the title encoded by the group title dictionary
+    static const std::string TITLE_CODE("t");
+
     todo_task::todo_task(const std::string &task_description)
         : date_originated()
         , completed(false)
@@ -70,21 +73,46 @@ namespace wpr {
 
     bool
     todo_task::read(std::istream *is) {
+        return read(is, NULL);
+    }
+
+    bool
+    todo_task::read(std::istream *is, const std::map<std::string, std::string> *titles) {
         date creation_date;
         std::string status, title;
+        bool encoded = false;
         if(creation_date.read(is) &&
            parser::expect(is, 1, NULL, parser::is_colon) &&
-           parser::expect(is, 1, &status, parser::is_char) &&
-           parser::expect(is, 1, NULL, parser::is_colon) &&
-           parser::readline(is, &title)) {
-            switch(status[0]) {
-            case 'C': completed = true; break;
-            case 'A': completed = false; break;
-            default: return false;
+           parser::expect(is, 1, &status, parser::is_char)) {
+            // optional status fields: ;NAME[;NAME...]
+            while(is->good() && (';' == is->peek())) {
+                std::string field;
+                is->get();
+                while(is->good() && (';' != is->peek()) && (':' != is->peek()) &&
+                      ('\n' != is->peek()) && (EOF != is->peek())) {
+                    field += (char)is->get();
+                }
+                if(TITLE_CODE == field) {
+                    encoded = true;
+                }
+            }
+            if(parser::expect(is, 1, NULL, parser::is_colon) &&
+               parser::readline(is, &title)) {
+                switch(status[0]) {
+                case 'C': completed = true; break;
+                case 'A': completed = false; break;
+                default: return false;
+                }
+                if(encoded) {
+                    if(!titles) return false;
+                    std::map<std::string, std::string>::const_iterator it = titles->find(title);
+                    if(titles->end() == it) return false;
+                    title = it->second;
+                }
+                date_originated = creation_date;
+                descr.swap(title);
+                return true;
             }
-            date_originated = creation_date;
-            descr.swap(title);
-            return true;
         }
         return false;
     }
@@ -94,6 +122,35 @@ namespace wpr {
     static const std::string EXT_TODOLIST(".todolist");
     static const std::string EXT_MEMO(".memo");
     static const std::string EXT_CHECKSUM(".checksum");
+    static const std::string TITLES_FILENAME(".titles");
+    static const std::string META_TODOLIST_RECORDS("todolist.records");
+    static const std::string META_MEMO_RECORDS("memo.records");
+
+    /**
+     * Load title dictionary of the group: CODE\tTITLE lines. The code is
+     * CRC32 of the title, entries which don't match it are skipped.
+     * @param filename dictionary file path
+     * @param titles pointer to the map to put entries into
+     */
+    static void
+    load_titles(const std::string &filename, std::map<std::string, std::string> *titles) {
+        std::ifstream titles_is(filename.c_str(), std::ios::in);
+        std::string line;
+        while(std::getline(titles_is, line)) {
+            if(!line.empty() && ('\r' == line[line.length() - 1])) {
+                line.erase(line.length() - 1);
+            }
+            std::string::size_type tab = line.find('\t');
+            if((std::string::npos == tab) || (0 == tab)) continue;
+            std::string code = line.substr(0, tab);
+            std::string title = line.substr(tab + 1);
+            std::ostringstream expected;
+            expected << std::hex << fs::calc_string_crc32(title);
+            if(expected.str() == code) {
+                titles->insert(std::make_pair(code, title));
+            }
+        }
+    }
 
     struct weekly::impl : public weekly::editor {
         date monday;
@@ -131,11 +188,17 @@ namespace wpr {
 
             // load and verify checksum if the file is present
             // if file does not exist - not an error, just proceed further
+            // the Java version can prefix every line with its own checksum,
+            // this is told by the checksum file metadata
             std::ifstream cksum_is(cksum_filename.c_str(), std::ios::in);
             fs::checksum_t loaded_cksum = 0;
+            bool todo_records = false;
+            bool memo_records = false;
             if(cksum_is.good()) {
                 cksum_is >> loaded_cksum;
                 cksum_is.close();
+                todo_records = fs::has_checksum_metadata(cksum_filename, META_TODOLIST_RECORDS);
+                memo_records = fs::has_checksum_metadata(cksum_filename, META_MEMO_RECORDS);
 
             	// verify checksum
             	fs::checksum_t acc_cksum = fs::calc_crc32(0, memo_filename);
@@ -147,16 +210,33 @@ namespace wpr {
                 is_changed = true;
             }
 
-            // load todos list
+            // load todos list, titles can be encoded by the group dictionary
+            // a record which cannot be read makes the whole week unreadable
+            // otherwise the rest of the list is lost on the next save
             std::ifstream todo_is(todo_filename.c_str(), std::ios::in);
             if(todo_is.bad()) return false;
+            std::map<std::string, std::string> titles;
+            bool titles_loaded = false;
             std::vector<todo_task> loaded_tasks;
-            todo_task next_task("");
-            while(true) {
-            	if(!next_task.read(&todo_is)) {
-            		break;
-            	}
-            	loaded_tasks.push_back(next_task);
+            std::string line;
+            while(std::getline(todo_is, line)) {
+                if(todo_records && !line.empty() && ("\r" != line)) {
+                    if(!fs::strip_record_checksum(&line)) return false;
+                }
+                if(!line.empty() && ('\r' == line[line.length() - 1])) {
+                    line.erase(line.length() - 1);
+                }
+                if(line.empty()) continue;
+                if(!titles_loaded && (std::string::npos != line.find(';'))) {
+                    load_titles(working_dir + TITLES_FILENAME, &titles);
+                    titles_loaded = true;
+                }
+                std::istringstream line_is(line + '\n');
+                todo_task next_task("");
+                if(!next_task.read(&line_is, &titles)) {
+                    return false;
+                }
+                loaded_tasks.push_back(next_task);
             }
             tasks.swap(loaded_tasks);
             todo_is.close();
@@ -165,7 +245,20 @@ namespace wpr {
             // this is not an error, just ignore this issue
             std::ifstream memo_is(memo_filename.c_str(), std::ios::in);
             memo_string.clear();
-            if(!memo_is.bad()) {
+            if(!memo_is.bad() && memo_records) {
+                std::stringstream buf;
+                while(std::getline(memo_is, line)) {
+                    if(!line.empty() && ("\r" != line)) {
+                        if(!fs::strip_record_checksum(&line)) return false;
+                    }
+                    buf << line;
+                    if(!memo_is.eof()) {
+                        buf << '\n';
+                    }
+                }
+                memo_is.close();
+                memo_string.assign(buf.str());
+            } else if(!memo_is.bad()) {
             	std::stringstream buf;
                 while(true) {
                     char next_ch;
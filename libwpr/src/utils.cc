@@ -104,8 +104,8 @@ namespace wpr {
     	 * The implementation is borrowed from Wikipedia:
     	 * http://ru.wikipedia.org/wiki/%D0%A6%D0%B8%D0%BA%D0%BB%D0%B8%D1%87%D0%B5%D1%81%D0%BA%D0%B8%D0%B9_%D0%B8%D0%B7%D0%B1%D1%8B%D1%82%D0%BE%D1%87%D0%BD%D1%8B%D0%B9_%D0%BA%D0%BE%D0%B4#CRC-32
     	 */
-        checksum_t
-        calc_crc32(checksum_t ival, const std::string& filename) {
+        static const unsigned int *
+        crc32_table() {
             static unsigned int crc_table[256] = { 0 };
             static bool is_initialized = false;
             static const unsigned int POLY = 0xEDB88320;
@@ -120,7 +120,12 @@ namespace wpr {
                 }
                 is_initialized = true;
             }
+            return crc_table;
+        }
 
+        checksum_t
+        calc_crc32(checksum_t ival, const std::string& filename) {
+            const unsigned int *crc_table = crc32_table();
             unsigned int crc = ival ? (ival ^ 0xFFFFFFFF) : 0xFFFFFFFF;
 
             // scan file and calculate the checksum
@@ -137,6 +142,75 @@ namespace wpr {
             return crc ^ 0xFFFFFFFF;
         }
 
+        checksum_t
+        calc_string_crc32(const std::string &str) {
+            const unsigned int *crc_table = crc32_table();
+            unsigned int crc = 0xFFFFFFFF;
+            for(std::string::const_iterator it = str.begin(); it != str.end(); ++it) {
+                crc = crc_table[(crc ^ (unsigned char)*it) & 0xFF] ^ (crc >> 8);
+            }
+            return crc ^ 0xFFFFFFFF;
+        }
+
+        static const unsigned int *
+        crc32c_table() {
+            static unsigned int crc_table[256] = { 0 };
+            static bool is_initialized = false;
+            static const unsigned int POLY = 0x82F63B78;
+
+            if(!is_initialized) {
+                for(unsigned int i = 0; i < 256; ++i) {
+                    unsigned int crc = i;
+                    for(unsigned j = 0; j < 8; ++j) {
+                        crc = (crc & 1) ? ((crc >> 1) ^ POLY) : (crc >> 1);
+                    }
+                    crc_table[i] = crc;
+                }
+                is_initialized = true;
+            }
+            return crc_table;
+        }
+
+        static const std::string::size_type RECORD_PREFIX_SIZE = 9;
+
+        bool
+        strip_record_checksum(std::string *line) {
+            if(!line || (line->length() < RECORD_PREFIX_SIZE) || (' ' != line->at(8))) {
+                return false;
+            }
+            unsigned int stored = 0;
+            for(std::string::size_type i = 0; i < 8; ++i) {
+                char c = line->at(i);
+                if((c >= '0') && (c <= '9')) stored = (stored << 4) | (c - '0');
+                else if((c >= 'a') && (c <= 'f')) stored = (stored << 4) | (c - 'a' + 10);
+                else if((c >= 'A') && (c <= 'F')) stored = (stored << 4) | (c - 'A' + 10);
+                else return false;
+            }
+            const unsigned int *crc_table = crc32c_table();
+            unsigned int crc = 0xFFFFFFFF;
+            for(std::string::size_type i = RECORD_PREFIX_SIZE; i < line->length(); ++i) {
+                crc = crc_table[(crc ^ (unsigned char)line->at(i)) & 0xFF] ^ (crc >> 8);
+            }
+            if((crc ^ 0xFFFFFFFF) != stored) {
+                return false;
+            }
+            line->erase(0, RECORD_PREFIX_SIZE);
+            return true;
+        }
+
+        bool
+        has_checksum_metadata(const std::string &filename, const std::string &key) {
+            std::ifstream cksum_is(filename.c_str(), std::ios::in);
+            std::string line;
+            std::string prefix = key + ':';
+            while(std::getline(cksum_is, line)) {
+                if(0 == line.compare(0, prefix.length(), prefix)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
         static const char SEPARATOR = '/';
 
         void
@@ -121,6 +121,33 @@ namespace wpr {
          */
         checksum_t calc_crc32(checksum_t ival, const std::string &filename);
 
+        /**
+         * Calculate CRC32 checksum of the string bytes, the same way as
+         * calc_crc32 does for files.
+         * @param str string to calculate checksum of
+         * @return checksum value
+         */
+        checksum_t calc_string_crc32(const std::string &str);
+
+        /**
+         * Strip record checksum from the line of the file written by the Java
+         * version with record checksums on: the line is prefixed with 8 hex
+         * digits of CRC32C of the line contents and a space.
+         * @param line pointer to the line to strip the prefix from
+         * @return true if the prefix is found and matches the line contents
+         */
+        bool strip_record_checksum(std::string *line);
+
+        /**
+         * Check if the checksum file has metadata line 'KEY:VALUE' with the
+         * given key. Metadata lines follow the checksum value, they are
+         * written by the Java version.
+         * @param filename path to the checksum file
+         * @param key metadata key
+         * @return true if the metadata key is present
+         */
+        bool has_checksum_metadata(const std::string &filename, const std::string &key);
+
         /**
          * Ajust and setup the working directory, normalizing the path.
          * @wd pointer to the path string to be normalized
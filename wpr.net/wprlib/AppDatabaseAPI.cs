@@ -16,6 +16,9 @@ namespace wprlib.AppDatabase {
         string databaseDirPath { get; }
         string todoFilePath { get; }
         string memoFilePath { get; }
+        string titlesFilePath { get; }
+        bool todoHasRecordChecksums { get; }
+        bool memoHasRecordChecksums { get; }
         bool checkConsistency();
         void updateOnChanges();
     }
@@ -63,6 +63,9 @@ namespace wprlib.AppDatabase {
         private const string EXT_TODOLIST = ".todolist";
         private const string EXT_MEMOFILE = ".memo";
         private const string EXT_CHECKSUM = ".checksum";
+        private const string TITLES_FILENAME = ".titles";
+        private const string META_TODOLIST_RECORDS = "todolist.records:";
+        private const string META_MEMO_RECORDS = "memo.records:";
 
         private string basePath;
         private string groupName = null;
@@ -102,6 +105,28 @@ namespace wprlib.AppDatabase {
             }
         }
 
+        public string titlesFilePath {
+            get {
+                return System.IO.Path.GetDirectoryName(basePath)
+                    + System.IO.Path.DirectorySeparatorChar
+                    + TITLES_FILENAME;
+            }
+        }
+
+        // the Java version can prefix every line with its own checksum,
+        // this is told by the checksum file metadata
+        public bool todoHasRecordChecksums {
+            get {
+                return hasChecksumMetadata(META_TODOLIST_RECORDS);
+            }
+        }
+
+        public bool memoHasRecordChecksums {
+            get {
+                return hasChecksumMetadata(META_MEMO_RECORDS);
+            }
+        }
+
         internal string checkSumPath {
             get {
                 return basePath + EXT_CHECKSUM;
@@ -120,6 +145,21 @@ namespace wprlib.AppDatabase {
             return true;
         }
 
+        private bool hasChecksumMetadata(string keyPrefix) {
+            if(File.Exists(checkSumPath)) {
+                StreamReader sr = new StreamReader(checkSumPath);
+                string line;
+                while((line = sr.ReadLine()) != null) {
+                    if(line.StartsWith(keyPrefix)) {
+                        sr.Close();
+                        return true;
+                    }
+                }
+                sr.Close();
+            }
+            return false;
+        }
+
         public void updateOnChanges() {
             uint crc = utilities.CRC32.calcFileCRC32(0, memoFilePath);
             crc = utilities.CRC32.calcFileCRC32(crc, todoFilePath);
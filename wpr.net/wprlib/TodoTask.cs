@@ -124,18 +124,27 @@ namespace wprlib {
                 title;
         }
 
-        internal static TodoTask fromString(string str, Weekly w) {
+        // the title can be encoded by the group title dictionary:
+        // DATE:[A|C];t:CODE
+        internal static TodoTask fromString(string str, Weekly w, IDictionary<string, string> titles) {
             string[] parts = str.Split(':');
             if(parts.Length >= 3) {
                 TaskDate tdate = new TaskDate(parts[0]);
-                if(TASK_ACTIVE.Equals(parts[1]) || TASK_COMPLETED.Equals(parts[1])) {
+                string[] status = parts[1].Split(';');
+                if(TASK_ACTIVE.Equals(status[0]) || TASK_COMPLETED.Equals(status[0])) {
                     string descr = parts[2];
-                    for(int i = 3; i < parts.Length; ++i) {
-                        descr += parts[i];
+                    if(status.Contains(TITLE_CODE)) {
+                        if((null == titles) || (parts.Length != 3) || !titles.TryGetValue(parts[2], out descr)) {
+                            throw new ArgumentException();
+                        }
+                    } else {
+                        for(int i = 3; i < parts.Length; ++i) {
+                            descr += parts[i];
+                        }
                     }
                     TodoTask ttask = new TodoTask(descr, w);
                     ttask.originated = tdate;
-                    ttask.fCompleted = TASK_COMPLETED.Equals(parts[1]);
+                    ttask.fCompleted = TASK_COMPLETED.Equals(status[0]);
                     return ttask;
                 }
             }
@@ -144,6 +153,7 @@ namespace wprlib {
 
         private const string TASK_ACTIVE = "A";
         private const string TASK_COMPLETED = "C";
+        private const string TITLE_CODE = "t";
 
         private string taskDescr = null;
         private Weekly weekly = null;
@@ -7,16 +7,24 @@ using System.IO;
 
 namespace wprlib.utilities {
 
-    public static class CRC32 {
+    public static class CRC32C {
         private static uint[] crcTable = new uint[256];
         private static bool isCrcTableInitialized = false;
-        private const uint POLY = 0xEDB88320;
+        private const uint POLY = 0x82F63B78;
 
-        public static uint calcFileCRC32(uint ival, string filename) {
-            uint crc = 0;
+        public static uint calcCRC32C(byte[] data, int offset, int length) {
+            initCrcTable();
+            uint crc = 0xFFFFFFFF;
+            for(int i = offset; i < offset + length; ++i) {
+                crc = crcTable[(crc ^ data[i]) & 0x0ff] ^ (crc >> 8);
+            }
+            return crc ^ 0xFFFFFFFF;
+        }
+
+        private static void initCrcTable() {
             if(!isCrcTableInitialized) {
                 for(uint i = 0; i < 256; ++i) {
-                    crc = i;
+                    uint crc = i;
                     for(uint j = 0; j < 8; ++j) {
                         crc = (0 != (crc & 0x01)) ? ((crc >> 1) ^ POLY) : (crc >> 1);
                     }
@@ -24,8 +32,57 @@ namespace wprlib.utilities {
                 }
                 isCrcTableInitialized = true;
             }
+        }
+    }
+
+    // files written by the Java version with record checksums on: every
+    // non-empty line is prefixed with 8 hex digits of CRC32C of the line
+    // contents and a space
+    public static class RecordChecksums {
+        private const int PREFIX_SIZE = 9;
+
+        public static List<string> readLines(string filename) {
+            byte[] data = File.ReadAllBytes(filename);
+            List<string> lines = new List<string>();
+            int start = 0;
+            while(start < data.Length) {
+                int end = Array.IndexOf(data, (byte)'\n', start);
+                if(end < 0) {
+                    end = data.Length;
+                }
+                int length = end - start;
+                if((0 == length) || ((1 == length) && ('\r' == data[start]))) {
+                    lines.Add("");
+                } else {
+                    if((length < PREFIX_SIZE) || (' ' != data[start + 8])) {
+                        throw new ChecksumException("Record checksum exception");
+                    }
+                    uint stored;
+                    if(!UInt32.TryParse(Encoding.ASCII.GetString(data, start, 8),
+                            System.Globalization.NumberStyles.AllowHexSpecifier, null, out stored) ||
+                       (stored != CRC32C.calcCRC32C(data, start + PREFIX_SIZE, length - PREFIX_SIZE))) {
+                        throw new ChecksumException("Record checksum exception");
+                    }
+                    int contentLength = length - PREFIX_SIZE;
+                    if('\r' == data[end - 1]) {
+                        --contentLength;
+                    }
+                    lines.Add(Encoding.UTF8.GetString(data, start + PREFIX_SIZE, contentLength));
+                }
+                start = end + 1;
+            }
+            return lines;
+        }
+    }
+
+    public static class CRC32 {
+        private static uint[] crcTable = new uint[256];
+        private static bool isCrcTableInitialized = false;
+        private const uint POLY = 0xEDB88320;
 
-            crc = (0 != ival) ? (ival ^ 0xFFFFFFFF) : 0xFFFFFFFF;
+        public static uint calcFileCRC32(uint ival, string filename) {
+            initCrcTable();
+            uint crc = (0 != ival) ? (ival ^ 0xFFFFFFFF) : 0xFFFFFFFF;
 
             if(File.Exists(filename)) {
                 FileStream fs = new FileStream(filename, FileMode.Open);
@@ -42,5 +99,27 @@ namespace wprlib.utilities {
             }
             return crc ^ 0xFFFFFFFF;
         }
+
+        public static uint calcStringCRC32(string str) {
+            initCrcTable();
+            uint crc = 0xFFFFFFFF;
+            foreach(byte nextByte in Encoding.UTF8.GetBytes(str)) {
+                crc = crcTable[(crc ^ nextByte) & 0x0ff] ^ (crc >> 8);
+            }
+            return crc ^ 0xFFFFFFFF;
+        }
+
+        private static void initCrcTable() {
+            if(!isCrcTableInitialized) {
+                for(uint i = 0; i < 256; ++i) {
+                    uint crc = i;
+                    for(uint j = 0; j < 8; ++j) {
+                        crc = (0 != (crc & 0x01)) ? ((crc >> 1) ^ POLY) : (crc >> 1);
+                    }
+                    crcTable[i] = crc;
+                }
+                isCrcTableInitialized = true;
+            }
+        }
     }
 }
@@ -93,7 +93,13 @@ namespace wprlib {
             }
             
             // load memo file if exists
-            if(File.Exists(filesBundle.memoFilePath)) {
+            if(File.Exists(filesBundle.memoFilePath) && filesBundle.memoHasRecordChecksums) {
+                StringBuilder sb = new StringBuilder();
+                foreach(string line in utilities.RecordChecksums.readLines(filesBundle.memoFilePath)) {
+                    sb.AppendLine(line);
+                }
+                memoText = sb.ToString();
+            } else if(File.Exists(filesBundle.memoFilePath)) {
                 StreamReader sr = new StreamReader(filesBundle.memoFilePath);
                 StringBuilder sb = new StringBuilder();
                 string line;
@@ -106,14 +112,51 @@ namespace wprlib {
 
             // load todo list if exists
             if(File.Exists(filesBundle.todoFilePath)) {
-                StreamReader sr = new StreamReader(filesBundle.todoFilePath);
+                List<string> lines;
+                if(filesBundle.todoHasRecordChecksums) {
+                    lines = utilities.RecordChecksums.readLines(filesBundle.todoFilePath);
+                    lines.RemoveAll(line => 0 == line.Length);
+                } else {
+                    lines = new List<string>();
+                    StreamReader sr = new StreamReader(filesBundle.todoFilePath);
+                    string line;
+                    while((line = sr.ReadLine()) != null) {
+                        lines.Add(line);
+                    }
+                    sr.Close();
+                }
+                Dictionary<string, string> titles = null;
+                foreach(string line in lines) {
+                    if((null == titles) && (line.IndexOf(';') >= 0)) {
+                        titles = loadTitles();
+                    }
+                    TodoTask td = TodoTask.fromString(line, this, titles);
+                    tasks.Add(td);
+                }
+            }
+        }
+
+        // group title dictionary: CODE\tTITLE lines, the code is CRC32 of
+        // the title, entries which don't match it are skipped
+        private Dictionary<string, string> loadTitles() {
+            Dictionary<string, string> titles = new Dictionary<string, string>();
+            if(File.Exists(filesBundle.titlesFilePath)) {
+                StreamReader sr = new StreamReader(filesBundle.titlesFilePath, Encoding.UTF8);
                 string line;
                 while((line = sr.ReadLine()) != null) {
-                    TodoTask td = TodoTask.fromString(line, this);
-                    tasks.Add(td);
+                    int tab = line.IndexOf('\t');
+                    if(tab > 0) {
+                        string code = line.Substring(0, tab);
+                        string title = line.Substring(tab + 1);
+                        if(code.Equals(utilities.CRC32.calcStringCRC32(title).ToString("x")) &&
+                           !titles.ContainsKey(code)) {
+                            titles.Add(code, title);
+                        }
+                    }
                 }
                 sr.Close();
             }
+            return titles;
         }
 
         private void save() {
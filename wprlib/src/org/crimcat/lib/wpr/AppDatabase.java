@@ -9,8 +9,15 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 import org.crimcat.lib.wpr.impl.ConfigurationImpl;
+import org.crimcat.lib.wpr.impl.DatabaseLayout;
 import org.crimcat.lib.wpr.impl.FilesBundleImpl;
+import org.crimcat.lib.wpr.impl.PackFile;
+import org.crimcat.lib.wpr.impl.TitleDictionary;
 
 /**
  * Application database object: gate to application configuration and
@@ -33,6 +40,38 @@ public class AppDatabase {
          * @return true if automatic copy on mondays is on
          */
         boolean doCopyFromThePastOnMondays();
+        
+        /**
+         * If weekly change events should be recorded to the change feed log.
+         * @return true if change events are recorded
+         */
+        boolean doRecordChangeFeed();
+        
+        /**
+         * If task titles should be stored in the group title dictionary
+         * and referred by codes from todo lists.
+         * @return true if titles are encoded
+         */
+        boolean doEncodeTitles();
+        
+        /**
+         * If bundle components should be written in the record format with
+         * a checksum of every record.
+         * @return true if record checksums are written
+         */
+        boolean doRecordChecksums();
+        
+        /**
+         * Get file to export command metrics to when the utility exits.
+         * @return file path or null if metrics are not exported to a file
+         */
+        Path getMetricsFile();
+        
+        /**
+         * Get local port of the metrics endpoint of long running processes.
+         * @return port number or 0 if the endpoint is not started
+         */
+        int getMetricsPort();
     }
 
     /**
@@ -40,6 +79,20 @@ public class AppDatabase {
      * application data.
      */
     public interface FilesBundle {
+        /**
+         * Independently stored and loaded parts of the files bundle.
+         */
+        enum Component {
+            /**
+             * Weekly memo text.
+             */
+            MEMO,
+            /**
+             * List of todo tasks, one task per line.
+             */
+            TODOLIST
+        }
+        
         /**
          * Get path to root folder of application database files.
          * Should not return null.
@@ -49,6 +102,7 @@ public class AppDatabase {
         
         /**
          * Get full path to ToDo list file.
+         * File may be not present at all.
          * @return path object reference to file with list of todos
          */
         Path getTodoListFilePath();
@@ -60,24 +114,143 @@ public class AppDatabase {
          */
         Path getMemoFilePath();
         
+        /**
+         * Read the whole component contents and verify its checksum.
+         * @param c component to read
+         * @return component contents, empty array if the component is not present
+         * @throws IOException
+         * @throws ChecksumException if component contents is damaged
+         */
+        byte[] readComponent(Component c) throws IOException;
+        
+        /**
+         * Read the whole component contents without checksum verification.
+         * @param c component to read
+         * @return component contents, empty array if the component is not present
+         * @throws IOException
+         */
+        byte[] readComponentUnverified(Component c) throws IOException;
+        
+        /**
+         * Read the component records which match their own checksums,
+         * damaged records are skipped. Component written without record
+         * checksums is verified as a whole, as @see readComponent does.
+         * @param c component to read
+         * @param damaged list to add indexes of skipped records to (zero
+         *  based, blank lines are not counted), or null
+         * @return contents of intact records, empty array if the component is not present
+         * @throws IOException
+         * @throws ChecksumException if component has no record checksums and is damaged
+         */
+        byte[] readIntactRecords(Component c, List<Integer> damaged) throws IOException;
+        
+        /**
+         * Read contents of the components concurrently without blocking the
+         * caller on data reading (only the small checksum file can be read
+         * by the caller). Contents are verified against the checksum, the
+         * result future fails with @see ChecksumException if they don't match.
+         * @param components components to read
+         * @return future contents by components, empty array for not present ones
+         */
+        CompletableFuture<Map<Component, byte[]>> readComponentsAsync(Set<Component> components);
+        
+        /**
+         * Replace the component contents. Empty memo removes the memo file.
+         * Checksum is not updated until @see updateChecksum is called.
+         * @param c component to write
+         * @param data new contents
+         * @throws IOException 
+         */
+        void writeComponent(Component c, byte[] data) throws IOException;
+        
+        /**
+         * Append data to the end of the component without reading its
+         * current contents.
+         * Checksum is not updated until @see updateChecksum is called.
+         * @param c component to append data to
+         * @param data data to append
+         * @throws IOException 
+         */
+        void appendComponent(Component c, byte[] data) throws IOException;
+        
         /**
          * Check files consistency.
          * @return true if all data is ok
          */
         boolean checkConsistency();
         
+        /**
+         * Check consistency of one component only.
+         * @param c component to check
+         * @return true if component data is ok
+         */
+        boolean checkConsistency(Component c);
+        
+        /**
+         * Get additional metadata value stored with the bundle checksum.
+         * @param key metadata key
+         * @return value string or null if not found
+         */
+        String getMetadata(String key);
+        
+        /**
+         * Set additional metadata value, it's saved by @see updateChecksum.
+         * @param key metadata key (cannot contain ':' or line breaks)
+         * @param value value string (cannot contain line breaks), null removes the key
+         */
+        void setMetadata(String key, String value);
+        
         /**
          * Force updating checksum on files bundle contents.
          */
         void updateChecksum();
+        
+        /**
+         * Calculate checksum from the current files contents, accepting them
+         * as valid ones, and save it.
+         */
+        void rebuildChecksum();
+        
+        /**
+         * Get title dictionary of the bundle group.
+         * @return title dictionary object
+         */
+        TitleDictionary getTitleDictionary();
+    }
+    
+    /**
+     * Get number of bytes of weeks data read since the process start.
+     * @return number of bytes
+     */
+    public static long getBytesRead() {
+        return FilesBundleImpl.bytesRead();
     }
     
     /**
-     * Get application configuration.
+     * Get number of bytes of weeks data written since the process start.
+     * @return number of bytes
+     */
+    public static long getBytesWritten() {
+        return FilesBundleImpl.bytesWritten();
+    }
+    
+    /**
+     * Get application configuration. It's read once on first call, the call
+     * is safe from background threads.
      * @return configuration instance with current application settings
      */
     public static Configuration getAppConfig() {
-        return new ConfigurationImpl();
+        Configuration config = appConfig;
+        if(null == config) {
+            synchronized(AppDatabase.class) {
+                config = appConfig;
+                if(null == config) {
+                    config = new ConfigurationImpl();
+                    appConfig = config;
+                }
+            }
+        }
+        return config;
     }
     
     /**
@@ -99,10 +272,47 @@ public class AppDatabase {
         return new FilesBundleImpl(td, groupName);
     }
     
+    /**
+     * Get names of all groups in the application database.
+     * @return sorted list of group names
+     * @throws IOException 
+     */
+    public static List<String> listGroups() throws IOException {
+        return DatabaseLayout.listGroups(getDefaultAppDatabasePath());
+    }
+    
+    /**
+     * Get Monday dates of all stored weeks of the group, both separate and
+     * packed ones.
+     * @param groupName group name or null for default group
+     * @return list of Monday dates sorted from the past to the future
+     * @throws IOException 
+     */
+    public static List<TaskDate> listWeeks(String groupName) throws IOException {
+        return DatabaseLayout.listWeeks(DatabaseLayout.groupDirectory(getDefaultAppDatabasePath(), groupName));
+    }
+    
+    /**
+     * Pack all weeks of the given past year of the group into one compressed
+     * yearly pack file. Packed weeks are read transparently by files bundles,
+     * a packed week written again is moved back to separate files.
+     * @param groupName group name or null for default group
+     * @param year year of weeks Mondays, it must be before the current one
+     * @return number of packed weeks
+     * @throws IOException 
+     * @throws IllegalArgumentException if the year is not a past one
+     * @throws ChecksumException if one of the weeks is damaged
+     */
+    public static int packYear(String groupName, int year) throws IOException {
+        return PackFile.pack(
+            DatabaseLayout.groupDirectory(getDefaultAppDatabasePath(), groupName), year, new TaskDate());
+    }
+    
     /**
      * Get default application database path.
      * This is the place where we expect to find application settings and all
-     * file bundles.
+     * file bundles. The directory may not exist yet, it's created when the
+     * first file is written.
      * @return path with full path to the root directory
      */
     public static Path getDefaultAppDatabasePath() {
@@ -111,13 +321,7 @@ public class AppDatabase {
             if(null == home) {
                 throw new RuntimeException();
             }
-            String sep = System.getProperty("file.separator");
-            appDatabasePath = Paths.get(home + sep + APP_DEFAULT_DIR_NAME);
-            if(!Files.exists(appDatabasePath)) try {
-                Files.createDirectory(appDatabasePath);
-            } catch(IOException ex) {
-                throw new RuntimeException(ex.toString());
-            }
+            appDatabasePath = Paths.get(home, APP_DEFAULT_DIR_NAME);
         }
         return appDatabasePath;
     }
@@ -142,6 +346,11 @@ public class AppDatabase {
     private AppDatabase() {
     }
     
+    /**
+     * Application configuration, null if not read yet.
+     */
+    private static volatile Configuration appConfig = null;
+    
     /**
      * Current application database path.
      */
@@ -0,0 +1,463 @@
+/*
+    (java) library for Weekly Plans and Reminder
+
+    Copyright (C) 2011  Stas Torgashov
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+/* File:    ChangeFeed.java
+ * Author:  Stas Torgashov aka Crimson Cat (crimcat@yandex.ru)
+ * Created: 2026, October 19
+ */
+
+package org.crimcat.lib.wpr;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.crimcat.lib.wpr.impl.DatabaseLayout;
+
+/**
+ * Change feed of the group: publisher of events of weekly changes saved by
+ * @see Weekly#sync. If <code>record-change-feed</code> configuration option
+ * is on, events are appended to the group events log, so every event gets a
+ * persistent offset and subscribers can resume from any offset, also after
+ * restart and for changes made by other processes. Subscribers get live
+ * events of the changes made in this process.
+ * Every subscription has a bounded buffer and gets events only as requested.
+ * When a slow subscriber overflows its buffer it continues reading from the
+ * events log, or gets an error if events are not recorded.
+ */
+public class ChangeFeed implements Flow.Publisher<WeeklyEvent> {
+
+    /**
+     * Default subscription buffer capacity.
+     */
+    public static final int DEFAULT_BUFFER_CAPACITY = 256;
+
+    /**
+     * Get change feed of the group in the current database.
+     * @param groupName group name or null for default group
+     * @return change feed object
+     */
+    public static ChangeFeed forGroup(String groupName) {
+        Path logPath = DatabaseLayout.groupDirectory(AppDatabase.getDefaultAppDatabasePath(), groupName)
+            .resolve(DatabaseLayout.EVENTS_FILE_NAME);
+        synchronized(feeds) {
+            return feeds.computeIfAbsent(logPath, p -> new ChangeFeed(groupName, p));
+        }
+    }
+
+    /**
+     * Subscribe to live events.
+     * @param subscriber subscriber object
+     */
+    @Override
+    public void subscribe(Flow.Subscriber<? super WeeklyEvent> subscriber) {
+        subscribe(subscriber, -1, DEFAULT_BUFFER_CAPACITY);
+    }
+
+    /**
+     * Subscribe to events starting from the given offset: recorded events
+     * are replayed first, then live events follow.
+     * @param subscriber subscriber object
+     * @param fromOffset offset of the first event to get, negative for live events only
+     */
+    public void subscribe(Flow.Subscriber<? super WeeklyEvent> subscriber, long fromOffset) {
+        subscribe(subscriber, fromOffset, DEFAULT_BUFFER_CAPACITY);
+    }
+
+    /**
+     * Subscribe to events starting from the given offset with the given
+     * buffer capacity.
+     * @param subscriber subscriber object
+     * @param fromOffset offset of the first event to get, negative for live events only
+     * @param bufferCapacity maximum number of events buffered for the subscriber
+     */
+    public void subscribe(Flow.Subscriber<? super WeeklyEvent> subscriber, long fromOffset, int bufferCapacity) {
+        if(bufferCapacity <= 0) {
+            throw new IllegalArgumentException();
+        }
+        Subscription s = new Subscription(subscriber, bufferCapacity);
+        synchronized(this) {
+            if((fromOffset >= 0) && Files.exists(logPath)) {
+                s.catchingUp = true;
+                s.nextOffset = fromOffset;
+                s.logPosition = 0;
+            }
+            subscriptions.add(s);
+        }
+        subscriber.onSubscribe(s);
+    }
+
+    /**
+     * Get offset of the last event of this feed.
+     * @return offset or 0 if there were no events
+     * @throws IOException 
+     */
+    public synchronized long lastOffset() throws IOException {
+        if(Files.exists(logPath)) {
+            try(FileChannel fc = FileChannel.open(logPath, StandardOpenOption.READ)) {
+                FileLock lock = fc.lock(0, Long.MAX_VALUE, true);
+                try {
+                    readLastEvent(fc);
+                } finally {
+                    lock.release();
+                }
+            }
+        }
+        return lastOffset;
+    }
+
+    /**
+     * Record and publish events of the saved weekly.
+     * @param w weekly object
+     * @param events events of weekly changes
+     * @throws IOException 
+     */
+    static void record(Weekly w, List<WeeklyEvent> events) throws IOException {
+        forGroup(w.group()).publish(w.startedOn(), events);
+    }
+
+    /**
+     * Ctor: feed of the group.
+     * @param groupName group name or null
+     * @param logPath path to events log file
+     */
+    private ChangeFeed(String groupName, Path logPath) {
+        this.groupName = groupName;
+        this.logPath = logPath;
+    }
+
+    /**
+     * Assign offsets to events, store them if needed and pass them to
+     * subscribers. The first change of a newer week is preceded by week
+     * rolled over event.
+     * @param monday Monday of the changed week
+     * @param events events to publish
+     * @throws IOException 
+     */
+    private synchronized void publish(TaskDate monday, List<WeeklyEvent> events) throws IOException {
+        List<WeeklyEvent> published = new ArrayList<>(events.size() + 1);
+        if(AppDatabase.getAppConfig().doRecordChangeFeed()) {
+            try(FileChannel fc = FileChannel.open(logPath, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                FileLock lock = fc.lock();
+                try {
+                    readLastEvent(fc);
+                    long position = fc.size();
+                    StringBuilder sb = new StringBuilder();
+                    for(WeeklyEvent e : withOffsets(monday, events)) {
+                        String line = e.toString() + "\n";
+                        e.logPosition = position;
+                        position += line.getBytes(StandardCharsets.UTF_8).length;
+                        sb.append(line);
+                        published.add(e);
+                    }
+                    ByteBuffer bb = ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8));
+                    long writeAt = fc.size();
+                    while(bb.hasRemaining()) {
+                        writeAt += fc.write(bb, writeAt);
+                    }
+                } finally {
+                    lock.release();
+                }
+            }
+        } else {
+            published.addAll(withOffsets(monday, events));
+        }
+        for(Subscription s : subscriptions) {
+            for(WeeklyEvent e : published) {
+                s.offer(e);
+            }
+            s.drain();
+        }
+    }
+
+    /**
+     * Assign next offsets to events.
+     * @param monday Monday of the changed week
+     * @param events events without offsets
+     * @return events with offsets
+     */
+    private List<WeeklyEvent> withOffsets(TaskDate monday, List<WeeklyEvent> events) {
+        List<WeeklyEvent> result = new ArrayList<>(events.size() + 1);
+        if((null != lastMonday) && (monday.compare(lastMonday) > 0)) {
+            result.add(new WeeklyEvent(++lastOffset, WeeklyEvent.Type.WEEK_ROLLED_OVER,
+                groupName, monday, -1, lastMonday.toString()));
+        }
+        for(WeeklyEvent e : events) {
+            result.add(e.withOffset(++lastOffset));
+        }
+        if((null == lastMonday) || (monday.compare(lastMonday) > 0)) {
+            lastMonday = monday;
+        }
+        return result;
+    }
+
+    /**
+     * Read the last event of the log to know the last offset and week.
+     * @param fc opened log file channel
+     * @throws IOException 
+     */
+    private void readLastEvent(FileChannel fc) throws IOException {
+        final long size = fc.size();
+        long chunk = TAIL_CHUNK_SIZE;
+        while(size > 0) {
+            long start = Math.max(0, size - chunk);
+            ByteBuffer bb = ByteBuffer.allocate((int)(size - start));
+            while(bb.hasRemaining() && (fc.read(bb, start + bb.position()) > 0)) { }
+            String tail = new String(bb.array(), 0, bb.position(), StandardCharsets.UTF_8);
+            int end = tail.lastIndexOf('\n');
+            int begin = (end > 0) ? tail.lastIndexOf('\n', end - 1) : -1;
+            if((begin >= 0) || (0 == start)) {
+                if(end > 0) {
+                    WeeklyEvent last = WeeklyEvent.fromString(tail.substring(begin + 1, end), groupName);
+                    if(null != last) {
+                        lastOffset = last.offset();
+                        if((null == lastMonday) || (last.weekStartedOn().compare(lastMonday) > 0)) {
+                            lastMonday = last.weekStartedOn();
+                        }
+                    }
+                }
+                return;
+            }
+            chunk *= 4;
+        }
+    }
+
+    /**
+     * Subscription of one subscriber.
+     */
+    private final class Subscription implements Flow.Subscription {
+
+        Subscription(Flow.Subscriber<? super WeeklyEvent> subscriber, int capacity) {
+            this.subscriber = subscriber;
+            this.capacity = capacity;
+        }
+
+        @Override
+        public void request(long n) {
+            if(n <= 0) {
+                cancel();
+                subscriber.onError(new IllegalArgumentException("Non-positive request: " + n));
+                return;
+            }
+            synchronized(ChangeFeed.this) {
+                demand = (demand + n < 0) ? Long.MAX_VALUE : demand + n;
+            }
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            synchronized(ChangeFeed.this) {
+                cancelled = true;
+                buffer.clear();
+            }
+            subscriptions.remove(this);
+        }
+
+        /**
+         * Put live event to the buffer. Called with feed lock held.
+         * @param e event
+         */
+        void offer(WeeklyEvent e) {
+            if(cancelled || catchingUp) {
+                return; // catching up subscription reads the event from log
+            }
+            if(buffer.size() < capacity) {
+                buffer.add(e);
+            } else if(e.logPosition >= 0) {
+                catchingUp = true;
+                nextOffset = e.offset();
+                logPosition = e.logPosition;
+            } else {
+                overflow = true;
+            }
+        }
+
+        /**
+         * Schedule delivery of buffered events.
+         */
+        void drain() {
+            if(0 == wip.getAndIncrement()) {
+                deliveryExecutor.execute(this::deliver);
+            }
+        }
+
+        /**
+         * Deliver events while there is demand.
+         */
+        private void deliver() {
+            int missed = 1;
+            do {
+                while(true) {
+                    WeeklyEvent e;
+                    Throwable error = null;
+                    synchronized(ChangeFeed.this) {
+                        if(cancelled) {
+                            return;
+                        }
+                        if(buffer.isEmpty() && catchingUp) {
+                            try {
+                                readFromLog();
+                            } catch(IOException ex) {
+                                error = ex;
+                            }
+                        }
+                        if(buffer.isEmpty() && overflow) {
+                            error = new IllegalStateException("Subscriber buffer overflow");
+                        }
+                        if(null != error) {
+                            cancelled = true;
+                            e = null;
+                        } else if((0 == demand) || buffer.isEmpty()) {
+                            break;
+                        } else {
+                            e = buffer.poll();
+                            --demand;
+                        }
+                    }
+                    if(null != error) {
+                        subscriptions.remove(this);
+                        subscriber.onError(error);
+                        return;
+                    }
+                    try {
+                        subscriber.onNext(e);
+                    } catch(RuntimeException ex) {
+                        // failed subscriber gets no more events, but it's told why
+                        cancel();
+                        subscriber.onError(ex);
+                        return;
+                    }
+                }
+                missed = wip.addAndGet(-missed);
+            } while(0 != missed);
+        }
+
+        /**
+         * Fill the buffer from the log. When the end of the log is reached
+         * the subscription gets live events again. Called with feed lock held.
+         * @throws IOException 
+         */
+        private void readFromLog() throws IOException {
+            try(FileChannel fc = FileChannel.open(logPath, StandardOpenOption.READ)) {
+                ByteBuffer bb = ByteBuffer.allocate(TAIL_CHUNK_SIZE);
+                while(buffer.size() < capacity) {
+                    bb.clear();
+                    int n = fc.read(bb, logPosition);
+                    int lineEnd = -1;
+                    for(int i = 0; i < Math.max(0, n); ++i) {
+                        if('\n' == bb.get(i)) {
+                            lineEnd = i;
+                            break;
+                        }
+                    }
+                    if(lineEnd < 0) {
+                        if(n == bb.capacity()) {
+                            bb = ByteBuffer.allocate(bb.capacity() * 4); // very long line
+                            continue;
+                        }
+                        // end of log, all the next events are live
+                        catchingUp = false;
+                        return;
+                    }
+                    String line = new String(bb.array(), 0, lineEnd, StandardCharsets.UTF_8);
+                    logPosition += lineEnd + 1;
+                    WeeklyEvent e = WeeklyEvent.fromString(line, groupName);
+                    if((null != e) && (e.offset() >= nextOffset)) {
+                        buffer.add(e);
+                        nextOffset = e.offset() + 1;
+                    }
+                }
+            }
+        }
+
+        private final Flow.Subscriber<? super WeeklyEvent> subscriber;
+        private final int capacity;
+        private final ArrayDeque<WeeklyEvent> buffer = new ArrayDeque<>();
+        private final AtomicInteger wip = new AtomicInteger();
+        private long demand = 0;
+        private boolean cancelled = false;
+        private boolean overflow = false;
+        /**
+         * Flag if events are read from the log instead of live events.
+         */
+        private boolean catchingUp = false;
+        /**
+         * Offset of the next event to read from the log.
+         */
+        private long nextOffset = 0;
+        /**
+         * Position in the log to continue reading from.
+         */
+        private long logPosition = 0;
+    }
+
+    /**
+     * Size of log chunk read at once.
+     */
+    private static final int TAIL_CHUNK_SIZE = 8192;
+    /**
+     * Feeds by their log file paths.
+     */
+    private static final Map<Path, ChangeFeed> feeds = new HashMap<>();
+    /**
+     * Executor delivering events to subscribers.
+     */
+    private static final ExecutorService deliveryExecutor = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "wpr-change-feed");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Group name, null for default group.
+     */
+    private final String groupName;
+    /**
+     * Path to events log file.
+     */
+    private final Path logPath;
+    /**
+     * Active subscriptions.
+     */
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    /**
+     * Offset of the last published event.
+     */
+    private long lastOffset = 0;
+    /**
+     * Monday of the latest changed week, null if not known.
+     */
+    private TaskDate lastMonday = null;
+}
@@ -0,0 +1,333 @@
+/*
+    (java) library for Weekly Plans and Reminder
+
+    Copyright (C) 2011  Stas Torgashov
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+/* File:    DatabaseBackup.java
+ * Author:  Stas Torgashov aka Crimson Cat (crimcat@yandex.ru)
+ * Created: 2026, October 19
+ */
+
+package org.crimcat.lib.wpr;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.crimcat.lib.wpr.impl.DatabaseManifest;
+
+/**
+ * Incremental backup of the application database.
+ * Backup directory keeps snapshots, every snapshot has a manifest: list of
+ * all backup units (files bundles of weeks and other database files) with
+ * their signatures and the snapshot holding their copy. Files bundle
+ * signature is its checksum value, files sizes and modification time, so a
+ * new snapshot copies only units changed since the previous one, while its
+ * manifest still describes the whole database at that point in time.
+ * Layout: <code>manifest</code> (copy of the latest snapshot manifest) and
+ * <code>snapshots/ID/</code> with changed files and the snapshot manifest.
+ */
+public class DatabaseBackup {
+
+    /**
+     * Name of manifest file.
+     */
+    public static final String MANIFEST_FILE_NAME = "manifest";
+    /**
+     * Name of directory with snapshots.
+     */
+    public static final String SNAPSHOTS_DIR_NAME = "snapshots";
+
+    /**
+     * Ctor: backup of the given database to the given backup directory.
+     * @param root database root directory
+     * @param backupDir backup directory
+     */
+    public DatabaseBackup(Path root, Path backupDir) {
+        this.root = root;
+        this.backupDir = backupDir;
+    }
+
+    /**
+     * Make new snapshot copying only changed units.
+     * @return new snapshot id
+     * @throws IOException 
+     */
+    public String backup() throws IOException {
+        Map<String, Unit> previous = readManifest(backupDir.resolve(MANIFEST_FILE_NAME));
+        Map<String, Unit> current = scan(root);
+        final String id = newSnapshotId();
+        final Path snapshotDir = backupDir.resolve(SNAPSHOTS_DIR_NAME).resolve(id);
+        Files.createDirectories(snapshotDir);
+
+        List<Unit> changed = new ArrayList<>();
+        for(Unit u : current.values()) {
+            Unit old = previous.get(u.key);
+            if((null != old) && old.signature.equals(u.signature)) {
+                u.snapshotId = old.snapshotId;
+            } else {
+                u.snapshotId = id;
+                changed.add(u);
+            }
+        }
+        copyUnits(changed, root, snapshotDir, true);
+
+        writeManifest(snapshotDir.resolve(MANIFEST_FILE_NAME), current);
+        Path tmp = backupDir.resolve(MANIFEST_FILE_NAME + ".tmp");
+        writeManifest(tmp, current);
+        Files.move(tmp, backupDir.resolve(MANIFEST_FILE_NAME),
+            StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        lastChangedCount = changed.size();
+        return id;
+    }
+
+    /**
+     * Restore the database as it was at the given snapshot.
+     * @param snapshotId snapshot id
+     * @param targetRoot directory to restore database to, it must be empty or absent
+     * @throws IOException 
+     */
+    public void restore(String snapshotId, Path targetRoot) throws IOException {
+        Path manifest = backupDir.resolve(SNAPSHOTS_DIR_NAME).resolve(snapshotId).resolve(MANIFEST_FILE_NAME);
+        if(!Files.exists(manifest)) {
+            throw new IOException("Snapshot not found: " + snapshotId);
+        }
+        if(Files.exists(targetRoot)) {
+            try(DirectoryStream<Path> ds = Files.newDirectoryStream(targetRoot)) {
+                if(ds.iterator().hasNext()) {
+                    throw new IOException("Target directory is not empty: " + targetRoot);
+                }
+            }
+        }
+        Map<String, Unit> units = readManifest(manifest);
+        List<Unit> all = new ArrayList<>(units.values());
+        copyUnits(all, null, targetRoot, false);
+    }
+
+    /**
+     * Get list of snapshot ids.
+     * @return sorted list of ids, the latest is the last
+     * @throws IOException 
+     */
+    public List<String> listSnapshots() throws IOException {
+        List<String> ids = new ArrayList<>();
+        Path dir = backupDir.resolve(SNAPSHOTS_DIR_NAME);
+        if(Files.isDirectory(dir)) {
+            try(DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+                for(Path p : ds) {
+                    if(Files.exists(p.resolve(MANIFEST_FILE_NAME))) {
+                        ids.add(p.getFileName().toString());
+                    }
+                }
+            }
+        }
+        ids.sort(null);
+        return ids;
+    }
+
+    /**
+     * Get number of units copied by the last backup.
+     * @return number of changed units
+     */
+    public int lastChangedCount() {
+        return lastChangedCount;
+    }
+
+    /**
+     * Copy units files in parallel.
+     * @param units units to copy
+     * @param from source root, null to take units from their snapshots
+     * @param to target directory
+     * @param verify if the source signature should be checked after copy
+     * @throws IOException 
+     */
+    private void copyUnits(List<Unit> units, Path from, Path to, boolean verify) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        try {
+            List<Future<Void>> results = new ArrayList<>();
+            for(Unit u : units) {
+                results.add(pool.submit(() -> {
+                    Path source = (null != from) ? from
+                        : backupDir.resolve(SNAPSHOTS_DIR_NAME).resolve(u.snapshotId);
+                    for(int attempt = 0; ; ++attempt) {
+                        for(String f : u.files) {
+                            copyFile(source.resolve(f), to.resolve(f));
+                        }
+                        if(!verify) {
+                            break;
+                        }
+                        // the bundle could be saved while it was copied
+                        String now = DatabaseManifest.scanEntry(from, u.key, null, null, u.files).signature();
+                        if(now.equals(u.signature)) {
+                            break;
+                        }
+                        if(attempt >= COPY_ATTEMPTS) {
+                            throw new IOException("Files are being changed: " + u.key);
+                        }
+                        u.signature = now;
+                    }
+                    return null;
+                }));
+            }
+            for(Future<Void> f : results) {
+                f.get();
+            }
+        } catch(InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException(ex.toString());
+        } catch(ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            throw (cause instanceof IOException) ? (IOException)cause : new IOException(cause.toString());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Copy one file through file channels.
+     * @param source source file
+     * @param target target file
+     * @throws IOException 
+     */
+    private static void copyFile(Path source, Path target) throws IOException {
+        Files.createDirectories(target.getParent());
+        try(FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+            FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            final long size = in.size();
+            long done = 0;
+            while(done < size) {
+                done += in.transferTo(done, size - done, out);
+            }
+        }
+    }
+
+    /**
+     * Scan the database: find all backup units.
+     * @param root database root
+     * @return units by their keys
+     * @throws IOException 
+     */
+    private static Map<String, Unit> scan(Path root) throws IOException {
+        Map<String, Unit> units = new TreeMap<>();
+        for(DatabaseManifest.Entry e : DatabaseManifest.scan(root).values()) {
+            units.put(e.key(), new Unit(e));
+        }
+        return units;
+    }
+
+    /**
+     * Read manifest file.
+     * @param path manifest path
+     * @return units by their keys, empty if there is no manifest
+     * @throws IOException 
+     */
+    private static Map<String, Unit> readManifest(Path path) throws IOException {
+        Map<String, Unit> units = new TreeMap<>();
+        if(Files.exists(path)) {
+            try(BufferedReader br = Files.newBufferedReader(path)) {
+                String line;
+                while(null != (line = br.readLine())) {
+                    String[] parts = line.split("\t");
+                    if(4 == parts.length) {
+                        Unit u = new Unit(null);
+                        u.key = parts[0];
+                        u.signature = parts[1];
+                        u.snapshotId = parts[2];
+                        u.files = new ArrayList<>();
+                        for(String f : parts[3].split("\\|")) {
+                            u.files.add(f);
+                        }
+                        units.put(u.key, u);
+                    }
+                }
+            }
+        }
+        return units;
+    }
+
+    /**
+     * Write manifest file, one unit per line: key, signature, snapshot id
+     * and list of files separated by tabs.
+     * @param path manifest path
+     * @param units units to write
+     * @throws IOException 
+     */
+    private static void writeManifest(Path path, Map<String, Unit> units) throws IOException {
+        try(BufferedWriter bw = Files.newBufferedWriter(path)) {
+            for(Unit u : units.values()) {
+                bw.write(u.key + "\t" + u.signature + "\t" + u.snapshotId + "\t" + String.join("|", u.files));
+                bw.newLine();
+            }
+        }
+    }
+
+    /**
+     * Generate new snapshot id from the current time, unique in the backup
+     * directory.
+     * @return snapshot id
+     */
+    private String newSnapshotId() {
+        String base = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+        String id = base;
+        for(int n = 1; Files.exists(backupDir.resolve(SNAPSHOTS_DIR_NAME).resolve(id)); ++n) {
+            id = base + "-" + n;
+        }
+        return id;
+    }
+
+    /**
+     * Backup unit: files bundle of one week or another database file.
+     */
+    private static final class Unit {
+        Unit(DatabaseManifest.Entry e) {
+            if(null != e) {
+                key = e.key();
+                signature = e.signature();
+                files = e.files();
+            }
+        }
+        String key;
+        String signature;
+        String snapshotId;
+        List<String> files;
+    }
+
+    /**
+     * Number of attempts to copy a unit being changed.
+     */
+    private static final int COPY_ATTEMPTS = 3;
+
+    private final Path root;
+    private final Path backupDir;
+    private int lastChangedCount = 0;
+}
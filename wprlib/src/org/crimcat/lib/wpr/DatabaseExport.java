@@ -0,0 +1,226 @@
+/*
+    (java) library for Weekly Plans and Reminder
+
+    Copyright (C) 2011  Stas Torgashov
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+/* File:    DatabaseExport.java
+ * Author:  Stas Torgashov aka Crimson Cat (crimcat@yandex.ru)
+ * Created: 2026, October 19
+ */
+
+package org.crimcat.lib.wpr;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Export of tasks of several groups as a flat table: one row per task
+ * record with its group, week, creation date, status and title. Weeks are
+ * read in parallel by @see TaskQuery, which keeps only a limited number of
+ * loaded weeks ahead of the writer, so memory use does not depend on the
+ * database size and a slow output holds loading back. Rows are written in
+ * dates order.
+ */
+public class DatabaseExport {
+
+    /**
+     * Output format.
+     */
+    public enum Format {
+        /**
+         * Comma separated values with header line (RFC 4180).
+         */
+        CSV,
+        /**
+         * One JSON object per line.
+         */
+        NDJSON
+    }
+
+    /**
+     * Ctor: export of the given database.
+     * @param root database root directory
+     * @param threads number of parallel loading threads
+     */
+    public DatabaseExport(Path root, int threads) {
+        this.root = root;
+        this.threads = threads;
+    }
+
+    /**
+     * Write tasks created in the date range. Output is not flushed or
+     * closed.
+     * @param groups group names, null element for default group
+     * @param from first date of tasks or null for no lower bound
+     * @param to last date of tasks or null for no upper bound
+     * @param format output format
+     * @param out output writer, buffered one is expected
+     * @return number of written rows
+     * @throws IOException 
+     */
+    public long write(List<String> groups, TaskDate from, TaskDate to, Format format, Writer out)
+            throws IOException {
+        long rows = 0;
+        StringBuilder sb = new StringBuilder(256);
+        // rows come in dates order, so dates strings are made once per date
+        TaskDate week = null;
+        TaskDate date = null;
+        String weekStr = null;
+        String dateStr = null;
+        if(Format.CSV == format) {
+            out.write("group,week,originated,status,title\r\n");
+        }
+        try(Stream<TaskEntry> tasks = new TaskQuery(root, threads).select(groups, from, to, TaskQuery.Status.ANY)) {
+            Iterator<TaskEntry> it = tasks.iterator();
+            while(it.hasNext()) {
+                TaskEntry e = it.next();
+                if((null == week) || (0 != week.compare(e.weekStartedOn()))) {
+                    week = e.weekStartedOn();
+                    weekStr = week.toString();
+                }
+                if((null == date) || (0 != date.compare(e.task().originatedOn()))) {
+                    date = e.task().originatedOn();
+                    dateStr = date.toString();
+                }
+                sb.setLength(0);
+                if(Format.CSV == format) {
+                    formatCsv(e, weekStr, dateStr, sb);
+                } else {
+                    formatJson(e, weekStr, dateStr, sb);
+                }
+                out.append(sb);
+                ++rows;
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Format CSV row.
+     * @param e task entry
+     * @param week week Monday date string
+     * @param originated task creation date string
+     * @param sb output buffer
+     */
+    private static void formatCsv(TaskEntry e, String week, String originated, StringBuilder sb) {
+        if(null != e.group()) {
+            csvField(e.group(), sb);
+        }
+        sb.append(',').append(week);
+        sb.append(',').append(originated);
+        sb.append(',').append(status(e.task()));
+        sb.append(',');
+        csvField(e.task().title(), sb);
+        sb.append("\r\n");
+    }
+
+    /**
+     * Append CSV field, quoted if it has separators, quotes or line breaks.
+     * @param value field value
+     * @param sb output buffer
+     */
+    private static void csvField(String value, StringBuilder sb) {
+        boolean quote = false;
+        for(int i = 0; !quote && (i < value.length()); ++i) {
+            char c = value.charAt(i);
+            quote = (',' == c) || ('"' == c) || ('\r' == c) || ('\n' == c);
+        }
+        if(!quote) {
+            sb.append(value);
+            return;
+        }
+        sb.append('"');
+        for(int i = 0; i < value.length(); ++i) {
+            char c = value.charAt(i);
+            if('"' == c) {
+                sb.append('"');
+            }
+            sb.append(c);
+        }
+        sb.append('"');
+    }
+
+    /**
+     * Format JSON line.
+     * @param e task entry
+     * @param week week Monday date string
+     * @param originated task creation date string
+     * @param sb output buffer
+     */
+    private static void formatJson(TaskEntry e, String week, String originated, StringBuilder sb) {
+        sb.append("{\"group\":");
+        if(null == e.group()) {
+            sb.append("null");
+        } else {
+            jsonString(e.group(), sb);
+        }
+        sb.append(",\"week\":\"").append(week);
+        sb.append("\",\"originated\":\"").append(originated);
+        sb.append("\",\"status\":\"").append(status(e.task()));
+        sb.append("\",\"title\":");
+        jsonString(e.task().title(), sb);
+        sb.append("}\n");
+    }
+
+    /**
+     * Append JSON string literal.
+     * @param value string value
+     * @param sb output buffer
+     */
+    private static void jsonString(String value, StringBuilder sb) {
+        sb.append('"');
+        for(int i = 0; i < value.length(); ++i) {
+            char c = value.charAt(i);
+            switch(c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if(c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int)c));
+                    } else {
+                        sb.append(c);
+                    }
+                    break;
+            }
+        }
+        sb.append('"');
+    }
+
+    private static String status(TodoTask tt) {
+        return tt.isCompleted() ? "completed" : "active";
+    }
+
+    private final Path root;
+    private final int threads;
+}
@@ -0,0 +1,510 @@
+/*
+    (java) library for Weekly Plans and Reminder
+
+    Copyright (C) 2011  Stas Torgashov
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+/* File:    DatabaseSync.java
+ * Author:  Stas Torgashov aka Crimson Cat (crimcat@yandex.ru)
+ * Created: 2026, October 19
+ */
+
+package org.crimcat.lib.wpr;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+import org.crimcat.lib.wpr.AppDatabase.FilesBundle.Component;
+import org.crimcat.lib.wpr.impl.DatabaseLayout;
+import org.crimcat.lib.wpr.impl.DatabaseManifest;
+import org.crimcat.lib.wpr.impl.FilesBundleImpl;
+import org.crimcat.lib.wpr.impl.TitleDictionary;
+
+/**
+ * Delta synchronization of two databases (e.g. a local one and a copy on
+ * a shared drive). Manifests of both databases are compared and only weeks
+ * (and year packs) with different contents are transferred. The state of
+ * the last synchronization is kept in both databases, so a week changed on
+ * one side only is simply copied, while a week changed on both sides is
+ * merged task by task: tasks of both sides matched one to one in order of
+ * their records, a task completed on either side is completed; different
+ * memos of both sides are kept in full one after another.
+ * Databases must not be modified while synchronization is running.
+ */
+public class DatabaseSync {
+
+    /**
+     * Synchronization result.
+     */
+    public static final class Result {
+        /**
+         * Get number of entries copied (or deleted) in local database.
+         * @return number of entries
+         */
+        public int copiedToLocal() {
+            return toLocal;
+        }
+
+        /**
+         * Get number of entries copied (or deleted) in remote database.
+         * @return number of entries
+         */
+        public int copiedToRemote() {
+            return toRemote;
+        }
+
+        /**
+         * Get number of weeks changed on both sides and merged.
+         * @return number of weeks
+         */
+        public int merged() {
+            return merged;
+        }
+
+        /**
+         * Get descriptions of entries which could not be synchronized.
+         * @return list of descriptions
+         */
+        public List<String> conflicts() {
+            return Collections.unmodifiableList(conflicts);
+        }
+
+        private int toLocal = 0;
+        private int toRemote = 0;
+        private int merged = 0;
+        private final List<String> conflicts = new ArrayList<>();
+    }
+
+    /**
+     * Name of directory in database root keeping synchronization state.
+     */
+    public static final String SYNC_DIR_NAME = ".sync";
+
+    /**
+     * Ctor: synchronization of two databases.
+     * @param local local database root directory
+     * @param remote remote database root directory
+     */
+    public DatabaseSync(Path local, Path remote) {
+        this.local = local;
+        this.remote = remote;
+    }
+
+    /**
+     * Synchronize databases.
+     * @return synchronization result
+     * @throws IOException 
+     */
+    public Result sync() throws IOException {
+        if(!Files.isDirectory(remote)) {
+            throw new IOException("Database directory does not exist: " + remote);
+        }
+        Path localState = statePath(local, remote);
+        Path remoteState = statePath(remote, local);
+        Map<String, DatabaseManifest.Entry> lm = DatabaseManifest.scan(local);
+        Map<String, DatabaseManifest.Entry> rm = DatabaseManifest.scan(remote);
+        Map<String, String> base = readState(localState);
+        if(base.isEmpty()) {
+            base = readState(remoteState);
+        }
+        Result result = new Result();
+        Set<String> codeConflicts = mergeTitleDictionaries(result);
+        Set<String> lPacked = packedWeeks(local, lm);
+        Set<String> rPacked = packedWeeks(remote, rm);
+
+        Map<String, String> state = new TreeMap<>();
+        Set<String> keys = new TreeSet<>(lm.keySet());
+        keys.addAll(rm.keySet());
+        for(String key : keys) {
+            DatabaseManifest.Entry l = lm.get(key);
+            DatabaseManifest.Entry r = rm.get(key);
+            if(!isSynchronized(null != l ? l : r)) {
+                continue;
+            }
+            String ls = (null == l) ? null : l.contentSignature();
+            String rs = (null == r) ? null : r.contentSignature();
+            String bs = base.get(key);
+            if(null != ls && ls.equals(rs)) {
+                state.put(key, ls);
+            } else if(codeConflicts.contains((null != l ? l : r).group())) {
+                // encoded titles would be decoded to other titles on the other side
+                result.conflicts.add(key + ": not synchronized, title codes of the group differ");
+                putIfNotNull(state, key, bs);
+            } else if((null == l && rPacked.contains(key)) || (null == r && lPacked.contains(key))) {
+                // the week is loose on one side and packed on the other one
+                result.conflicts.add(key + ": packed on one side only, pack its year on both sides");
+                putIfNotNull(state, key, bs);
+            } else if(equal(ls, bs)) {
+                transfer(r, l, remote, local);
+                refreshRollups(local, l, r);
+                putIfNotNull(state, key, rs);
+                ++result.toLocal;
+            } else if(equal(rs, bs) || null == r) {
+                transfer(l, r, local, remote);
+                refreshRollups(remote, l, r);
+                putIfNotNull(state, key, ls);
+                ++result.toRemote;
+            } else if(null == l) {
+                transfer(r, l, remote, local);
+                refreshRollups(local, l, r);
+                state.put(key, rs);
+                ++result.toLocal;
+            } else if(null == l.monday()) {
+                result.conflicts.add(key + ": changed on both sides");
+                putIfNotNull(state, key, bs);
+            } else {
+                String error;
+                try {
+                    error = merge(l, r, result);
+                } catch(ChecksumException ex) {
+                    error = ex.getMessage();
+                }
+                if(null == error) {
+                    state.put(key, DatabaseManifest.scanEntry(local, key, l.group(), l.monday(),
+                        bundleFiles(l, r)).contentSignature());
+                    ++result.merged;
+                } else {
+                    result.conflicts.add(key + ": changed on both sides, cannot merge: " + error);
+                    putIfNotNull(state, key, bs);
+                }
+            }
+        }
+        writeState(localState, state);
+        writeState(remoteState, state);
+        return result;
+    }
+
+    /**
+     * Make title dictionaries of every group the same in both databases, so
+     * weeks with encoded titles can be transferred. Weeks of groups whose
+     * dictionaries have the same code for different titles are not
+     * synchronized.
+     * @param result synchronization result to add conflicts to
+     * @return names of groups with conflicting title codes, null stands for
+     * the default group
+     * @throws IOException 
+     */
+    private Set<String> mergeTitleDictionaries(Result result) throws IOException {
+        Set<String> conflicting = new HashSet<>();
+        Set<String> groups = new TreeSet<>(Comparator.nullsFirst(Comparator.<String>naturalOrder()));
+        groups.add(null);
+        groups.addAll(DatabaseLayout.listGroups(local));
+        groups.addAll(DatabaseLayout.listGroups(remote));
+        for(String group : groups) {
+            Path ld = DatabaseLayout.groupDirectory(local, group);
+            Path rd = DatabaseLayout.groupDirectory(remote, group);
+            if(!Files.exists(ld.resolve(DatabaseLayout.TITLES_FILE_NAME)) &&
+               !Files.exists(rd.resolve(DatabaseLayout.TITLES_FILE_NAME))) {
+                continue;
+            }
+            TitleDictionary ldict = TitleDictionary.forDirectory(ld);
+            TitleDictionary rdict = TitleDictionary.forDirectory(rd);
+            for(String code : ldict.merge(rdict)) {
+                result.conflicts.add(((null == group) ? "" : group + "/") + DatabaseLayout.TITLES_FILE_NAME +
+                    ": title code " + code + " differs");
+                conflicting.add(group);
+            }
+            rdict.merge(ldict);
+        }
+        return conflicting;
+    }
+
+    /**
+     * Check if the entry is synchronized: week bundles and year packs are,
+     * configuration and change feed log are local for each database.
+     * @param e manifest entry
+     * @return true if the entry is synchronized
+     */
+    private static boolean isSynchronized(DatabaseManifest.Entry e) {
+        return (null != e.monday()) || e.key().endsWith(DatabaseLayout.EXT_PACK);
+    }
+
+    /**
+     * Get keys of weeks stored in packs of the database.
+     * @param root database root
+     * @param manifest database manifest
+     * @return set of week keys
+     * @throws IOException 
+     */
+    private static Set<String> packedWeeks(Path root, Map<String, DatabaseManifest.Entry> manifest)
+            throws IOException {
+        Set<String> weeks = new HashSet<>();
+        Set<String> groups = new HashSet<>();
+        for(DatabaseManifest.Entry e : manifest.values()) {
+            if(e.key().endsWith(DatabaseLayout.EXT_PACK) && groups.add(String.valueOf(e.group()))) {
+                String prefix = (null == e.group()) ? "" : e.group() + "/";
+                for(TaskDate td : DatabaseLayout.listWeeks(DatabaseLayout.groupDirectory(root, e.group()))) {
+                    String key = prefix + td.toString();
+                    if(!manifest.containsKey(key)) {
+                        weeks.add(key);
+                    }
+                }
+            }
+        }
+        return weeks;
+    }
+
+    /**
+     * Transfer entry files from one database to another one, files of the
+     * entry which are absent in the source are deleted in the target.
+     * @param e source entry or null if the entry is to be deleted
+     * @param old target entry as it was scanned before synchronization or null
+     * @param from source database root
+     * @param to target database root
+     * @throws IOException 
+     */
+    private static void transfer(DatabaseManifest.Entry e, DatabaseManifest.Entry old,
+                                 Path from, Path to) throws IOException {
+        List<String> files = (null == e) ? Collections.<String>emptyList() : e.files();
+        for(String f : files) {
+            Path target = to.resolve(f);
+            Files.createDirectories(target.getParent());
+            Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+            Files.copy(from.resolve(f), tmp, StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.COPY_ATTRIBUTES);
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+        // remove target files of the entry which source does not have
+        if(null != old) {
+            for(String f : old.files()) {
+                if(!files.contains(f)) {
+                    Files.deleteIfExists(to.resolve(f));
+                }
+            }
+        }
+    }
+
+    /**
+     * Merge week changed in both databases and write the result to both.
+     * Tasks are merged as multisets: the n-th task with the given key on one
+     * side is the n-th task with this key on the other side, so tasks with
+     * the same title created the same day are all kept.
+     * @param l local entry
+     * @param r remote entry
+     * @param result synchronization result to add notes to
+     * @return null if merged, error description otherwise
+     * @throws IOException 
+     */
+    private String merge(DatabaseManifest.Entry l, DatabaseManifest.Entry r, Result result) throws IOException {
+        FilesBundleImpl lb = new FilesBundleImpl(local, l.group(), l.monday());
+        FilesBundleImpl rb = new FilesBundleImpl(remote, r.group(), r.monday());
+
+        List<TodoTask> merged = new ArrayList<>();
+        Map<String, List<TodoTask>> localTasks = new HashMap<>();
+        WeekLineage lineage = WeekLineage.read(lb);
+        for(String line : readLines(lb.readComponent(Component.TODOLIST))) {
+            TodoTask tt = TodoTask.parse(line, lb.getTitleDictionary());
+            if(null == tt) {
+                return "cannot parse todo record: " + line;
+            }
+            lineage.apply(tt, merged.size());
+            merged.add(tt);
+            localTasks.computeIfAbsent(taskKey(tt), k -> new ArrayList<>()).add(tt);
+        }
+        Map<String, Integer> remoteCounts = new HashMap<>();
+        lineage = WeekLineage.read(rb);
+        int index = 0;
+        for(String line : readLines(rb.readComponent(Component.TODOLIST))) {
+            TodoTask tt = TodoTask.parse(line, rb.getTitleDictionary());
+            if(null == tt) {
+                return "cannot parse todo record: " + line;
+            }
+            lineage.apply(tt, index++);
+            int n = remoteCounts.merge(taskKey(tt), 1, Integer::sum);
+            List<TodoTask> same = localTasks.get(taskKey(tt));
+            if((null == same) || (n > same.size())) {
+                merged.add(tt);
+            } else if(tt.isCompleted()) {
+                same.get(n - 1).markCompleted();
+            }
+        }
+        byte[] memo = mergeMemo(lb.readComponent(Component.MEMO), rb.readComponent(Component.MEMO));
+        if(null == memo) {
+            memo = lb.readComponent(Component.MEMO);
+        } else {
+            result.conflicts.add(l.key() + ": memo changed on both sides, both versions are kept");
+        }
+
+        for(FilesBundleImpl b : new FilesBundleImpl[] { lb, rb }) {
+            Weekly.writeTasks(b, merged);
+            b.writeComponent(Component.MEMO, memo);
+            b.updateChecksum();
+            PeriodRollups.replaceWeek(b.getRootDatabasePath(), l.group(), l.monday(), merged);
+        }
+        return null;
+    }
+
+    /**
+     * Update period rollups of the week transferred to the database.
+     * @param root target database root
+     * @param l local entry or null
+     * @param r remote entry or null
+     * @throws IOException 
+     */
+    private static void refreshRollups(Path root, DatabaseManifest.Entry l, DatabaseManifest.Entry r) throws IOException {
+        DatabaseManifest.Entry e = (null != l) ? l : r;
+        if((null != e) && (null != e.monday())) {
+            PeriodRollups.refreshWeek(root, e.group(), e.monday());
+        }
+    }
+
+    /**
+     * Join memos of both sides. Memos are free text, so lines are not
+     * matched: the local memo is followed by the remote one, both in full.
+     * @param lmemo local memo contents
+     * @param rmemo remote memo contents
+     * @return joined memo, null if memos are the same or one is empty
+     */
+    private static byte[] mergeMemo(byte[] lmemo, byte[] rmemo) {
+        String ltext = new String(lmemo, StandardCharsets.UTF_8);
+        String rtext = new String(rmemo, StandardCharsets.UTF_8);
+        if(ltext.equals(rtext) || rtext.trim().isEmpty()) {
+            return null;
+        }
+        if(ltext.trim().isEmpty()) {
+            return rmemo;
+        }
+        boolean lineEnd = ltext.endsWith("\n");
+        return (ltext + (lineEnd ? "" : System.lineSeparator()) + rtext).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Get task key: tasks with the same creation date and title have the
+     * same key, they are told apart by their order.
+     * @param tt todo task
+     * @return key string
+     */
+    private static String taskKey(TodoTask tt) {
+        return tt.originatedOn().toString() + ":" + tt.title();
+    }
+
+    /**
+     * Get all files of both entries.
+     * @param l local entry
+     * @param r remote entry
+     * @return list of files relative paths
+     */
+    private static List<String> bundleFiles(DatabaseManifest.Entry l, DatabaseManifest.Entry r) {
+        Set<String> files = new TreeSet<>(l.files());
+        files.addAll(r.files());
+        return new ArrayList<>(files);
+    }
+
+    /**
+     * Split component data into non-empty text lines.
+     * @param data component data
+     * @return list of lines
+     * @throws IOException 
+     */
+    private static List<String> readLines(byte[] data) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try(BufferedReader br = new BufferedReader(new InputStreamReader(
+                new ByteArrayInputStream(data), StandardCharsets.UTF_8))) {
+            String nextLine;
+            while(null != (nextLine = br.readLine())) {
+                if(nextLine.length() > 0) {
+                    lines.add(nextLine);
+                }
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Get path of synchronization state file kept in the database for the
+     * given peer database.
+     * @param root database root
+     * @param peer peer database root
+     * @return state file path
+     * @throws IOException 
+     */
+    private static Path statePath(Path root, Path peer) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(peer.toRealPath().toString().getBytes(StandardCharsets.UTF_8));
+        return root.resolve(SYNC_DIR_NAME).resolve(Long.toHexString(crc.getValue()));
+    }
+
+    /**
+     * Read synchronization state: entries contents signatures after the
+     * last synchronization.
+     * @param path state file path
+     * @return signatures by entry keys, empty if there is no state
+     * @throws IOException 
+     */
+    private static Map<String, String> readState(Path path) throws IOException {
+        Map<String, String> state = new HashMap<>();
+        if(Files.exists(path)) {
+            try(BufferedReader br = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                String line;
+                while(null != (line = br.readLine())) {
+                    int pos = line.indexOf('\t');
+                    if(pos > 0) {
+                        state.put(line.substring(0, pos), line.substring(pos + 1));
+                    }
+                }
+            }
+        }
+        return state;
+    }
+
+    /**
+     * Write synchronization state.
+     * @param path state file path
+     * @param state signatures by entry keys
+     * @throws IOException 
+     */
+    private static void writeState(Path path, Map<String, String> state) throws IOException {
+        Files.createDirectories(path.getParent());
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try(BufferedWriter bw = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            for(Map.Entry<String, String> e : state.entrySet()) {
+                bw.write(e.getKey() + "\t" + e.getValue());
+                bw.newLine();
+            }
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static boolean equal(String a, String b) {
+        return (null == a) ? (null == b) : a.equals(b);
+    }
+
+    private static void putIfNotNull(Map<String, String> state, String key, String value) {
+        if(null != value) {
+            state.put(key, value);
+        }
+    }
+
+    private final Path local;
+    private final Path remote;
+}
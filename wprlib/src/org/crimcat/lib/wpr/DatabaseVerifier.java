@@ -0,0 +1,319 @@
+/*
+    (java) library for Weekly Plans and Reminder
+
+    Copyright (C) 2011  Stas Torgashov
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+/* File:    DatabaseVerifier.java
+ * Author:  Stas Torgashov aka Crimson Cat (crimcat@yandex.ru)
+ * Created: 2026, October 19
+ */
+
+package org.crimcat.lib.wpr;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.crimcat.lib.wpr.AppDatabase.FilesBundle.Component;
+import org.crimcat.lib.wpr.impl.DatabaseLayout;
+import org.crimcat.lib.wpr.impl.FilesBundleImpl;
+import org.crimcat.lib.wpr.impl.TitleDictionary;
+
+/**
+ * Database verification: checks checksums of every files bundle of every
+ * group, both separate and packed ones, that every task record can be read
+ * and that tasks dates are inside their weeks. Weeks are checked in
+ * parallel. Damaged bundles can be repaired by checksum rebuilding (if all
+ * records can be read) or moved to quarantine directory.
+ */
+public class DatabaseVerifier {
+
+    /**
+     * Repair action for damaged bundles.
+     */
+    public enum Repair {
+        /**
+         * Report problems only.
+         */
+        NONE,
+        /**
+         * Rebuild checksum of bundles with checksum mismatch but readable
+         * records.
+         */
+        REBUILD_CHECKSUM,
+        /**
+         * Drop damaged records of bundles written with record checksums,
+         * intact records are kept.
+         */
+        DROP_DAMAGED_RECORDS,
+        /**
+         * Move files of damaged bundles to quarantine directory.
+         */
+        QUARANTINE
+    }
+
+    /**
+     * Found problem.
+     */
+    public static final class Problem {
+        Problem(String groupName, TaskDate monday, String description, boolean repaired) {
+            this.groupName = groupName;
+            this.monday = monday;
+            this.description = description;
+            this.repaired = repaired;
+        }
+
+        /**
+         * Get group name.
+         * @return group name or null for default group
+         */
+        public String group() {
+            return groupName;
+        }
+
+        /**
+         * Get Monday of the damaged week.
+         * @return Monday date or null if the problem is not of one week,
+         * e.g. of the group title dictionary
+         */
+        public TaskDate weekStartedOn() {
+            return monday;
+        }
+
+        /**
+         * Get problem description.
+         * @return description text
+         */
+        public String description() {
+            return description;
+        }
+
+        /**
+         * Check if the problem was repaired.
+         * @return true if repaired
+         */
+        public boolean isRepaired() {
+            return repaired;
+        }
+
+        @Override
+        public String toString() {
+            return ((null == groupName) ? "" : groupName + "/") + ((null == monday) ? "" : monday + ": ") + description +
+                (repaired ? " (repaired)" : "");
+        }
+
+        private final String groupName;
+        private final TaskDate monday;
+        private final String description;
+        private final boolean repaired;
+    }
+
+    /**
+     * Name of quarantine directory in database root.
+     */
+    public static final String QUARANTINE_DIR_NAME = ".quarantine";
+
+    /**
+     * Ctor: verifier of the given database.
+     * @param root database root directory
+     * @param repair repair action
+     * @param threads number of parallel threads
+     */
+    public DatabaseVerifier(Path root, Repair repair, int threads) {
+        this.root = root;
+        this.repair = repair;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Verify all weeks of the given groups.
+     * @param groups group names, null element for default group
+     * @return list of problems, empty if everything is ok
+     * @throws IOException 
+     */
+    public List<Problem> verify(List<String> groups) throws IOException {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<List<Problem>>> results = new ArrayList<>();
+            for(String group : groups) {
+                for(TaskDate monday : DatabaseLayout.listWeeks(DatabaseLayout.groupDirectory(root, group))) {
+                    results.add(pool.submit(() -> verifyWeek(group, monday)));
+                }
+            }
+            checkedCount = results.size();
+            List<Problem> problems = new ArrayList<>();
+            for(String group : groups) {
+                Path dir = DatabaseLayout.groupDirectory(root, group);
+                if(Files.exists(dir.resolve(DatabaseLayout.TITLES_FILE_NAME))) {
+                    int damaged = TitleDictionary.forDirectory(dir).damagedCount();
+                    if(damaged > 0) {
+                        problems.add(new Problem(group, null, DatabaseLayout.TITLES_FILE_NAME + ": " +
+                            damaged + " damaged title entries, records referring to them cannot be read", false));
+                    }
+                }
+            }
+            for(Future<List<Problem>> f : results) {
+                problems.addAll(f.get());
+            }
+            return problems;
+        } catch(InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException(ex.toString());
+        } catch(ExecutionException ex) {
+            throw new IOException(ex.getCause().toString());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Get number of weeks checked by the last verification.
+     * @return number of weeks
+     */
+    public int checkedCount() {
+        return checkedCount;
+    }
+
+    /**
+     * Verify one week.
+     * @param group group name or null
+     * @param monday Monday date
+     * @return list of problems
+     */
+    private List<Problem> verifyWeek(String group, TaskDate monday) {
+        FilesBundleImpl bundle = new FilesBundleImpl(root, group, monday);
+        List<String> found = new ArrayList<>();
+        boolean checksumOk;
+        boolean recordsOk = true;
+        boolean damagedRecords = false;
+        try {
+            checksumOk = true;
+            boolean commonChecked = false;
+            for(Component c : Component.values()) {
+                // common checksum covers all components, so it's reported once
+                boolean common = bundle.hasCommonChecksumOnly(c);
+                if(!(common && commonChecked) && !bundle.checkConsistency(c)) {
+                    checksumOk = false;
+                    found.add(common ? "bundle checksum mismatch" : ("checksum mismatch of " + c.toString().toLowerCase()));
+                }
+                commonChecked |= common;
+                for(int lineNo : bundle.findDamagedRecords(c)) {
+                    damagedRecords = true;
+                    found.add("damaged " + c.toString().toLowerCase() + " record at line " + lineNo);
+                }
+            }
+            recordsOk = !damagedRecords;
+            final TaskDate sunday = monday.shiftToWeekDay(TaskDate.WeekDay.SUNDAY);
+            byte[] data = bundle.readComponentUnverified(Component.TODOLIST);
+            try(BufferedReader br = new BufferedReader(new InputStreamReader(
+                    new ByteArrayInputStream(data), StandardCharsets.UTF_8))) {
+                String line;
+                int lineNo = 0;
+                while(null != (line = br.readLine())) {
+                    ++lineNo;
+                    if(line.isEmpty()) {
+                        continue;
+                    }
+                    TodoTask tt = TodoTask.parse(line, bundle.getTitleDictionary());
+                    if(null == tt) {
+                        recordsOk = false;
+                        found.add("cannot parse record at line " + lineNo);
+                    } else if((tt.originatedOn().compare(monday) < 0) || (tt.originatedOn().compare(sunday) > 0)) {
+                        recordsOk = false;
+                        found.add("record at line " + lineNo + " is dated " + tt.originatedOn() + " outside the week");
+                    }
+                }
+            }
+        } catch(IOException | RuntimeException ex) {
+            checksumOk = false;
+            recordsOk = false;
+            found.add("cannot read: " + ex.toString());
+        }
+        if(found.isEmpty()) {
+            return Collections.emptyList();
+        }
+        boolean repaired = false;
+        try {
+            if((Repair.REBUILD_CHECKSUM == repair) && !checksumOk && recordsOk) {
+                // records were not parsed into tasks, summary is built on next save
+                WeekSummary.clear(bundle);
+                bundle.rebuildChecksum();
+                repaired = true;
+            } else if((Repair.DROP_DAMAGED_RECORDS == repair) && damagedRecords) {
+                for(Component c : Component.values()) {
+                    if(bundle.hasRecordChecksums(c)) {
+                        List<Integer> dropped = new ArrayList<>();
+                        bundle.writeComponent(c, bundle.readIntactRecords(c, dropped));
+                        if(Component.TODOLIST == c) {
+                            WeekLineage.remove(bundle, dropped);
+                        }
+                    }
+                }
+                WeekSummary.clear(bundle);
+                bundle.updateChecksum();
+                repaired = true;
+            } else if(Repair.QUARANTINE == repair) {
+                repaired = quarantine(group, monday);
+            }
+        } catch(IOException | RuntimeException ex) {
+            found.add("repair failed: " + ex.toString());
+        }
+        List<Problem> problems = new ArrayList<>(found.size());
+        for(String f : found) {
+            problems.add(new Problem(group, monday, f, repaired));
+        }
+        return problems;
+    }
+
+    /**
+     * Move separate files of the bundle to quarantine directory.
+     * @param group group name or null
+     * @param monday Monday date
+     * @return true if files are moved, false if the bundle is packed
+     * @throws IOException 
+     */
+    private boolean quarantine(String group, TaskDate monday) throws IOException {
+        Path dir = DatabaseLayout.groupDirectory(root, group);
+        Path target = root.resolve(QUARANTINE_DIR_NAME).resolve((null == group) ? "" : group);
+        boolean moved = false;
+        for(String ext : new String[] { DatabaseLayout.EXT_MEMO, DatabaseLayout.EXT_TODOLIST, DatabaseLayout.EXT_CHECKSUM }) {
+            Path f = dir.resolve(monday.toString() + ext);
+            if(Files.exists(f)) {
+                Files.createDirectories(target);
+                Files.move(f, target.resolve(f.getFileName()), StandardCopyOption.REPLACE_EXISTING);
+                moved = true;
+            }
+        }
+        return moved;
+    }
+
+    private final Path root;
+    private final Repair repair;
+    private final int threads;
+    private volatile int checkedCount = 0;
+}
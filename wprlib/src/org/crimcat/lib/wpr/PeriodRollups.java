@@ -0,0 +1,405 @@
+/*
+    (java) library for Weekly Plans and Reminder
+
+    Copyright (C) 2011  Stas Torgashov
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+/* File:    PeriodRollups.java
+ * Author:  Stas Torgashov aka Crimson Cat (crimcat@yandex.ru)
+ * Created: 2026, October 19
+ */
+
+package org.crimcat.lib.wpr;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+import org.crimcat.lib.wpr.AppDatabase.FilesBundle.Component;
+import org.crimcat.lib.wpr.impl.DatabaseLayout;
+import org.crimcat.lib.wpr.impl.FilesBundleImpl;
+
+/**
+ * Monthly and quarterly rollups of the group tasks: numbers of created and
+ * carried over task records, completed and still open ones, by the month
+ * (YYYY-MM) and the quarter (YYYY-Qn) of records dates. Rollups are kept in
+ * the group rollups file together with the contribution of every week, so a
+ * changed week updates them by the difference of its old and new
+ * contributions without reading other weeks. Rollups are maintained only
+ * for groups which have the file, it's made by @see rebuild.
+ */
+public final class PeriodRollups {
+
+    /**
+     * Counters indexes.
+     */
+    private static final int CREATED = 0;
+    private static final int CARRIED = 1;
+    private static final int COMPLETED = 2;
+    private static final int OPEN = 3;
+    private static final int COUNTERS = 4;
+
+    /**
+     * Prefix of week contribution lines.
+     */
+    private static final String WEEK_PREFIX = "W ";
+
+    /**
+     * Counters of one period.
+     */
+    public static final class Counts {
+        Counts(long[] values) {
+            this.values = values.clone();
+        }
+
+        /**
+         * Get number of new tasks created in the period.
+         * @return number of tasks
+         */
+        public long created() {
+            return values[CREATED];
+        }
+
+        /**
+         * Get number of tasks copied from previous weeks in the period.
+         * @return number of tasks
+         */
+        public long carried() {
+            return values[CARRIED];
+        }
+
+        /**
+         * Get number of completed task records of the period.
+         * @return number of tasks
+         */
+        public long completed() {
+            return values[COMPLETED];
+        }
+
+        /**
+         * Get number of still open task records of the period.
+         * @return number of tasks
+         */
+        public long open() {
+            return values[OPEN];
+        }
+
+        private final long[] values;
+    }
+
+    private PeriodRollups() {
+    }
+
+    /**
+     * Read rollups of the group.
+     * @param root database root directory
+     * @param group group name or null for default group
+     * @return counters by periods, months and quarters in dates order, null
+     *  if the group has no rollups
+     * @throws IOException 
+     */
+    public static Map<String, Counts> read(Path root, String group) throws IOException {
+        Path path = rollupsPath(root, group);
+        if(!Files.exists(path)) {
+            return null;
+        }
+        State state = new State(Files.readAllBytes(path));
+        Map<String, Counts> result = new LinkedHashMap<>();
+        for(Map.Entry<String, long[]> e : state.periods.entrySet()) {
+            result.put(e.getKey(), new Counts(e.getValue()));
+        }
+        return result;
+    }
+
+    /**
+     * Build rollups of the group from all its weeks and start maintaining
+     * them. The rollups file is created and locked before the weeks are
+     * read, so updates of weeks saved meanwhile wait for the rebuilding and
+     * are applied to its result. A task appended to a week while the week
+     * is being read can be counted twice then, until the week is saved as a
+     * whole or the rollups are rebuilt again.
+     * @param root database root directory
+     * @param group group name or null for default group
+     * @return number of weeks with tasks
+     * @throws IOException 
+     */
+    public static int rebuild(Path root, String group) throws IOException {
+        Path path = rollupsPath(root, group);
+        Files.createDirectories(path.getParent());
+        final int[] count = new int[1];
+        update(path, state -> {
+            TreeMap<String, Map<String, long[]>> weeks = new TreeMap<>();
+            TaskQuery query = new TaskQuery(root, Runtime.getRuntime().availableProcessors());
+            try(Stream<TaskEntry> all = query.select(Collections.singletonList(group), null, null, TaskQuery.Status.ANY)) {
+                for(Iterator<TaskEntry> it = all.iterator(); it.hasNext(); ) {
+                    TaskEntry te = it.next();
+                    add(weeks.computeIfAbsent(te.weekStartedOn().toString(), k -> new TreeMap<>()), te.task());
+                }
+            }
+            state.periods.clear();
+            state.weeks.clear();
+            for(Map.Entry<String, Map<String, long[]>> e : weeks.entrySet()) {
+                state.replace(e.getKey(), e.getValue());
+            }
+            count[0] = weeks.size();
+        });
+        return count[0];
+    }
+
+    /**
+     * Set the week contribution to the given tasks.
+     * @param root database root directory
+     * @param group group name or null for default group
+     * @param monday week Monday
+     * @param tasks all tasks of the week
+     * @throws IOException 
+     */
+    static void replaceWeek(Path root, String group, TaskDate monday, List<TodoTask> tasks) throws IOException {
+        Path path = rollupsPath(root, group);
+        if(Files.exists(path)) {
+            Map<String, long[]> contribution = new TreeMap<>();
+            for(TodoTask tt : tasks) {
+                add(contribution, tt);
+            }
+            update(path, state -> state.replace(monday.toString(), contribution));
+        }
+    }
+
+    /**
+     * Add tasks appended to the week to its contribution.
+     * @param root database root directory
+     * @param group group name or null for default group
+     * @param monday week Monday
+     * @param appended appended tasks
+     * @throws IOException 
+     */
+    static void appendToWeek(Path root, String group, TaskDate monday, List<TodoTask> appended) throws IOException {
+        Path path = rollupsPath(root, group);
+        if(Files.exists(path)) {
+            update(path, state -> {
+                Map<String, long[]> contribution = new TreeMap<>();
+                Map<String, long[]> old = state.weeks.get(monday.toString());
+                if(null != old) {
+                    for(Map.Entry<String, long[]> e : old.entrySet()) {
+                        contribution.put(e.getKey(), e.getValue().clone());
+                    }
+                }
+                for(TodoTask tt : appended) {
+                    add(contribution, tt);
+                }
+                state.replace(monday.toString(), contribution);
+            });
+        }
+    }
+
+    /**
+     * Set the week contribution from its stored tasks, it's used when the
+     * week files are replaced as a whole.
+     * @param root database root directory
+     * @param group group name or null for default group
+     * @param monday week Monday
+     * @throws IOException 
+     */
+    static void refreshWeek(Path root, String group, TaskDate monday) throws IOException {
+        if(Files.exists(rollupsPath(root, group))) {
+            FilesBundleImpl bundle = new FilesBundleImpl(root, group, monday);
+            List<Integer> damaged = new ArrayList<>();
+            byte[] data = bundle.readIntactRecords(Component.TODOLIST, damaged);
+            replaceWeek(root, group, monday, Weekly.parseTasks(data, bundle, damaged));
+        }
+    }
+
+    /**
+     * Add the task to the week contribution.
+     * @param contribution counters by months
+     * @param tt task
+     */
+    private static void add(Map<String, long[]> contribution, TodoTask tt) {
+        long[] c = contribution.computeIfAbsent(month(tt.originatedOn()), k -> new long[COUNTERS]);
+        ++c[tt.isCarriedOver() ? CARRIED : CREATED];
+        ++c[tt.isCompleted() ? COMPLETED : OPEN];
+    }
+
+    private static String month(TaskDate td) {
+        return td.toString().substring(0, 7);
+    }
+
+    private static String quarter(String month) {
+        return month.substring(0, 4) + "-Q" + ((Integer.parseInt(month.substring(5, 7)) - 1) / 3 + 1);
+    }
+
+    private static Path rollupsPath(Path root, String group) {
+        return DatabaseLayout.groupDirectory(root, group).resolve(DatabaseLayout.ROLLUPS_FILE_NAME);
+    }
+
+    /**
+     * Change of the rollups state.
+     */
+    private interface Change {
+        void apply(State state) throws IOException;
+    }
+
+    /**
+     * Read, change and write the rollups file under exclusive lock, so
+     * concurrent writers don't lose updates.
+     * @param path rollups file path
+     * @param change state change
+     * @throws IOException 
+     */
+    private static void update(Path path, Change change) throws IOException {
+        try(FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            FileLock lock = ch.lock();
+            try {
+                ByteBuffer in = ByteBuffer.allocate((int)ch.size());
+                while(in.hasRemaining() && (ch.read(in) >= 0)) { }
+                State state = new State(in.array());
+                change.apply(state);
+                ByteBuffer out = ByteBuffer.wrap(state.toBytes());
+                ch.truncate(0);
+                ch.position(0);
+                while(out.hasRemaining()) {
+                    ch.write(out);
+                }
+            } finally {
+                lock.release();
+            }
+        }
+    }
+
+    /**
+     * Contents of the rollups file.
+     */
+    private static final class State {
+        State(byte[] data) throws IOException {
+            try(BufferedReader br = new BufferedReader(new InputStreamReader(
+                    new ByteArrayInputStream(data), StandardCharsets.UTF_8))) {
+                String line;
+                while(null != (line = br.readLine())) {
+                    if(line.isEmpty() || line.startsWith("#")) {
+                        continue;
+                    }
+                    String[] fields = line.split(" ");
+                    try {
+                        if(line.startsWith(WEEK_PREFIX)) {
+                            Map<String, long[]> contribution = new TreeMap<>();
+                            for(int i = 2; i + COUNTERS < fields.length; i += COUNTERS + 1) {
+                                contribution.put(fields[i], parseCounters(fields, i + 1));
+                            }
+                            weeks.put(fields[1], contribution);
+                        } else if(fields.length > COUNTERS) {
+                            periods.put(fields[0], parseCounters(fields, 1));
+                        }
+                    } catch(NumberFormatException ex) {
+                        throw new IOException("Bad rollups record: " + line);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Replace week contribution updating periods by the difference.
+         * @param monday week Monday
+         * @param contribution new counters by months
+         */
+        void replace(String monday, Map<String, long[]> contribution) {
+            Map<String, long[]> old = weeks.remove(monday);
+            if(null != old) {
+                for(Map.Entry<String, long[]> e : old.entrySet()) {
+                    addToPeriods(e.getKey(), e.getValue(), -1);
+                }
+            }
+            if(!contribution.isEmpty()) {
+                weeks.put(monday, contribution);
+                for(Map.Entry<String, long[]> e : contribution.entrySet()) {
+                    addToPeriods(e.getKey(), e.getValue(), 1);
+                }
+            }
+        }
+
+        private void addToPeriods(String month, long[] values, int sign) {
+            for(String period : new String[] { month, quarter(month) }) {
+                long[] c = periods.computeIfAbsent(period, k -> new long[COUNTERS]);
+                boolean empty = true;
+                for(int i = 0; i < COUNTERS; ++i) {
+                    c[i] += sign * values[i];
+                    empty &= (0 == c[i]);
+                }
+                if(empty) {
+                    periods.remove(period);
+                }
+            }
+        }
+
+        byte[] toBytes() {
+            StringBuilder sb = new StringBuilder("# period created carried completed open\n");
+            for(Map.Entry<String, long[]> e : periods.entrySet()) {
+                sb.append(e.getKey());
+                appendCounters(sb, e.getValue());
+                sb.append('\n');
+            }
+            sb.append("# W monday [month created carried completed open]...\n");
+            for(Map.Entry<String, Map<String, long[]>> w : weeks.entrySet()) {
+                sb.append(WEEK_PREFIX).append(w.getKey());
+                for(Map.Entry<String, long[]> e : w.getValue().entrySet()) {
+                    sb.append(' ').append(e.getKey());
+                    appendCounters(sb, e.getValue());
+                }
+                sb.append('\n');
+            }
+            return sb.toString().getBytes(StandardCharsets.UTF_8);
+        }
+
+        private static long[] parseCounters(String[] fields, int from) {
+            long[] c = new long[COUNTERS];
+            for(int i = 0; i < COUNTERS; ++i) {
+                c[i] = Long.parseLong(fields[from + i]);
+            }
+            return c;
+        }
+
+        private static void appendCounters(StringBuilder sb, long[] c) {
+            for(long v : c) {
+                sb.append(' ').append(v);
+            }
+        }
+
+        /**
+         * Counters by periods, months and quarters.
+         */
+        final TreeMap<String, long[]> periods = new TreeMap<>();
+
+        /**
+         * Contributions of weeks: counters by months by Mondays.
+         */
+        final TreeMap<String, Map<String, long[]>> weeks = new TreeMap<>();
+    }
+}
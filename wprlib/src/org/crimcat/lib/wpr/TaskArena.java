@@ -0,0 +1,408 @@
+/*
+    (java) library for Weekly Plans and Reminder
+
+    Copyright (C) 2011  Stas Torgashov
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+/* File:    TaskArena.java
+ * Author:  Stas Torgashov aka Crimson Cat (crimcat@yandex.ru)
+ * Created: 2026, October 19
+ */
+
+package org.crimcat.lib.wpr;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Off-heap store of tasks history for long running analytics. Task dates,
+ * status, lineage and UTF-8 titles are packed into direct byte buffer
+ * segments, the heap keeps only a few numbers per week, so many years of
+ * history stay resident without growing the heap and garbage collection
+ * work. Tasks are read through reusable flyweight views, see @see View.
+ * The arena is filled by one thread, views can be used by any number of
+ * threads (one view per thread) after filling.
+ * Memory of the segments is returned when the arena is closed and its
+ * buffers are collected.
+ */
+public class TaskArena implements AutoCloseable {
+
+    /**
+     * Default size of one segment, bytes.
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 16 << 20;
+
+    /**
+     * Flyweight read-only task view: a task object which reads its data from
+     * the arena record it points to. One view can be moved over any number
+     * of tasks, so reading does not allocate per task (except of values
+     * returned as objects).
+     */
+    public final class View extends TodoTask {
+        View() {
+            super("-"); // fake parameters
+        }
+
+        /**
+         * Point the view to the task.
+         * @param week week number in the arena
+         * @param index task index in the week
+         * @return this view
+         */
+        public View moveTo(int week, int index) {
+            if((index < 0) || (index >= weekSize[week])) {
+                throw new IndexOutOfBoundsException("Task " + index + " of week " + week);
+            }
+            return moveTo(weekFirst[week] + index);
+        }
+
+        /**
+         * Point the view to the task.
+         * @param taskNo task number in the arena
+         * @return this view
+         */
+        public View moveTo(long taskNo) {
+            if((taskNo < 0) || (taskNo >= taskCount)) {
+                throw new IndexOutOfBoundsException("Task " + taskNo);
+            }
+            long address = indexChunks.get((int)(taskNo >>> INDEX_CHUNK_BITS))
+                .getLong((int)(taskNo & INDEX_CHUNK_MASK) * Long.BYTES);
+            segment = segments.get((int)(address >>> 32));
+            offset = (int)address;
+            return this;
+        }
+
+        /**
+         * Get task creation date as day number, see @see TaskDate.epochDay.
+         * @return day number
+         */
+        public int originatedEpochDay() {
+            return segment.getInt(offset);
+        }
+
+        @Override
+        public String title() {
+            int pos = offset + Integer.BYTES + 1;
+            pos += Short.BYTES + segment.getShort(pos);
+            if(isCarriedOver()) {
+                pos += Integer.BYTES;
+            }
+            return readString(pos + Integer.BYTES, segment.getInt(pos));
+        }
+
+        @Override
+        public TaskDate originatedOn() {
+            return TaskDate.ofEpochDay(originatedEpochDay());
+        }
+
+        @Override
+        public boolean isCompleted() {
+            return 0 != (segment.get(offset + Integer.BYTES) & FLAG_COMPLETED);
+        }
+
+        @Override
+        public String lineage() {
+            int pos = offset + Integer.BYTES + 1;
+            return readString(pos + Short.BYTES, segment.getShort(pos));
+        }
+
+        @Override
+        public TaskDate firstSeenOn() {
+            if(!isCarriedOver()) {
+                return originatedOn();
+            }
+            int pos = offset + Integer.BYTES + 1;
+            return TaskDate.ofEpochDay(segment.getInt(pos + Short.BYTES + segment.getShort(pos)));
+        }
+
+        @Override
+        public String toString() {
+            return copy().toString();
+        }
+
+        /**
+         * Make a regular task object of the current task.
+         * @return todo task object
+         */
+        public TodoTask copy() {
+            return new TodoTask(originatedOn(), isCompleted(), title(), lineage(),
+                isCarriedOver() ? firstSeenOn() : null);
+        }
+
+        @Override
+        boolean isCarriedOver() {
+            return 0 != (segment.get(offset + Integer.BYTES) & FLAG_CARRIED);
+        }
+
+        @Override
+        void markCompleted() {
+            throw new UnsupportedOperationException("Task view is read-only");
+        }
+
+        @Override
+        public boolean fromString(String str) {
+            throw new UnsupportedOperationException("Task view is read-only");
+        }
+
+        private String readString(int pos, int length) {
+            byte[] bytes = new byte[length];
+            ByteBuffer bb = segment.duplicate();
+            bb.position(pos);
+            bb.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        private ByteBuffer segment = null;
+        private int offset = 0;
+    }
+
+    /**
+     * Ctor: empty arena with default segment size.
+     */
+    public TaskArena() {
+        this(DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Ctor: empty arena.
+     * @param segmentSize size of one segment, bytes
+     */
+    public TaskArena(int segmentSize) {
+        this.segmentSize = Math.max(4096, segmentSize);
+    }
+
+    /**
+     * Add all stored weeks of the group from the application database.
+     * @param groupName group name or null for default group
+     * @return number of added weeks
+     * @throws IOException 
+     */
+    public int load(String groupName) throws IOException {
+        List<TaskDate> mondays = AppDatabase.listWeeks(groupName);
+        for(TaskDate monday : mondays) {
+            addWeek(new Weekly(monday, groupName, EnumSet.of(Weekly.Part.TASKS)));
+        }
+        return mondays.size();
+    }
+
+    /**
+     * Add tasks of the weekly.
+     * @param w weekly object
+     * @return week number in the arena
+     */
+    public int addWeek(Weekly w) {
+        List<TodoTask> tasks = new ArrayList<>(w.size());
+        for(int i = 0; i < w.size(); ++i) {
+            tasks.add(w.taskAt(i));
+        }
+        return addWeek(w.group(), w.startedOn(), tasks);
+    }
+
+    /**
+     * Add tasks of the week.
+     * @param groupName group name or null for default group
+     * @param monday Monday of the week
+     * @param tasks tasks of the week
+     * @return week number in the arena
+     */
+    public int addWeek(String groupName, TaskDate monday, List<? extends TodoTask> tasks) {
+        if(null == segments) {
+            throw new IllegalStateException("Task arena is closed");
+        }
+        if(weekCount == weekFirst.length) {
+            int capacity = 2 * weekCount;
+            weekFirst = Arrays.copyOf(weekFirst, capacity);
+            weekSize = Arrays.copyOf(weekSize, capacity);
+            weekMonday = Arrays.copyOf(weekMonday, capacity);
+            weekGroup = Arrays.copyOf(weekGroup, capacity);
+        }
+        Integer groupIdx = groupIndex.get(groupName);
+        if(null == groupIdx) {
+            groupIdx = groups.size();
+            groups.add(groupName);
+            groupIndex.put(groupName, groupIdx);
+        }
+        weekFirst[weekCount] = taskCount;
+        weekSize[weekCount] = tasks.size();
+        weekMonday[weekCount] = (int)monday.epochDay();
+        weekGroup[weekCount] = groupIdx;
+        for(TodoTask tt : tasks) {
+            append(tt);
+        }
+        return weekCount++;
+    }
+
+    /**
+     * Get number of weeks.
+     * @return number of weeks
+     */
+    public int weekCount() {
+        return weekCount;
+    }
+
+    /**
+     * Get group of the week.
+     * @param week week number
+     * @return group name or null for default group
+     */
+    public String weekGroup(int week) {
+        return groups.get(weekGroup[checkWeek(week)]);
+    }
+
+    /**
+     * Get Monday of the week.
+     * @param week week number
+     * @return Monday date
+     */
+    public TaskDate weekStartedOn(int week) {
+        return TaskDate.ofEpochDay(weekMonday[checkWeek(week)]);
+    }
+
+    /**
+     * Get number of tasks of the week.
+     * @param week week number
+     * @return number of tasks
+     */
+    public int weekSize(int week) {
+        return weekSize[checkWeek(week)];
+    }
+
+    /**
+     * Get number of tasks in the arena.
+     * @return number of tasks
+     */
+    public long taskCount() {
+        return taskCount;
+    }
+
+    /**
+     * Get off-heap memory allocated by the arena.
+     * @return number of bytes
+     */
+    public long allocatedBytes() {
+        return allocated;
+    }
+
+    /**
+     * Create new view, it points to the first task.
+     * @return view object
+     */
+    public View view() {
+        View v = new View();
+        if(taskCount > 0) {
+            v.moveTo(0);
+        }
+        return v;
+    }
+
+    /**
+     * Release the segments. Views must not be used after closing.
+     */
+    @Override
+    public void close() {
+        segments = null;
+        indexChunks = null;
+        allocated = 0;
+    }
+
+    /**
+     * Append task record. Record layout: int creation day, byte flags,
+     * short lineage length, lineage bytes, [int first seen day,]
+     * int title length, title bytes.
+     * @param tt todo task
+     */
+    private void append(TodoTask tt) {
+        byte[] title = tt.title().getBytes(StandardCharsets.UTF_8);
+        boolean copied = tt.isCarriedOver();
+        byte[] lineage = tt.lineage().getBytes(StandardCharsets.UTF_8);
+        int size = Integer.BYTES + 1 + Short.BYTES + lineage.length + Integer.BYTES + title.length +
+            (copied ? Integer.BYTES : 0);
+        ByteBuffer seg = segmentFor(size);
+        int pos = seg.position();
+        seg.putInt((int)tt.originatedOn().epochDay());
+        seg.put((byte)((tt.isCompleted() ? FLAG_COMPLETED : 0) | (copied ? FLAG_CARRIED : 0)));
+        seg.putShort((short)lineage.length);
+        seg.put(lineage);
+        if(copied) {
+            seg.putInt((int)tt.firstSeenOn().epochDay());
+        }
+        seg.putInt(title.length);
+        seg.put(title);
+
+        int chunk = (int)(taskCount >>> INDEX_CHUNK_BITS);
+        if(chunk == indexChunks.size()) {
+            indexChunks.add(ByteBuffer.allocateDirect((1 << INDEX_CHUNK_BITS) * Long.BYTES));
+            allocated += (1 << INDEX_CHUNK_BITS) * Long.BYTES;
+        }
+        indexChunks.get(chunk).putLong((int)(taskCount & INDEX_CHUNK_MASK) * Long.BYTES,
+            ((long)(segments.size() - 1) << 32) | pos);
+        ++taskCount;
+    }
+
+    /**
+     * Get segment with enough free space, allocate new one if needed.
+     * @param size record size
+     * @return segment positioned to the free space
+     */
+    private ByteBuffer segmentFor(int size) {
+        ByteBuffer last = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+        if((null == last) || (last.remaining() < size)) {
+            last = ByteBuffer.allocateDirect(Math.max(segmentSize, size));
+            segments.add(last);
+            allocated += last.capacity();
+        }
+        return last;
+    }
+
+    private int checkWeek(int week) {
+        if((week < 0) || (week >= weekCount)) {
+            throw new IndexOutOfBoundsException("Week " + week);
+        }
+        return week;
+    }
+
+    /**
+     * Record flags.
+     */
+    private static final byte FLAG_COMPLETED = 1;
+    private static final byte FLAG_CARRIED = 2;
+
+    /**
+     * Index chunk holds 2^INDEX_CHUNK_BITS record addresses.
+     */
+    private static final int INDEX_CHUNK_BITS = 16;
+    private static final long INDEX_CHUNK_MASK = (1L << INDEX_CHUNK_BITS) - 1;
+
+    private final int segmentSize;
+    private List<ByteBuffer> segments = new ArrayList<>();
+    private List<ByteBuffer> indexChunks = new ArrayList<>();
+    private long allocated = 0;
+    private long taskCount = 0;
+    private final List<String> groups = new ArrayList<>();
+    private final Map<String, Integer> groupIndex = new HashMap<>();
+    private int weekCount = 0;
+    private long[] weekFirst = new long[64];
+    private int[] weekSize = new int[64];
+    private int[] weekMonday = new int[64];
+    private int[] weekGroup = new int[64];
+}
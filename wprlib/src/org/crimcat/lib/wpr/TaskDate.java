@@ -24,17 +24,21 @@
 
 package org.crimcat.lib.wpr;
 
-import java.util.Calendar;
+import java.time.DateTimeException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.WeekFields;
+import java.util.Locale;
 
 /**
  * Date representation for the tasks. It's a simple representation,
- * providing only year, month and day of month information; time is preset to
- * 0 hours 0 minutes 1 second of the given date.
+ * providing only year, month and day of month information.
  */
 public class TaskDate implements Cloneable {
 
     /**
-     * Weekdays enumeration. Used to distinguish the same from @see Calendar
+     * Weekdays enumeration. Used to distinguish the same from @see DayOfWeek
      * object.
      */
     public enum WeekDay {
@@ -51,11 +55,24 @@ public class TaskDate implements Cloneable {
      * Create new date as today.
      */
     public TaskDate() {
-        calTime = Calendar.getInstance();
-        calTime.set(Calendar.HOUR, 0);
-        calTime.set(Calendar.MINUTE, 0);
-        calTime.set(Calendar.SECOND, 1);
-        calTime.set(Calendar.DST_OFFSET, 0);
+        date = LocalDate.now();
+    }
+
+    /**
+     * Create new date from the local date object.
+     * @param date local date
+     */
+    private TaskDate(LocalDate date) {
+        this.date = date;
+    }
+
+    /**
+     * Create new date from the number of days since 1970-01-01.
+     * @param epochDay day number
+     * @return new date object
+     */
+    public static TaskDate ofEpochDay(long epochDay) {
+        return new TaskDate(LocalDate.ofEpochDay(epochDay));
     }
 
     /**
@@ -64,9 +81,7 @@ public class TaskDate implements Cloneable {
      */
     @Override
     public Object clone() {
-        TaskDate td = new TaskDate();
-        td.calTime = (Calendar)calTime.clone();
-        return td;
+        return new TaskDate(date);
     }
 
     /**
@@ -74,7 +89,7 @@ public class TaskDate implements Cloneable {
      * @return year
      */
     public int year() {
-        return calTime.get(Calendar.YEAR);
+        return date.getYear();
     }
 
     /**
@@ -82,7 +97,7 @@ public class TaskDate implements Cloneable {
      * @return month as 1..12
      */
     public int month() {
-        return calTime.get(Calendar.MONTH) + 1;
+        return date.getMonthValue();
     }
 
     /**
@@ -90,7 +105,7 @@ public class TaskDate implements Cloneable {
      * @return day of month as 1..31
      */
     public int dayOfMonth() {
-        return calTime.get(Calendar.DAY_OF_MONTH);
+        return date.getDayOfMonth();
     }
 
     /**
@@ -98,15 +113,16 @@ public class TaskDate implements Cloneable {
      * @return week day enumeration element
      */
     public TaskDate.WeekDay weekDay() {
-        return fromCalendarDayToWeekDay(calTime.get(Calendar.DAY_OF_WEEK));
+        return WeekDay.values()[date.getDayOfWeek().ordinal()];
     }
 
     /**
-     * Get week number (number of the week in the year)
+     * Get week number (number of the week in the year) according to the
+     * default locale rules.
      * @return week number 1..~52
      */
     public int weekNumber() {
-        return calTime.get(Calendar.WEEK_OF_YEAR);
+        return date.get(WeekFields.of(Locale.getDefault()).weekOfWeekBasedYear());
     }
 
     /**
@@ -116,11 +132,24 @@ public class TaskDate implements Cloneable {
      * @return new date object
      */
     public TaskDate shift(int days) {
-        TaskDate td = (TaskDate)this.clone();
-        long currentTime = td.calTime.getTimeInMillis();
-        currentTime += (long)days * 24l * 60l * 60l * 1000l;
-        td.calTime.setTimeInMillis(currentTime);
-        return td;
+        return new TaskDate(date.plusDays(days));
+    }
+
+    /**
+     * Get number of days since 1970-01-01, compact form of the date.
+     * @return day number
+     */
+    public long epochDay() {
+        return date.toEpochDay();
+    }
+
+    /**
+     * Get number of days from this date to the given one.
+     * @param td another date
+     * @return number of days, negative if the given date is earlier
+     */
+    public int daysTo(TaskDate td) {
+        return (int)ChronoUnit.DAYS.between(date, td.date);
     }
 
     /**
@@ -129,9 +158,7 @@ public class TaskDate implements Cloneable {
      * @return new date object
      */
     public TaskDate shiftToWeekDay(TaskDate.WeekDay wd) {
-        int diff = normalizeWeekDay(fromWeekDayToCalendarDay(wd)) -
-            normalizeWeekDay(fromWeekDayToCalendarDay(weekDay()));
-        return shift(diff);
+        return shift(wd.ordinal() - date.getDayOfWeek().ordinal());
     }
 
     /**
@@ -140,7 +167,7 @@ public class TaskDate implements Cloneable {
      * @return true if the dates are for the same day
      */
     public boolean equals(TaskDate td) {
-        return (year() == td.year()) && (month() == td.month()) && (dayOfMonth() == td.dayOfMonth());
+        return date.equals(td.date);
     }
 
     /**
@@ -151,9 +178,7 @@ public class TaskDate implements Cloneable {
      * @return &lt;0 - less, ==0 - equal, &gt;0 - greater
      */
     public int compare(TaskDate td) {
-        final long dateInSeconds = calTime.getTimeInMillis() / 1000L / 60L;
-        final long tdDateInSeconds = td.calTime.getTimeInMillis() / 1000L / 60L;
-        return (int)(dateInSeconds - tdDateInSeconds);
+        return date.compareTo(td.date);
     }
 
     /**
@@ -162,7 +187,7 @@ public class TaskDate implements Cloneable {
      */
     @Override
     public String toString() {
-        StringBuilder sb = new StringBuilder();
+        StringBuilder sb = new StringBuilder(10);
         sb.append(year());
         sb.append('-');
         if(month() < 10) sb.append('0');
@@ -184,79 +209,18 @@ public class TaskDate implements Cloneable {
         String[] parts = str.split("-");
         if(parts.length == 3) {
             try {
-                int _year = Integer.parseInt(parts[0]);
-                int _month = Integer.parseInt(parts[1]) - 1;
-                int _day = Integer.parseInt(parts[2]);
-                Calendar tmpCal = Calendar.getInstance();
-                tmpCal.clear();
-                tmpCal.set(_year, _month, _day, 0, 0, 1);
-                if((tmpCal.get(Calendar.YEAR) == _year) &&
-                   (tmpCal.get(Calendar.MONTH) == _month) &&
-                   (tmpCal.get(Calendar.DAY_OF_MONTH) == _day)) {
-                    calTime = tmpCal;
-                    return true;
-                }
-            } catch(NumberFormatException nfe) { }
+                date = LocalDate.of(
+                    Integer.parseInt(parts[0]),
+                    Integer.parseInt(parts[1]),
+                    Integer.parseInt(parts[2]));
+                return true;
+            } catch(NumberFormatException | DateTimeException ex) { }
         }
         return false;
     }
 
     /**
-     * Normalize week days. @see Calendar. The week is started on Monday
-     * which gets number of 1, while Sunday is the end of the week and has
-     * number of 7.
-     * @param wd week day number
-     * @return normalized week day number
-     */
-    private static int normalizeWeekDay(int wd) {
-        if(Calendar.SUNDAY == wd) {
-            wd = 7;
-        } else {
-            wd -= 1;
-        }
-        return wd;
-    }
-
-    /**
-     * Convert from integer week day number for week day enumerated value.
-     * @see Calendar, @see WeekDay
-     * @param calDayNo week day number
-     * @return week day enumeration element
-     */
-    private static WeekDay fromCalendarDayToWeekDay(int calDayNo) {
-        switch(calDayNo) {
-        case Calendar.SUNDAY: return WeekDay.SUNDAY;
-        case Calendar.MONDAY: return WeekDay.MONDAY;
-        case Calendar.TUESDAY: return WeekDay.TUESDAY;
-        case Calendar.WEDNESDAY: return WeekDay.WEDNESDAY;
-        case Calendar.THURSDAY: return WeekDay.THURSDAY;
-        case Calendar.FRIDAY: return WeekDay.FRIDAY;
-        case Calendar.SATURDAY: return WeekDay.SATURDAY;
-        }
-        throw new RuntimeException();
-    }
-
-    /**
-     * Convert from week day enumeration to integer week day number.
-     * @see Calendar, @see WeekDay
-     * @param day week day enumeration element
-     * @return week day number
-     */
-    private static int fromWeekDayToCalendarDay(WeekDay day) {
-        switch(day) {
-        case SUNDAY: return Calendar.SUNDAY;
-        case MONDAY: return Calendar.MONDAY;
-        case TUESDAY: return Calendar.TUESDAY;
-        case WEDNESDAY: return Calendar.WEDNESDAY;
-        case THURSDAY: return Calendar.THURSDAY;
-        case FRIDAY: return Calendar.FRIDAY;
-        case SATURDAY: return Calendar.SATURDAY;
-        }
-        throw new RuntimeException();
-    }
-
-    /**
-     * Calendar object instance.
+     * Date value.
      */
-    private Calendar calTime = null;
+    private LocalDate date;
 }
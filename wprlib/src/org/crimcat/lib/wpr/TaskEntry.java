@@ -0,0 +1,80 @@
+/*
+    (java) library for Weekly Plans and Reminder
+
+    Copyright (C) 2011  Stas Torgashov
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+/* File:    TaskEntry.java
+ * Author:  Stas Torgashov aka Crimson Cat (crimcat@yandex.ru)
+ * Created: 2026, October 19
+ */
+
+package org.crimcat.lib.wpr;
+
+/**
+ * Task found by a query: the task itself and its place in the database.
+ */
+public final class TaskEntry {
+
+    TaskEntry(String groupName, TaskDate monday, int index, TodoTask task) {
+        this.groupName = groupName;
+        this.monday = monday;
+        this.index = index;
+        this.task = task;
+    }
+
+    /**
+     * Get group name.
+     * @return group name or null for default group
+     */
+    public String group() {
+        return groupName;
+    }
+
+    /**
+     * Get Monday of the week the task is recorded in.
+     * @return Monday date
+     */
+    public TaskDate weekStartedOn() {
+        return monday;
+    }
+
+    /**
+     * Get task index in its week.
+     * @return zero based index
+     */
+    public int index() {
+        return index;
+    }
+
+    /**
+     * Get the task.
+     * @return todo task object
+     */
+    public TodoTask task() {
+        return task;
+    }
+
+    @Override
+    public String toString() {
+        return ((null == groupName) ? "" : groupName + "/") + monday + "#" + (index + 1) + ":" + task;
+    }
+
+    private final String groupName;
+    private final TaskDate monday;
+    private final int index;
+    private final TodoTask task;
+}
@@ -0,0 +1,669 @@
+/*
+    (java) library for Weekly Plans and Reminder
+
+    Copyright (C) 2011  Stas Torgashov
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+/* File:    TaskFilter.java
+ * Author:  Stas Torgashov aka Crimson Cat (crimcat@yandex.ru)
+ * Created: 2026, October 19
+ */
+
+package org.crimcat.lib.wpr;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Task filter compiled from a query expression into a tree of predicates.
+ * Expression is made of terms combined with <code>and</code> (it can be
+ * omitted), <code>or</code>, <code>not</code> and parentheses:
+ * <ul>
+ * <li><code>active</code>, <code>completed</code> or <code>status:active|completed</code> - task status;</li>
+ * <li><code>date:D</code>, <code>date:D..D</code>, <code>date:D..</code>, <code>date:..D</code> - creation date in the range;</li>
+ * <li><code>week:D</code> - task is recorded in the week of the date;</li>
+ * <li><code>title:text</code> or just <code>text</code> - title contains the text ignoring case;</li>
+ * <li><code>title~regex</code> - title contains a match of the regular expression;</li>
+ * <li><code>group:name</code> - task is in the group, <code>group:</code> is the default group.</li>
+ * </ul>
+ * Dates are YYYY-MM-DD, <code>today</code> or <code>today-N</code> (N days ago).
+ * Values with spaces are double quoted. Date range, status and groups every
+ * matching task must have are found at compile time and used to load only
+ * the weeks and records which may match, see @see TaskQuery.
+ */
+public final class TaskFilter {
+
+    /**
+     * Compile expression into a filter.
+     * @param expression query expression
+     * @return compiled filter
+     * @throws IllegalArgumentException if the expression cannot be parsed
+     */
+    public static TaskFilter compile(String expression) {
+        Parser p = new Parser(expression);
+        Node root = p.tokens.isEmpty() ? new And(new ArrayList<>()) : p.parseOr();
+        if(p.pos < p.tokens.size()) {
+            throw p.error("unexpected '" + p.tokens.get(p.pos).text + "'");
+        }
+        return new TaskFilter(root);
+    }
+
+    private TaskFilter(Node root) {
+        this.root = root;
+        this.bounds = root.bounds();
+    }
+
+    /**
+     * Check if the task matches the filter.
+     * @param entry found task
+     * @return true if it matches
+     */
+    public boolean test(TaskEntry entry) {
+        return root.test(entry);
+    }
+
+    /**
+     * Get the earliest creation date of matching tasks.
+     * @return date or null if there is no lower bound
+     */
+    public TaskDate from() {
+        return bounds.from;
+    }
+
+    /**
+     * Get the latest creation date of matching tasks.
+     * @return date or null if there is no upper bound
+     */
+    public TaskDate to() {
+        return bounds.to;
+    }
+
+    /**
+     * Get status all matching tasks have.
+     * @return status, ANY if they can have any status
+     */
+    public TaskQuery.Status status() {
+        return bounds.status;
+    }
+
+    /**
+     * Check if tasks of the group can match the filter.
+     * @param group group name or null for default group
+     * @return false if no task of the group matches for sure
+     */
+    public boolean mayMatchGroup(String group) {
+        return !bounds.none && ((null == bounds.groups) || bounds.groups.contains(group));
+    }
+
+    /**
+     * Get normalized expression of the compiled filter.
+     * @return expression string
+     */
+    @Override
+    public String toString() {
+        return root.toString();
+    }
+
+    /**
+     * Values every matching task has: date range, status and groups.
+     */
+    private static final class Bounds {
+        Bounds(TaskDate from, TaskDate to, TaskQuery.Status status, Set<String> groups) {
+            this.from = from;
+            this.to = to;
+            this.status = status;
+            this.groups = groups;
+        }
+
+        static Bounds any() {
+            return new Bounds(null, null, TaskQuery.Status.ANY, null);
+        }
+
+        /**
+         * Bounds of tasks matching both filters.
+         */
+        Bounds and(Bounds b) {
+            Bounds r = new Bounds(
+                ((null == from) || ((null != b.from) && (b.from.compare(from) > 0))) ? b.from : from,
+                ((null == to) || ((null != b.to) && (b.to.compare(to) < 0))) ? b.to : to,
+                (TaskQuery.Status.ANY == status) ? b.status : status,
+                groups);
+            if(null == groups) {
+                r.groups = b.groups;
+            } else if(null != b.groups) {
+                r.groups = new HashSet<>(groups);
+                r.groups.retainAll(b.groups);
+            }
+            r.none = none || b.none ||
+                ((TaskQuery.Status.ANY != status) && (TaskQuery.Status.ANY != b.status) && (status != b.status)) ||
+                ((null != r.groups) && r.groups.isEmpty());
+            return r;
+        }
+
+        /**
+         * Bounds of tasks matching any of filters.
+         */
+        Bounds or(Bounds b) {
+            if(none) {
+                return b;
+            } else if(b.none) {
+                return this;
+            }
+            Bounds r = new Bounds(
+                ((null == from) || (null == b.from)) ? null : ((b.from.compare(from) < 0) ? b.from : from),
+                ((null == to) || (null == b.to)) ? null : ((b.to.compare(to) > 0) ? b.to : to),
+                (status == b.status) ? status : TaskQuery.Status.ANY,
+                null);
+            if((null != groups) && (null != b.groups)) {
+                r.groups = new HashSet<>(groups);
+                r.groups.addAll(b.groups);
+            }
+            return r;
+        }
+
+        TaskDate from;
+        TaskDate to;
+        TaskQuery.Status status;
+        /**
+         * Group names, null element for default group, null for any group.
+         */
+        Set<String> groups;
+        /**
+         * Flag if no task can match.
+         */
+        boolean none = false;
+    }
+
+    /**
+     * Predicate tree node.
+     */
+    private abstract static class Node {
+        abstract boolean test(TaskEntry e);
+
+        abstract Bounds bounds();
+    }
+
+    private static final class And extends Node {
+        And(List<Node> nodes) {
+            this.nodes = nodes;
+        }
+
+        @Override
+        boolean test(TaskEntry e) {
+            for(Node n : nodes) {
+                if(!n.test(e)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        Bounds bounds() {
+            Bounds b = Bounds.any();
+            for(Node n : nodes) {
+                b = b.and(n.bounds());
+            }
+            return b;
+        }
+
+        @Override
+        public String toString() {
+            return join(nodes, " and ");
+        }
+
+        final List<Node> nodes;
+    }
+
+    private static final class Or extends Node {
+        Or(List<Node> nodes) {
+            this.nodes = nodes;
+        }
+
+        @Override
+        boolean test(TaskEntry e) {
+            for(Node n : nodes) {
+                if(n.test(e)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        Bounds bounds() {
+            Bounds b = nodes.get(0).bounds();
+            for(int i = 1; i < nodes.size(); ++i) {
+                b = b.or(nodes.get(i).bounds());
+            }
+            return b;
+        }
+
+        @Override
+        public String toString() {
+            return join(nodes, " or ");
+        }
+
+        final List<Node> nodes;
+    }
+
+    private static final class Not extends Node {
+        Not(Node node) {
+            this.node = node;
+        }
+
+        @Override
+        boolean test(TaskEntry e) {
+            return !node.test(e);
+        }
+
+        @Override
+        Bounds bounds() {
+            return Bounds.any();
+        }
+
+        @Override
+        public String toString() {
+            return "not " + node;
+        }
+
+        final Node node;
+    }
+
+    private static final class StatusTerm extends Node {
+        StatusTerm(TaskQuery.Status status) {
+            this.status = status;
+        }
+
+        @Override
+        boolean test(TaskEntry e) {
+            return e.task().isCompleted() == (TaskQuery.Status.COMPLETED == status);
+        }
+
+        @Override
+        Bounds bounds() {
+            return new Bounds(null, null, status, null);
+        }
+
+        @Override
+        public String toString() {
+            return "status:" + status.toString().toLowerCase(Locale.ROOT);
+        }
+
+        final TaskQuery.Status status;
+    }
+
+    private static final class DateTerm extends Node {
+        DateTerm(TaskDate from, TaskDate to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        boolean test(TaskEntry e) {
+            TaskDate d = e.task().originatedOn();
+            return ((null == from) || (d.compare(from) >= 0)) && ((null == to) || (d.compare(to) <= 0));
+        }
+
+        @Override
+        Bounds bounds() {
+            return new Bounds(from, to, TaskQuery.Status.ANY, null);
+        }
+
+        @Override
+        public String toString() {
+            if((null != from) && (null != to) && from.equals(to)) {
+                return "date:" + from;
+            }
+            return "date:" + ((null == from) ? "" : from.toString()) + ".." + ((null == to) ? "" : to.toString());
+        }
+
+        final TaskDate from;
+        final TaskDate to;
+    }
+
+    private static final class WeekTerm extends Node {
+        WeekTerm(TaskDate date) {
+            monday = date.shiftToWeekDay(TaskDate.WeekDay.MONDAY);
+        }
+
+        @Override
+        boolean test(TaskEntry e) {
+            return e.weekStartedOn().equals(monday);
+        }
+
+        @Override
+        Bounds bounds() {
+            // tasks are always dated inside their week
+            return new Bounds(monday, monday.shiftToWeekDay(TaskDate.WeekDay.SUNDAY), TaskQuery.Status.ANY, null);
+        }
+
+        @Override
+        public String toString() {
+            return "week:" + monday;
+        }
+
+        final TaskDate monday;
+    }
+
+    private static final class TitleContains extends Node {
+        TitleContains(String text) {
+            this.text = text;
+            lowerText = text.toLowerCase(Locale.ROOT);
+        }
+
+        @Override
+        boolean test(TaskEntry e) {
+            return e.task().title().toLowerCase(Locale.ROOT).contains(lowerText);
+        }
+
+        @Override
+        Bounds bounds() {
+            return Bounds.any();
+        }
+
+        @Override
+        public String toString() {
+            return "title:" + quote(text);
+        }
+
+        final String text;
+        final String lowerText;
+    }
+
+    private static final class TitleRegex extends Node {
+        TitleRegex(Pattern pattern) {
+            this.pattern = pattern;
+        }
+
+        @Override
+        boolean test(TaskEntry e) {
+            return pattern.matcher(e.task().title()).find();
+        }
+
+        @Override
+        Bounds bounds() {
+            return Bounds.any();
+        }
+
+        @Override
+        public String toString() {
+            return "title~" + quote(pattern.pattern());
+        }
+
+        final Pattern pattern;
+    }
+
+    private static final class GroupTerm extends Node {
+        GroupTerm(String group) {
+            this.group = group;
+        }
+
+        @Override
+        boolean test(TaskEntry e) {
+            return (null == group) ? (null == e.group()) : group.equals(e.group());
+        }
+
+        @Override
+        Bounds bounds() {
+            Set<String> groups = new HashSet<>();
+            groups.add(group);
+            return new Bounds(null, null, TaskQuery.Status.ANY, groups);
+        }
+
+        @Override
+        public String toString() {
+            return "group:" + ((null == group) ? "" : quote(group));
+        }
+
+        final String group;
+    }
+
+    private static String join(List<Node> nodes, String sep) {
+        StringBuilder sb = new StringBuilder("(");
+        for(int i = 0; i < nodes.size(); ++i) {
+            if(0 != i) {
+                sb.append(sep);
+            }
+            sb.append(nodes.get(i));
+        }
+        return sb.append(')').toString();
+    }
+
+    private static String quote(String value) {
+        for(int i = 0; i < value.length(); ++i) {
+            char c = value.charAt(i);
+            if(Character.isWhitespace(c) || ('"' == c) || ('(' == c) || (')' == c) || ('\\' == c)) {
+                return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Expression token: parenthesis, keyword or term.
+     */
+    private static final class Token {
+        Token(String text, int position, int separator, boolean quoted) {
+            this.text = text;
+            this.position = position;
+            this.separator = separator;
+            this.quoted = quoted;
+        }
+
+        boolean is(String keyword) {
+            return !quoted && keyword.equalsIgnoreCase(text);
+        }
+
+        final String text;
+        /**
+         * Position in the expression.
+         */
+        final int position;
+        /**
+         * Index of the not quoted key separator (':' or '~'), -1 if there is none.
+         */
+        final int separator;
+        final boolean quoted;
+    }
+
+    /**
+     * Recursive descent parser: or := and ("or" and)*, and := unary (["and"] unary)*,
+     * unary := "not" unary | "(" or ")" | term.
+     */
+    private static final class Parser {
+        Parser(String expression) {
+            this.expression = expression;
+            int i = 0;
+            while(i < expression.length()) {
+                char c = expression.charAt(i);
+                if(Character.isWhitespace(c)) {
+                    ++i;
+                } else if(('(' == c) || (')' == c)) {
+                    tokens.add(new Token(String.valueOf(c), i, -1, false));
+                    ++i;
+                } else {
+                    int start = i;
+                    int separator = -1;
+                    boolean quoted = false;
+                    StringBuilder sb = new StringBuilder();
+                    while(i < expression.length()) {
+                        c = expression.charAt(i);
+                        if(Character.isWhitespace(c) || ('(' == c) || (')' == c)) {
+                            break;
+                        } else if('"' == c) {
+                            quoted = true;
+                            for(++i; (i < expression.length()) && ('"' != expression.charAt(i)); ++i) {
+                                if(('\\' == expression.charAt(i)) && (i + 1 < expression.length())) {
+                                    ++i;
+                                }
+                                sb.append(expression.charAt(i));
+                            }
+                            if(i >= expression.length()) {
+                                throw new IllegalArgumentException("Unterminated quote at position " + (start + 1));
+                            }
+                        } else {
+                            if((-1 == separator) && ((':' == c) || ('~' == c))) {
+                                separator = sb.length();
+                            }
+                            sb.append(c);
+                        }
+                        ++i;
+                    }
+                    tokens.add(new Token(sb.toString(), start, separator, quoted));
+                }
+            }
+        }
+
+        Node parseOr() {
+            List<Node> nodes = new ArrayList<>();
+            nodes.add(parseAnd());
+            while((pos < tokens.size()) && tokens.get(pos).is("or")) {
+                ++pos;
+                nodes.add(parseAnd());
+            }
+            return (1 == nodes.size()) ? nodes.get(0) : new Or(nodes);
+        }
+
+        Node parseAnd() {
+            List<Node> nodes = new ArrayList<>();
+            nodes.add(parseUnary());
+            while((pos < tokens.size()) && !tokens.get(pos).is("or") && !tokens.get(pos).is(")")) {
+                if(tokens.get(pos).is("and")) {
+                    ++pos;
+                }
+                nodes.add(parseUnary());
+            }
+            return (1 == nodes.size()) ? nodes.get(0) : new And(nodes);
+        }
+
+        Node parseUnary() {
+            if(pos >= tokens.size()) {
+                throw error("unexpected end of expression");
+            }
+            Token t = tokens.get(pos++);
+            if(t.is("not")) {
+                return new Not(parseUnary());
+            } else if(t.is("(")) {
+                Node n = parseOr();
+                if((pos >= tokens.size()) || !tokens.get(pos).is(")")) {
+                    throw error("')' expected");
+                }
+                ++pos;
+                return n;
+            } else if(t.is(")") || t.is("and") || t.is("or")) {
+                --pos;
+                throw error("unexpected '" + t.text + "'");
+            }
+            return parseTerm(t);
+        }
+
+        Node parseTerm(Token t) {
+            if(t.is("active")) {
+                return new StatusTerm(TaskQuery.Status.ACTIVE);
+            } else if(t.is("completed")) {
+                return new StatusTerm(TaskQuery.Status.COMPLETED);
+            } else if(t.separator < 0) {
+                return new TitleContains(t.text);
+            }
+            String key = t.text.substring(0, t.separator).toLowerCase(Locale.ROOT);
+            char sep = t.text.charAt(t.separator);
+            String value = t.text.substring(t.separator + 1);
+            if('~' == sep) {
+                if(!"title".equals(key)) {
+                    throw error(t, "only title can be matched by regular expression");
+                }
+                try {
+                    return new TitleRegex(Pattern.compile(value));
+                } catch(PatternSyntaxException ex) {
+                    throw error(t, "bad regular expression: " + ex.getDescription());
+                }
+            }
+            switch(key) {
+                case "status":
+                    if("active".equalsIgnoreCase(value)) {
+                        return new StatusTerm(TaskQuery.Status.ACTIVE);
+                    } else if("completed".equalsIgnoreCase(value)) {
+                        return new StatusTerm(TaskQuery.Status.COMPLETED);
+                    }
+                    throw error(t, "status is active or completed");
+                case "date": {
+                    int range = value.indexOf("..");
+                    if(range < 0) {
+                        TaskDate d = parseDate(t, value);
+                        return new DateTerm(d, d);
+                    }
+                    String from = value.substring(0, range);
+                    String to = value.substring(range + 2);
+                    return new DateTerm(from.isEmpty() ? null : parseDate(t, from), to.isEmpty() ? null : parseDate(t, to));
+                }
+                case "week":
+                    return new WeekTerm(parseDate(t, value));
+                case "title":
+                    return new TitleContains(value);
+                case "group":
+                    return new GroupTerm(value.isEmpty() ? null : value);
+                default:
+                    throw error(t, "unknown key " + key);
+            }
+        }
+
+        TaskDate parseDate(Token t, String value) {
+            TaskDate d = new TaskDate();
+            String lower = value.toLowerCase(Locale.ROOT);
+            if("today".equals(lower)) {
+                return d;
+            } else if(lower.startsWith("today-")) {
+                try {
+                    return d.shift(-Integer.parseInt(lower.substring(6)));
+                } catch(NumberFormatException ex) {
+                    throw error(t, "bad date " + value);
+                }
+            } else if(!d.fromString(value)) {
+                throw error(t, "bad date " + value);
+            }
+            return d;
+        }
+
+        IllegalArgumentException error(String msg) {
+            int position = (pos < tokens.size()) ? tokens.get(pos).position : expression.length();
+            return new IllegalArgumentException("Query error at position " + (position + 1) + ": " + msg);
+        }
+
+        IllegalArgumentException error(Token t, String msg) {
+            return new IllegalArgumentException("Query error at position " + (t.position + 1) + ": " + msg);
+        }
+
+        final String expression;
+        final List<Token> tokens = new ArrayList<>();
+        int pos = 0;
+    }
+
+    /**
+     * Root node of the predicate tree.
+     */
+    private final Node root;
+
+    /**
+     * Pushdown bounds of the whole filter.
+     */
+    private final Bounds bounds;
+}
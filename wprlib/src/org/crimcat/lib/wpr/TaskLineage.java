@@ -0,0 +1,175 @@
+/*
+    (java) library for Weekly Plans and Reminder
+
+    Copyright (C) 2011  Stas Torgashov
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+/* File:    TaskLineage.java
+ * Author:  Stas Torgashov aka Crimson Cat (crimcat@yandex.ru)
+ * Created: 2026, October 19
+ */
+
+package org.crimcat.lib.wpr;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Carry-over chains of tasks: every chain joins the original task and its
+ * copies made for the next weeks (see @see TodoTask.lineage), so the real
+ * age of long living tasks is known. History is read in one pass in date
+ * order.
+ */
+public class TaskLineage {
+
+    /**
+     * Chain of task copies.
+     */
+    public static final class Chain {
+        Chain(String groupName, TodoTask first) {
+            this.groupName = groupName;
+            this.lineage = first.lineage();
+            this.title = first.title();
+            this.firstSeen = first.firstSeenOn();
+        }
+
+        /**
+         * Get group name.
+         * @return group name or null for default group
+         */
+        public String group() {
+            return groupName;
+        }
+
+        /**
+         * Get lineage id.
+         * @return lineage id string
+         */
+        public String lineage() {
+            return lineage;
+        }
+
+        /**
+         * Get task title.
+         * @return task title
+         */
+        public String title() {
+            return title;
+        }
+
+        /**
+         * Get date the task was first seen.
+         * @return task date object
+         */
+        public TaskDate firstSeenOn() {
+            return firstSeen;
+        }
+
+        /**
+         * Get creation date of the latest copy.
+         * @return task date object
+         */
+        public TaskDate lastSeenOn() {
+            return lastSeen;
+        }
+
+        /**
+         * Get number of weeks the task was recorded in.
+         * @return number of weeks
+         */
+        public int weeks() {
+            return weeks;
+        }
+
+        /**
+         * Check if the latest copy of the task is completed.
+         * @return true if completed
+         */
+        public boolean isCompleted() {
+            return completed;
+        }
+
+        /**
+         * Get task age: days from the first appearance to the latest copy
+         * for completed tasks, to the given date for active ones.
+         * @param today current date
+         * @return number of days
+         */
+        public int ageDays(TaskDate today) {
+            return firstSeen.daysTo(completed ? lastSeen : today);
+        }
+
+        /**
+         * Add next copy of the task.
+         * @param tt todo task
+         */
+        void add(TodoTask tt) {
+            ++weeks;
+            lastSeen = tt.originatedOn();
+            completed = tt.isCompleted();
+        }
+
+        private final String groupName;
+        private final String lineage;
+        private final String title;
+        private final TaskDate firstSeen;
+        private TaskDate lastSeen = null;
+        private int weeks = 0;
+        private boolean completed = false;
+    }
+
+    /**
+     * Ctor: lineage analysis of the given database.
+     * @param root database root directory
+     * @param threads number of parallel loading threads
+     */
+    public TaskLineage(Path root, int threads) {
+        this.query = new TaskQuery(root, threads);
+    }
+
+    /**
+     * Build carry-over chains of all tasks of the given groups.
+     * @param groups group names, null element for default group
+     * @return list of chains ordered by the first appearance
+     * @throws IOException 
+     */
+    public List<Chain> analyze(List<String> groups) throws IOException {
+        List<Chain> chains = new ArrayList<>();
+        Map<String, Chain> byLineage = new HashMap<>();
+        try(Stream<TaskEntry> history = query.select(groups, null, null, TaskQuery.Status.ANY)) {
+            for(Iterator<TaskEntry> it = history.iterator(); it.hasNext(); ) {
+                TaskEntry te = it.next();
+                String key = te.group() + "/" + te.task().lineage();
+                Chain c = byLineage.get(key);
+                if(null == c) {
+                    c = new Chain(te.group(), te.task());
+                    byLineage.put(key, c);
+                    chains.add(c);
+                }
+                c.add(te.task());
+            }
+        }
+        return chains;
+    }
+
+    private final TaskQuery query;
+}
@@ -0,0 +1,328 @@
+/*
+    (java) library for Weekly Plans and Reminder
+
+    Copyright (C) 2011  Stas Torgashov
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+/* File:    TaskQuery.java
+ * Author:  Stas Torgashov aka Crimson Cat (crimcat@yandex.ru)
+ * Created: 2026, October 19
+ */
+
+package org.crimcat.lib.wpr;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import org.crimcat.lib.wpr.AppDatabase.FilesBundle.Component;
+import org.crimcat.lib.wpr.impl.DatabaseLayout;
+import org.crimcat.lib.wpr.impl.FilesBundleImpl;
+import org.crimcat.lib.wpr.impl.TitleDictionary;
+
+/**
+ * Date range query over tasks of several groups. The range is mapped to
+ * weeks by bundle file names, weeks which cannot contain matching tasks are
+ * skipped using their summary (see @see WeekSummary) without reading todo
+ * lists. Remaining weeks are loaded in parallel, matching tasks are streamed
+ * in date order (tasks of the same date in the requested groups order).
+ */
+public class TaskQuery {
+
+    /**
+     * Status of tasks to select.
+     */
+    public enum Status {
+        /**
+         * Any task.
+         */
+        ANY,
+        /**
+         * Active tasks only.
+         */
+        ACTIVE,
+        /**
+         * Completed tasks only.
+         */
+        COMPLETED
+    }
+
+    /**
+     * Ctor: query over the given database.
+     * @param root database root directory
+     * @param threads number of parallel loading threads
+     */
+    public TaskQuery(Path root, int threads) {
+        this.root = root;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Select tasks. Result stream must be consumed or closed, it uses
+     * loading threads until then. Damaged records of weeks written with
+     * record checksums are skipped.
+     * @param groups group names, null element for default group
+     * @param from first date of tasks or null for no lower bound
+     * @param to last date of tasks or null for no upper bound
+     * @param status status of tasks
+     * @return stream of matching tasks
+     * @throws IOException 
+     */
+    public Stream<TaskEntry> select(List<String> groups, TaskDate from, TaskDate to, Status status)
+            throws IOException {
+        final TaskDate fromMonday = (null == from) ? null : from.shiftToWeekDay(TaskDate.WeekDay.MONDAY);
+        TreeMap<String, Partition> weeks = new TreeMap<>();
+        for(String group : groups) {
+            for(TaskDate monday : DatabaseLayout.listWeeks(DatabaseLayout.groupDirectory(root, group))) {
+                if(((null == fromMonday) || (monday.compare(fromMonday) >= 0)) &&
+                   ((null == to) || (monday.compare(to) <= 0))) {
+                    weeks.computeIfAbsent(monday.toString(), k -> new Partition(monday)).groups.add(group);
+                }
+            }
+        }
+        List<Partition> partitions = new ArrayList<>(weeks.values());
+        partitionCount = 0;
+        for(Partition p : partitions) {
+            partitionCount += p.groups.size();
+        }
+        prunedCount.set(0);
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "wpr-query");
+            t.setDaemon(true);
+            return t;
+        });
+        Iterator<List<TaskEntry>> loader = new Iterator<List<TaskEntry>>() {
+            @Override
+            public boolean hasNext() {
+                fill();
+                return !pending.isEmpty();
+            }
+
+            @Override
+            public List<TaskEntry> next() {
+                if(!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                try {
+                    return pending.poll().get();
+                } catch(InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException(ex.toString());
+                } catch(ExecutionException ex) {
+                    pool.shutdownNow();
+                    if(ex.getCause() instanceof RuntimeException) {
+                        throw (RuntimeException)ex.getCause();
+                    }
+                    throw new RuntimeException(ex.getCause().toString());
+                }
+            }
+
+            /**
+             * Keep a limited number of weeks loading ahead of the consumer.
+             */
+            private void fill() {
+                while((pending.size() < 2 * threads) && (submitted < partitions.size())) {
+                    Partition p = partitions.get(submitted++);
+                    pending.add(pool.submit(() -> load(p, from, to, status)));
+                }
+                if(pending.isEmpty()) {
+                    pool.shutdown();
+                }
+            }
+
+            private final ArrayDeque<Future<List<TaskEntry>>> pending = new ArrayDeque<>();
+            private int submitted = 0;
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(loader,
+                Spliterator.ORDERED | Spliterator.NONNULL), false)
+            .flatMap(List::stream)
+            .onClose(pool::shutdownNow);
+    }
+
+    /**
+     * Select tasks matching the filter. Date range, status and groups the
+     * filter needs are pushed down to weeks and records loading, the whole
+     * filter is applied to the loaded tasks.
+     * @param groups group names to search in, null element for default group
+     * @param filter compiled filter
+     * @return stream of matching tasks, it must be consumed or closed
+     * @throws IOException 
+     */
+    public Stream<TaskEntry> select(List<String> groups, TaskFilter filter) throws IOException {
+        List<String> selected = new ArrayList<>();
+        for(String group : groups) {
+            if(filter.mayMatchGroup(group)) {
+                selected.add(group);
+            }
+        }
+        return select(selected, filter.from(), filter.to(), filter.status()).filter(filter::test);
+    }
+
+    /**
+     * Get number of weeks in the date range of the last query.
+     * @return number of weeks
+     */
+    public int partitionCount() {
+        return partitionCount;
+    }
+
+    /**
+     * Get number of weeks skipped by their summary in the last query.
+     * @return number of weeks
+     */
+    public int prunedCount() {
+        return prunedCount.get();
+    }
+
+    /**
+     * Load matching tasks of one week of all groups.
+     * @param p week partition
+     * @param from first date or null
+     * @param to last date or null
+     * @param status tasks status
+     * @return list of matching tasks sorted by date
+     * @throws IOException 
+     */
+    private List<TaskEntry> load(Partition p, TaskDate from, TaskDate to, Status status) throws IOException {
+        List<TaskEntry> found = new ArrayList<>();
+        for(String group : p.groups) {
+            FilesBundleImpl bundle = new FilesBundleImpl(root, group, p.monday);
+            WeekSummary summary = WeekSummary.read(bundle);
+            if((null != summary) && !summary.mayMatch(from, to, status)) {
+                prunedCount.incrementAndGet();
+                continue;
+            }
+            // damaged records don't hide the rest of the week from the query,
+            // but they keep their places, so indexes are the same as in the week
+            List<Integer> damaged = new ArrayList<>();
+            byte[] data = bundle.readIntactRecords(Component.TODOLIST, damaged);
+            int nextDamaged = 0;
+            final String fromStr = (null == from) ? null : from.toString();
+            final String toStr = (null == to) ? null : to.toString();
+            final TitleDictionary dict = bundle.getTitleDictionary();
+            WeekLineage lineage = null;
+            try(BufferedReader br = new BufferedReader(new InputStreamReader(
+                    new ByteArrayInputStream(data), StandardCharsets.UTF_8))) {
+                String line;
+                int index = 0;
+                while(null != (line = br.readLine())) {
+                    if(line.isEmpty()) {
+                        continue;
+                    }
+                    while((nextDamaged < damaged.size()) && (damaged.get(nextDamaged) == index)) {
+                        ++nextDamaged;
+                        ++index;
+                    }
+                    if(!mayMatch(line, fromStr, toStr, status)) {
+                        ++index;
+                        continue;
+                    }
+                    TodoTask tt = TodoTask.parse(line, dict);
+                    if(null == tt) {
+                        throw new RuntimeException("Cannot parse todo record: " + line);
+                    }
+                    if(matches(tt, from, to, status)) {
+                        if(null == lineage) {
+                            lineage = WeekLineage.read(bundle);
+                        }
+                        lineage.apply(tt, index);
+                        found.add(new TaskEntry(group, p.monday, index, tt));
+                    }
+                    ++index;
+                }
+            }
+        }
+        // stable sort keeps groups order for tasks of the same date
+        found.sort((a, b) -> a.task().originatedOn().compare(b.task().originatedOn()));
+        return found;
+    }
+
+    /**
+     * Check the todo record before it's parsed: its date and status are
+     * compared as they are written at the record start (DATE:[A|C]...),
+     * so most of records out of the query are skipped without making tasks.
+     * Records of other layout are left for the full check.
+     * @param line todo record
+     * @param from first date string or null
+     * @param to last date string or null
+     * @param status tasks status
+     * @return false if the record does not match for sure
+     */
+    private static boolean mayMatch(String line, String from, String to, Status status) {
+        if((line.length() < 12) || (':' != line.charAt(10))) {
+            return true;
+        }
+        char st = line.charAt(11);
+        if(((Status.ACTIVE == status) && ('C' == st)) || ((Status.COMPLETED == status) && ('A' == st))) {
+            return false;
+        }
+        // dates of the same layout compare as strings
+        return ((null == from) || (from.length() != 10) || (line.compareTo(from) >= 0)) &&
+            ((null == to) || (to.length() != 10) || (line.regionMatches(0, to, 0, 10) || (line.compareTo(to) < 0)));
+    }
+
+    /**
+     * Check if the task matches the query.
+     * @param tt todo task
+     * @param from first date or null
+     * @param to last date or null
+     * @param status tasks status
+     * @return true if matches
+     */
+    private static boolean matches(TodoTask tt, TaskDate from, TaskDate to, Status status) {
+        if(((Status.ACTIVE == status) && tt.isCompleted()) || ((Status.COMPLETED == status) && !tt.isCompleted())) {
+            return false;
+        }
+        return ((null == from) || (tt.originatedOn().compare(from) >= 0)) &&
+            ((null == to) || (tt.originatedOn().compare(to) <= 0));
+    }
+
+    /**
+     * Week of the requested groups which have it.
+     */
+    private static final class Partition {
+        Partition(TaskDate monday) {
+            this.monday = monday;
+        }
+
+        final TaskDate monday;
+        final List<String> groups = new ArrayList<>();
+    }
+
+    private final Path root;
+    private final int threads;
+    private volatile int partitionCount = 0;
+    private final AtomicInteger prunedCount = new AtomicInteger();
+}
@@ -24,18 +24,28 @@
 
 package org.crimcat.lib.wpr;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.zip.CRC32;
+import org.crimcat.lib.wpr.impl.TitleDictionary;
+
 /**
  * Todo task object. It's an aggregation of the following date:
  * creation date, task title and completion flag. Tasks are simple and
  * can be in only two states: active and completed. Tasks cannot be modified
  * in a way other than marking an active task as completed one. Now other
  * modifications are provided.
+ * A task copied to the next week keeps its lineage: id and first seen date
+ * of the original task, so all copies of one task can be linked together.
+ * Lineage is not a part of the task record, it's kept in the bundle
+ * metadata, see @see WeekLineage.
  */
 public class TodoTask {
 
     /**
      * Create new task with the given title (description). The date is taken
-     * as today.
+     * as today, the task gets new unique lineage id.
      * @param descr string with task description
      */
     public TodoTask(String descr) {
@@ -44,6 +54,46 @@ public class TodoTask {
         }
         this.description = descr;
         this.originated = new TaskDate();
+        this.lineage = newLineage(originated);
+    }
+
+    /**
+     * Create task with all the fields given.
+     * @param originated creation date
+     * @param completed completion flag
+     * @param descr task title
+     * @param lineage lineage id or null if the task is original
+     * @param firstSeen first seen date or null if the task is original
+     */
+    TodoTask(TaskDate originated, boolean completed, String descr, String lineage, TaskDate firstSeen) {
+        this.originated = originated;
+        this.fCompleted = completed;
+        this.description = descr;
+        this.lineage = lineage;
+        this.firstSeen = firstSeen;
+    }
+
+    /**
+     * Create a copy of the given task for the current week: it's created
+     * today, active and has the same title and lineage as the given one.
+     * @param from task to carry over
+     * @return new task
+     */
+    static TodoTask carryOver(TodoTask from) {
+        return copyOf(from, new TaskDate(), false);
+    }
+
+    /**
+     * Create a copy of the given task for a later week with the same title
+     * and lineage. It's used to rebuild tasks history, current week tasks
+     * are copied by @see Weekly.IEditor.carryOver.
+     * @param from task to copy
+     * @param originated creation date of the copy
+     * @param completed completion flag of the copy
+     * @return new task
+     */
+    public static TodoTask copyOf(TodoTask from, TaskDate originated, boolean completed) {
+        return new TodoTask(originated, completed, from.description, from.lineage(), from.firstSeenOn());
     }
 
     /**
@@ -62,6 +112,68 @@ public class TodoTask {
         return originated;
     }
 
+    /**
+     * Get lineage id: the same for the original task and all its copies
+     * made for the next weeks. New tasks get unique ids, tasks stored
+     * without lineage get ids made of their creation date and title.
+     * @return lineage id string
+     */
+    public String lineage() {
+        if(null == lineage) {
+            lineage = originalLineage(originated, description);
+        }
+        return lineage;
+    }
+
+    /**
+     * Check if the task is a copy of a task from one of previous weeks.
+     * @return true if the task is a copy
+     */
+    boolean isCarriedOver() {
+        return null != firstSeen;
+    }
+
+    /**
+     * Set lineage read from the bundle metadata.
+     * @param lineage lineage id
+     * @param firstSeen first seen date or null if the task is original
+     */
+    void setLineage(String lineage, TaskDate firstSeen) {
+        this.lineage = lineage;
+        this.firstSeen = firstSeen;
+    }
+
+    /**
+     * Make unique lineage id of new task.
+     * @param originated creation date
+     * @return lineage id string
+     */
+    private static String newLineage(TaskDate originated) {
+        return originated.toString().replace("-", "") + "-" +
+            Long.toHexString(ThreadLocalRandom.current().nextLong() | Long.MIN_VALUE);
+    }
+
+    /**
+     * Make lineage id of the task stored without lineage. It's the same for
+     * tasks with the same creation date and title.
+     * @param originated creation date
+     * @param descr task title
+     * @return lineage id string
+     */
+    static String originalLineage(TaskDate originated, String descr) {
+        CRC32 crc = new CRC32();
+        crc.update(descr.getBytes(StandardCharsets.UTF_8));
+        return originated.toString().replace("-", "") + "-" + Long.toHexString(crc.getValue());
+    }
+
+    /**
+     * Get date the task was first seen: creation date of the original task.
+     * @return task date object
+     */
+    public TaskDate firstSeenOn() {
+        return (null == firstSeen) ? originated : firstSeen;
+    }
+
     /**
      * Check if the task is already completed
      * @return true if the task is completed, false if it's active
@@ -77,9 +189,39 @@ public class TodoTask {
      */
     @Override
     public String toString() {
-        return originated.toString() + ":" +
-            (fCompleted ? "C" : "A") + ":" +
-            description;
+        return originated.toString() + ":" + status() + ":" + description;
+    }
+
+    /**
+     * Get string representation with the title encoded by the dictionary:
+     * DATE:[A|C];t:CODE. If the title cannot be encoded
+     * the result is the same as @see toString.
+     * @param dict title dictionary
+     * @return task as string
+     * @throws IOException 
+     */
+    String toString(TitleDictionary dict) throws IOException {
+        String code = dict.encode(title());
+        return (null == code)
+            ? toString()
+            : originated.toString() + ":" + status() + ";" + TITLE_CODE + ":" + code;
+    }
+
+    /**
+     * Get status field: completion flag.
+     * @return status string
+     */
+    private String status() {
+        return fCompleted ? "C" : "A";
+    }
+
+    /**
+     * Make a detached copy of the task: later changes of this task don't
+     * affect it.
+     * @return new task with the same fields
+     */
+    TodoTask copy() {
+        return new TodoTask(originated, fCompleted, description, lineage, firstSeen);
     }
 
     /**
@@ -93,21 +235,77 @@ public class TodoTask {
      * Read task from the string, @see toString. The expected format is
      * DATE:[A|C]:TITLE
      * If parsing is failed the contents of the current object is not changed.
+     * The task read gets new unique lineage id.
      * @param str string to parse
      * @return true if read, false if string is not recognized
      */
     public boolean fromString(String str) {
+        if(!fromString(str, null)) {
+            return false;
+        }
+        if(null == lineage) {
+            lineage = newLineage(originated);
+        }
+        return true;
+    }
+
+    /**
+     * Parse task record of the todo list, see @see toString(TitleDictionary).
+     * Lineage of the task is not set, it's read from the bundle metadata by
+     * @see WeekLineage.apply.
+     * @param str todo record
+     * @param dict title dictionary or null if encoded titles are not expected
+     * @return task or null if the record is not recognized
+     */
+    static TodoTask parse(String str, TitleDictionary dict) {
+        TodoTask tt = new TodoTask(null, false, null, null, null);
+        return tt.fromString(str, dict) ? tt : null;
+    }
+
+    /**
+     * Read task from the string which can have the title encoded by the
+     * dictionary, see @see toString(TitleDictionary). Lineage of the task is
+     * reset.
+     * @param str string to parse
+     * @param dict title dictionary or null if encoded titles are not expected
+     * @return true if read, false if string is not recognized
+     */
+    boolean fromString(String str, TitleDictionary dict) {
         String[] parts = str.split(":");
         if(parts.length >= 3) {
             TaskDate _td = new TaskDate();
             if(_td.fromString(parts[0])) {
-                if("A".equals(parts[1]) || "C".equals(parts[1])) {
-                    originated = _td;
-                    fCompleted = "C".equals(parts[1]);
-                    description = parts[2];
-                    for(int i = 3; i < parts.length; ++i) {
-                        description += ":" + parts[i];
+                String[] status = parts[1].split(";");
+                if("A".equals(status[0]) || "C".equals(status[0])) {
+                    boolean encoded = false;
+                    for(int i = 1; i < status.length; ++i) {
+                        if(TITLE_CODE.equals(status[i])) {
+                            encoded = true;
+                        }
+                    }
+                    String _description = parts[2];
+                    if(encoded) {
+                        if((null == dict) || (parts.length != 3)) {
+                            return false;
+                        }
+                        try {
+                            _description = dict.decode(parts[2]);
+                        } catch(IOException ex) {
+                            throw new RuntimeException(ex.toString());
+                        }
+                        if(null == _description) {
+                            return false;
+                        }
+                    } else {
+                        for(int i = 3; i < parts.length; ++i) {
+                            _description += ":" + parts[i];
+                        }
                     }
+                    originated = _td;
+                    fCompleted = "C".equals(status[0]);
+                    lineage = null;
+                    firstSeen = null;
+                    description = _description;
                     return true;
                 }
             }
@@ -115,7 +313,14 @@ public class TodoTask {
         return false;
     }
 
+    /**
+     * Status field flag of the title encoded by the dictionary.
+     */
+    private static final String TITLE_CODE = "t";
+
     private TaskDate originated = null;
     private String description = null;
     private boolean fCompleted = false;
+    private String lineage = null;
+    private TaskDate firstSeen = null;
 }
@@ -0,0 +1,80 @@
+/*
+    (java) library for Weekly Plans and Reminder
+
+    Copyright (C) 2011  Stas Torgashov
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+/* File:    WeekKey.java
+ * Author:  Stas Torgashov aka Crimson Cat (crimcat@yandex.ru)
+ * Created: 2026, October 19
+ */
+
+package org.crimcat.lib.wpr;
+
+/**
+ * Key of a weekly in the database: group and Monday of the week.
+ */
+public final class WeekKey {
+
+    /**
+     * Ctor: key of the week containing the given date.
+     * @param groupName group name or null for default group
+     * @param date any date of the week
+     */
+    public WeekKey(String groupName, TaskDate date) {
+        this.groupName = groupName;
+        this.monday = date.shiftToWeekDay(TaskDate.WeekDay.MONDAY);
+    }
+
+    /**
+     * Get group name.
+     * @return group name or null for default group
+     */
+    public String group() {
+        return groupName;
+    }
+
+    /**
+     * Get Monday of the week.
+     * @return Monday date
+     */
+    public TaskDate monday() {
+        return monday;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if(!(obj instanceof WeekKey)) {
+            return false;
+        }
+        WeekKey k = (WeekKey)obj;
+        return monday.equals(k.monday) &&
+            ((null == groupName) ? (null == k.groupName) : groupName.equals(k.groupName));
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * monday.toString().hashCode() + ((null == groupName) ? 0 : groupName.hashCode());
+    }
+
+    @Override
+    public String toString() {
+        return ((null == groupName) ? "" : groupName + "/") + monday;
+    }
+
+    private final String groupName;
+    private final TaskDate monday;
+}
@@ -0,0 +1,175 @@
+/*
+    (java) library for Weekly Plans and Reminder
+
+    Copyright (C) 2011  Stas Torgashov
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+/* File:    WeekLineage.java
+ * Author:  Stas Torgashov aka Crimson Cat (crimcat@yandex.ru)
+ * Created: 2026, October 19
+ */
+
+
+package org.crimcat.lib.wpr;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Lineage of the week tasks kept in the bundle checksum metadata. Todo list
+ * records stay DATE:[A|C]:TITLE, as all versions of the utility read them,
+ * while lineage id and first seen date of every task are stored as entries
+ * KEY=ID[/DATE] in the order of records. KEY is made of the task creation
+ * date and title, so an entry is never given to another task. Other
+ * versions of the utility drop the metadata when they save the week, its
+ * tasks get ids made of their date, title and place then.
+ */
+final class WeekLineage {
+
+    /**
+     * Metadata key.
+     */
+    private static final String META_LINEAGE = "tasks.lineage";
+
+    /**
+     * Read lineage of the bundle tasks.
+     * @param bundle files bundle
+     * @return lineage object, empty if the bundle has no lineage
+     */
+    static WeekLineage read(AppDatabase.FilesBundle bundle) {
+        String value = bundle.getMetadata(META_LINEAGE);
+        return new WeekLineage(((null == value) || value.isEmpty()) ? new String[0] : value.split(","));
+    }
+
+    /**
+     * Write lineage of all the tasks to the bundle metadata, it's saved with
+     * the checksum.
+     * @param bundle files bundle
+     * @param tasks tasks in the order of records
+     */
+    static void write(AppDatabase.FilesBundle bundle, List<? extends TodoTask> tasks) {
+        bundle.setMetadata(META_LINEAGE, tasks.isEmpty() ? null : entries(tasks));
+    }
+
+    /**
+     * Check if lineage of tasks appended to the todo list can be added to
+     * the stored one: it's so if the todo list is stored with lineage or
+     * there is no todo list yet.
+     * @param bundle files bundle
+     * @return true if @see append can be used
+     */
+    static boolean canAppend(AppDatabase.FilesBundle bundle) {
+        return (null != bundle.getMetadata(META_LINEAGE)) ||
+            (!Files.exists(bundle.getTodoListFilePath()) && (null == bundle.getMetadata("todolist.size")));
+    }
+
+    /**
+     * Add lineage of the tasks appended to the todo list.
+     * @param bundle files bundle
+     * @param tasks appended tasks
+     */
+    static void append(AppDatabase.FilesBundle bundle, List<? extends TodoTask> tasks) {
+        if(!tasks.isEmpty()) {
+            String value = bundle.getMetadata(META_LINEAGE);
+            bundle.setMetadata(META_LINEAGE,
+                (((null == value) || value.isEmpty()) ? "" : value + ",") + entries(tasks));
+        }
+    }
+
+    /**
+     * Remove lineage of the records dropped from the todo list.
+     * @param bundle files bundle
+     * @param indexes indexes of dropped records in ascending order
+     */
+    static void remove(AppDatabase.FilesBundle bundle, List<Integer> indexes) {
+        WeekLineage wl = read(bundle);
+        if((0 != wl.entries.length) && !indexes.isEmpty()) {
+            List<String> kept = new ArrayList<>(Arrays.asList(wl.entries));
+            for(int i = indexes.size() - 1; i >= 0; --i) {
+                if(indexes.get(i) < kept.size()) {
+                    kept.remove((int)indexes.get(i));
+                }
+            }
+            bundle.setMetadata(META_LINEAGE, kept.isEmpty() ? null : String.join(",", kept));
+        }
+    }
+
+    /**
+     * Set lineage of the task read from the todo list record. Task without
+     * stored lineage gets id made of its creation date, title and index.
+     * @param tt task parsed by @see TodoTask.parse
+     * @param index record index in the todo list, blank lines are not counted
+     */
+    void apply(TodoTask tt, int index) {
+        if(index < entries.length) {
+            String e = entries[index];
+            String key = keyOf(tt);
+            if(e.startsWith(key) && (e.length() > key.length()) && ('=' == e.charAt(key.length()))) {
+                int sep = e.indexOf('/', key.length());
+                TaskDate since = null;
+                if(sep > 0) {
+                    since = new TaskDate();
+                    if(!since.fromString(e.substring(sep + 1))) {
+                        since = null;
+                    }
+                }
+                tt.setLineage(e.substring(key.length() + 1, (sep > 0) ? sep : e.length()), since);
+                return;
+            }
+        }
+        tt.setLineage(TodoTask.originalLineage(tt.originatedOn(), tt.title()) + "-" + index, null);
+    }
+
+    /**
+     * Make entries of the tasks.
+     * @param tasks tasks in the order of records
+     * @return entries separated by commas
+     */
+    private static String entries(List<? extends TodoTask> tasks) {
+        StringBuilder sb = new StringBuilder();
+        for(TodoTask tt : tasks) {
+            if(sb.length() > 0) {
+                sb.append(',');
+            }
+            sb.append(keyOf(tt)).append('=').append(tt.lineage());
+            if(tt.isCarriedOver()) {
+                sb.append('/').append(tt.firstSeenOn());
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Make entry key of the task.
+     * @param tt todo task
+     * @return key string
+     */
+    private static String keyOf(TodoTask tt) {
+        CRC32 crc = new CRC32();
+        crc.update((tt.originatedOn() + ":" + tt.title()).getBytes(StandardCharsets.UTF_8));
+        return Long.toHexString(crc.getValue());
+    }
+
+    private WeekLineage(String[] entries) {
+        this.entries = entries;
+    }
+
+    private final String[] entries;
+}
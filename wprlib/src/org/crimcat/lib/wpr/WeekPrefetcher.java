@@ -0,0 +1,193 @@
+/*
+    (java) library for Weekly Plans and Reminder
+
+    Copyright (C) 2011  Stas Torgashov
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+/* File:    WeekPrefetcher.java
+ * Author:  Stas Torgashov aka Crimson Cat (crimcat@yandex.ru)
+ * Created: 2026, October 19
+ */
+
+package org.crimcat.lib.wpr;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Speculative loading of weeks which are likely needed next, e.g. the
+ * previous week for copying unfinished tasks or the neighbours of the week
+ * being browsed. Weeks are loaded in the background (see
+ * @see Weekly.loadAsync), loaded ones are kept while their estimated size
+ * fits the memory budget, the oldest ones are dropped first.
+ * A prefetched weekly is given away on @see take, so it's used by one
+ * owner only. Weeks changed after prefetching are not reloaded, so the
+ * prefetcher is meant for short living processes or short sequences of
+ * commands.
+ */
+public class WeekPrefetcher {
+
+    /**
+     * Default memory budget, bytes.
+     */
+    public static final long DEFAULT_BUDGET_BYTES = 4L << 20;
+
+    /**
+     * Ctor: prefetcher with default memory budget.
+     */
+    public WeekPrefetcher() {
+        this(DEFAULT_BUDGET_BYTES);
+    }
+
+    /**
+     * Ctor: prefetcher with the given memory budget.
+     * @param budgetBytes estimated size limit of prefetched weeklies
+     */
+    public WeekPrefetcher(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    /**
+     * Start loading the week if it's not loaded or being loaded yet.
+     * @param key week key
+     */
+    public synchronized void prefetch(WeekKey key) {
+        if(cache.containsKey(key)) {
+            return;
+        }
+        Entry e = new Entry(Weekly.loadAsync(key.monday(), key.group()));
+        cache.put(key, e);
+        e.future.whenComplete((w, ex) -> loaded(key, e, w));
+    }
+
+    /**
+     * Start loading the previous and the next weeks of the same group.
+     * @param key week key
+     */
+    public void prefetchAround(WeekKey key) {
+        prefetch(new WeekKey(key.group(), key.monday().shift(-7)));
+        prefetch(new WeekKey(key.group(), key.monday().shift(7)));
+    }
+
+    /**
+     * Get the week: prefetched one if it's available (waiting for its
+     * loading to complete if needed) or newly loaded one otherwise.
+     * @param key week key
+     * @param parts parts to load immediately if the week is not prefetched
+     * @return weekly object
+     * @throws IOException 
+     */
+    public Weekly take(WeekKey key, Set<Weekly.Part> parts) throws IOException {
+        Entry e;
+        synchronized(this) {
+            e = cache.remove(key);
+            if(null != e) {
+                usedBytes -= e.size;
+            }
+        }
+        if(null != e) try {
+            Weekly w = e.future.get();
+            hits.incrementAndGet();
+            return w;
+        } catch(InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException(ex.toString());
+        } catch(ExecutionException ex) {
+            // loaded again below, so the error is reported the regular way
+        }
+        misses.incrementAndGet();
+        return new Weekly(key.monday(), key.group(), parts);
+    }
+
+    /**
+     * Get number of weeks taken from prefetched ones.
+     * @return number of weeks
+     */
+    public int hitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Get number of weeks loaded on demand.
+     * @return number of weeks
+     */
+    public int missCount() {
+        return misses.get();
+    }
+
+    /**
+     * Account the loaded week and drop the oldest ones if the budget is
+     * exceeded. Failed loads are dropped.
+     * @param key week key
+     * @param e cache entry
+     * @param w loaded weekly or null if loading failed
+     */
+    private synchronized void loaded(WeekKey key, Entry e, Weekly w) {
+        if(cache.get(key) != e) {
+            return; // already taken
+        }
+        if(null == w) {
+            cache.remove(key);
+            return;
+        }
+        e.size = estimateSize(w);
+        usedBytes += e.size;
+        for(Iterator<Entry> it = cache.values().iterator(); it.hasNext() && (usedBytes > budgetBytes); ) {
+            Entry old = it.next();
+            if(old.future.isDone()) {
+                usedBytes -= old.size;
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Estimate heap size of the loaded weekly.
+     * @param w weekly object
+     * @return number of bytes
+     */
+    private static long estimateSize(Weekly w) {
+        long size = 256 + 2L * w.memo().length();
+        for(int i = 0; i < w.size(); ++i) {
+            size += 96 + 2L * w.taskAt(i).title().length();
+        }
+        return size;
+    }
+
+    /**
+     * Prefetched week.
+     */
+    private static final class Entry {
+        Entry(CompletableFuture<Weekly> future) {
+            this.future = future;
+        }
+
+        final CompletableFuture<Weekly> future;
+        long size = 0;
+    }
+
+    private final long budgetBytes;
+    private final Map<WeekKey, Entry> cache = new LinkedHashMap<>();
+    private long usedBytes = 0;
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+}
@@ -0,0 +1,134 @@
+/*
+    (java) library for Weekly Plans and Reminder
+
+    Copyright (C) 2011  Stas Torgashov
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+/* File:    WeekSnapshot.java
+ * Author:  Stas Torgashov aka Crimson Cat (crimcat@yandex.ru)
+ * Created: 2026, October 19
+ */
+
+package org.crimcat.lib.wpr;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Immutable version of a weekly: its tasks and memo as they were saved by
+ * @see Weekly.sync. Snapshot tasks are detached copies, so the snapshot
+ * never changes and can be read by any number of threads without locks
+ * while the weekly is edited. Versions of the same weekly object grow by
+ * one with every published snapshot.
+ */
+public final class WeekSnapshot {
+
+    /**
+     * Ctor: snapshot of the given state, tasks are copied.
+     * @param groupName group name or null for default group
+     * @param monday Monday date
+     * @param version snapshot version
+     * @param tasks tasks of the week
+     * @param memo memo text
+     */
+    WeekSnapshot(String groupName, TaskDate monday, long version, List<TodoTask> tasks, String memo) {
+        this.groupName = groupName;
+        this.monday = monday;
+        this.version = version;
+        List<TodoTask> copies = new ArrayList<>(tasks.size());
+        for(TodoTask tt : tasks) {
+            copies.add(tt.copy());
+        }
+        this.tasks = Collections.unmodifiableList(copies);
+        this.memo = memo;
+    }
+
+    /**
+     * Get group name.
+     * @return group name or null for default group
+     */
+    public String group() {
+        return groupName;
+    }
+
+    /**
+     * Get Monday date of the week.
+     * @return Monday date
+     */
+    public TaskDate startedOn() {
+        return monday;
+    }
+
+    /**
+     * Get snapshot version.
+     * @return version number, greater for later snapshots of the weekly
+     */
+    public long version() {
+        return version;
+    }
+
+    /**
+     * Get number of tasks.
+     * @return number of tasks (both completed and active)
+     */
+    public int size() {
+        return tasks.size();
+    }
+
+    /**
+     * Get task by its index.
+     * @param idx task index, must be less than @see size result
+     * @return task object
+     */
+    public TodoTask taskAt(int idx) {
+        return tasks.get(idx);
+    }
+
+    /**
+     * Get all tasks.
+     * @return unmodifiable list of tasks
+     */
+    public List<TodoTask> tasks() {
+        return tasks;
+    }
+
+    /**
+     * Get stream of tasks, it can be turned parallel.
+     * @return sequential stream
+     */
+    public Stream<TodoTask> stream() {
+        Spliterator<TodoTask> s = new WeeksSpliterator(Collections.singletonList(tasks));
+        return StreamSupport.stream(s, false);
+    }
+
+    /**
+     * Get memo text.
+     * @return memo text
+     */
+    public String memo() {
+        return memo;
+    }
+
+    private final String groupName;
+    private final TaskDate monday;
+    private final long version;
+    private final List<TodoTask> tasks;
+    private final String memo;
+}
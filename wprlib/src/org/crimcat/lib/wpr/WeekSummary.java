@@ -0,0 +1,153 @@
+/*
+    (java) library for Weekly Plans and Reminder
+
+    Copyright (C) 2011  Stas Torgashov
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+/* File:    WeekSummary.java
+ * Author:  Stas Torgashov aka Crimson Cat (crimcat@yandex.ru)
+ * Created: 2026, October 19
+ */
+
+package org.crimcat.lib.wpr;
+
+import java.nio.file.Files;
+import java.util.List;
+
+/**
+ * Cheap summary of the week tasks kept in the bundle checksum metadata:
+ * number of active and completed tasks and the range of tasks dates. It lets
+ * queries skip weeks without reading todo list files.
+ */
+final class WeekSummary {
+
+    /**
+     * Metadata keys.
+     */
+    private static final String META_ACTIVE = "tasks.active";
+    private static final String META_COMPLETED = "tasks.completed";
+    private static final String META_FIRST = "tasks.first";
+    private static final String META_LAST = "tasks.last";
+
+    /**
+     * Make summary of the tasks list.
+     * @param tasks list of tasks
+     * @return summary object
+     */
+    static WeekSummary of(List<? extends TodoTask> tasks) {
+        WeekSummary ws = new WeekSummary();
+        for(TodoTask tt : tasks) {
+            ws.add(tt);
+        }
+        return ws;
+    }
+
+    /**
+     * Read summary of the bundle. Bundle without todo list gets empty summary.
+     * @param bundle files bundle
+     * @return summary object or null if the bundle has no summary
+     */
+    static WeekSummary read(AppDatabase.FilesBundle bundle) {
+        String active = bundle.getMetadata(META_ACTIVE);
+        String completed = bundle.getMetadata(META_COMPLETED);
+        if((null == active) || (null == completed)) {
+            boolean empty = !Files.exists(bundle.getTodoListFilePath()) &&
+                (null == bundle.getMetadata("todolist.size"));
+            return empty ? new WeekSummary() : null;
+        }
+        WeekSummary ws = new WeekSummary();
+        try {
+            ws.active = Integer.parseInt(active);
+            ws.completed = Integer.parseInt(completed);
+        } catch(NumberFormatException ex) {
+            return null;
+        }
+        if(ws.active + ws.completed > 0) {
+            ws.first = new TaskDate();
+            ws.last = new TaskDate();
+            String first = bundle.getMetadata(META_FIRST);
+            String last = bundle.getMetadata(META_LAST);
+            if((null == first) || (null == last) || !ws.first.fromString(first) || !ws.last.fromString(last)) {
+                return null;
+            }
+        }
+        return ws;
+    }
+
+    /**
+     * Remove summary from the bundle metadata, e.g. when the todo list is
+     * changed without parsing.
+     * @param bundle files bundle
+     */
+    static void clear(AppDatabase.FilesBundle bundle) {
+        for(String key : new String[] { META_ACTIVE, META_COMPLETED, META_FIRST, META_LAST }) {
+            bundle.setMetadata(key, null);
+        }
+    }
+
+    /**
+     * Add task to the summary.
+     * @param tt todo task
+     */
+    void add(TodoTask tt) {
+        if(tt.isCompleted()) {
+            ++completed;
+        } else {
+            ++active;
+        }
+        TaskDate td = tt.originatedOn();
+        if((null == first) || (td.compare(first) < 0)) {
+            first = td;
+        }
+        if((null == last) || (td.compare(last) > 0)) {
+            last = td;
+        }
+    }
+
+    /**
+     * Write summary to the bundle metadata, it's saved with the checksum.
+     * @param bundle files bundle
+     */
+    void write(AppDatabase.FilesBundle bundle) {
+        bundle.setMetadata(META_ACTIVE, Integer.toString(active));
+        bundle.setMetadata(META_COMPLETED, Integer.toString(completed));
+        bundle.setMetadata(META_FIRST, (null == first) ? null : first.toString());
+        bundle.setMetadata(META_LAST, (null == last) ? null : last.toString());
+    }
+
+    /**
+     * Check if the week can contain tasks matching the query.
+     * @param from first date or null
+     * @param to last date or null
+     * @param status tasks status
+     * @return false if the week has no matching tasks for sure
+     */
+    boolean mayMatch(TaskDate from, TaskDate to, TaskQuery.Status status) {
+        int count = (TaskQuery.Status.ACTIVE == status) ? active
+            : (TaskQuery.Status.COMPLETED == status) ? completed
+            : active + completed;
+        if(0 == count) {
+            return false;
+        }
+        return ((null == from) || (last.compare(from) >= 0)) &&
+            ((null == to) || (first.compare(to) <= 0));
+    }
+
+    private int active = 0;
+    private int completed = 0;
+    private TaskDate first = null;
+    private TaskDate last = null;
+}
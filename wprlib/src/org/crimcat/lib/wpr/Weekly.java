@@ -25,17 +25,52 @@
 package org.crimcat.lib.wpr;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.PrintStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
-//import org.crimcat.lib.wpr.DatabaseConfig.DatabaseFilesBundle;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import org.crimcat.lib.wpr.AppDatabase.FilesBundle.Component;
+import org.crimcat.lib.wpr.impl.DatabaseLayout;
+import org.crimcat.lib.wpr.impl.TitleDictionary;
 
 /**
  * Weekly database representation.
+ * Memo and tasks are loaded independently on first access, so the weekly
+ * object reads only the files really needed by its user.
  */
 public class Weekly {
 
+    /**
+     * Weekly parts which can be requested to be loaded in advance.
+     */
+    public enum Part {
+        /**
+         * Weekly memo text.
+         */
+        MEMO,
+        /**
+         * List of todo tasks.
+         */
+        TASKS
+    }
+
     /**
      * Weekly todo task entry editor interface.
      */
@@ -52,6 +87,13 @@ public class Weekly {
          */
         void addTask(String description);
 
+        /**
+         * Add a copy of the task from another week to this weekly, the copy
+         * keeps the task lineage, see @see TodoTask.lineage.
+         * @param task todo task to copy
+         */
+        void carryOver(TodoTask task);
+
         /**
          * Mark the given task completed.
          * @param task todo task reference
@@ -64,9 +106,7 @@ public class Weekly {
      * @throws IOException
      */
     public Weekly() throws IOException {
-        monday = new TaskDate().shiftToWeekDay(TaskDate.WeekDay.MONDAY);
-        dbbundle = AppDatabase.getFilesBundle(monday);
-        load();
+        this(new TaskDate(), null, EnumSet.allOf(Part.class));
     }
     
     /**
@@ -75,9 +115,7 @@ public class Weekly {
      * @throws IOException 
      */
     public Weekly(String groupName) throws IOException{
-        monday = new TaskDate().shiftToWeekDay(TaskDate.WeekDay.MONDAY);
-        dbbundle = AppDatabase.getFilesBundle(monday, groupName);
-        load();
+        this(new TaskDate(), groupName, EnumSet.allOf(Part.class));
     }
     
     /**
@@ -86,9 +124,7 @@ public class Weekly {
      * @throws IOException
      */
     public Weekly(TaskDate forDate) throws IOException {
-        monday = forDate.shiftToWeekDay(TaskDate.WeekDay.MONDAY);
-        dbbundle = AppDatabase.getFilesBundle(monday);
-        load();
+        this(forDate, null, EnumSet.allOf(Part.class));
     }
     
     /**
@@ -99,9 +135,107 @@ public class Weekly {
      * @throws IOException 
      */
     public Weekly(TaskDate forDate, String groupName) throws IOException {
+        this(forDate, groupName, EnumSet.allOf(Part.class));
+    }
+
+    /**
+     * Ctor: create weekly database for the given date and given group name,
+     * load only the required parts. Other parts are loaded on first access.
+     * @param forDate date object reference
+     * @param groupName string with group name or null for default group
+     * @param parts set of parts to load immediately
+     * @throws IOException 
+     */
+    public Weekly(TaskDate forDate, String groupName, Set<Part> parts) throws IOException {
         monday = forDate.shiftToWeekDay(TaskDate.WeekDay.MONDAY);
-        dbbundle = AppDatabase.getFilesBundle(monday, groupName);
-        load();
+        this.groupName = groupName;
+        dbbundle = openBundle();
+        if(parts.contains(Part.MEMO)) {
+            loadMemo();
+        }
+        if(parts.contains(Part.TASKS)) {
+            loadTasks();
+        }
+    }
+
+    /**
+     * Load weekly database for the given date and group without blocking
+     * the caller: memo and tasks are read concurrently through asynchronous
+     * file channels and verified against the checksum.
+     * @param forDate date object reference
+     * @param groupName group name or null for default group
+     * @return future weekly, damaged records are skipped as on synchronous
+     * loading, see @see damagedRecords; it fails with @see ChecksumException
+     * if the data is damaged otherwise
+     */
+    public static CompletableFuture<Weekly> loadAsync(TaskDate forDate, String groupName) {
+        final TaskDate monday = forDate.shiftToWeekDay(TaskDate.WeekDay.MONDAY);
+        return CompletableFuture.supplyAsync(() -> openBundle(monday, groupName))
+            .thenCompose(bundle -> {
+                // files states are taken before reading as the synchronous loading does
+                final Map<Part, String> stamps = new EnumMap<>(Part.class);
+                for(Part p : Part.values()) {
+                    String stamp = stampOf(bundle, monday, p);
+                    if(null != stamp) {
+                        stamps.put(p, stamp);
+                    }
+                }
+                return bundle.readComponentsAsync(EnumSet.allOf(Component.class))
+                    .handle((data, failure) -> {
+                        Throwable cause = (failure instanceof CompletionException) ? failure.getCause() : failure;
+                        try {
+                            if(null == cause) {
+                                return new Weekly(monday, groupName, bundle, data, stamps);
+                            }
+                            if(cause instanceof ChecksumException) {
+                                // damaged records are found and skipped by the synchronous loading
+                                return new Weekly(monday, groupName, EnumSet.allOf(Part.class));
+                            }
+                        } catch(IOException ex) {
+                            throw new CompletionException(ex);
+                        }
+                        throw new CompletionException(cause);
+                    });
+            });
+    }
+
+    /**
+     * Load many weeklies without blocking the caller, all of them are read
+     * concurrently, see @see loadAsync(TaskDate, String).
+     * @param keys keys of weeks to load
+     * @return future list of weeklies in the order of the keys
+     */
+    public static CompletableFuture<List<Weekly>> loadAsync(List<WeekKey> keys) {
+        List<CompletableFuture<Weekly>> loads = new ArrayList<>(keys.size());
+        for(WeekKey k : keys) {
+            loads.add(loadAsync(k.monday(), k.group()));
+        }
+        return CompletableFuture.allOf(loads.toArray(new CompletableFuture<?>[0])).thenApply(v -> {
+            List<Weekly> weeklies = new ArrayList<>(loads.size());
+            for(CompletableFuture<Weekly> f : loads) {
+                weeklies.add(f.join());
+            }
+            return weeklies;
+        });
+    }
+
+    /**
+     * Ctor: weekly made of already read and verified data.
+     * @param monday Monday date
+     * @param groupName group name or null for default group
+     * @param bundle files bundle the data was read from
+     * @param data contents of the components
+     * @param stamps states of the parts files taken before reading them
+     * @throws IOException 
+     */
+    private Weekly(TaskDate monday, String groupName, AppDatabase.FilesBundle bundle,
+                   Map<Component, byte[]> data, Map<Part, String> stamps) throws IOException {
+        this.monday = monday;
+        this.groupName = groupName;
+        dbbundle = bundle;
+        fileStamps.putAll(stamps);
+        applyMemo(data.get(Component.MEMO), Collections.<Integer>emptyList());
+        applyTasks(data.get(Component.TODOLIST), Collections.<Integer>emptyList());
     }
 
     /**
@@ -109,7 +243,7 @@ public class Weekly {
      * @return integer number of tasks (both completed and active)
      */
     public int size() {
-        return tasks.size();
+        return tasks().size();
     }
 
     /**
@@ -121,7 +255,89 @@ public class Weekly {
         if((idx < 0) || (idx >= size())) {
             throw new RuntimeException();
         }
-        return tasks.get(idx);
+        return tasks().get(idx);
+    }
+
+    /**
+     * Get spliterator over tasks of this weekly. The tasks list is not
+     * copied, so the weekly must not be changed until traversal is done;
+     * @see snapshot gives tasks which can be traversed during editing.
+     * @return ordered and sized spliterator
+     */
+    public Spliterator<TodoTask> spliterator() {
+        return new WeeksSpliterator(Collections.singletonList(tasks()));
+    }
+
+    /**
+     * Get stream of tasks of this weekly, see @see spliterator.
+     * @return sequential stream, it can be turned parallel
+     */
+    public Stream<TodoTask> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Get spliterator over tasks of several weeks, week by week in the
+     * given order. Tasks of all weeks are loaded by this call, the lists
+     * are not copied, so weeklies must not be changed until traversal is
+     * done. Splitting divides the remaining tasks in halves regardless of
+     * week boundaries.
+     * @param weeks weeklies, see @see loadAsync to load a range of weeks
+     * @return ordered and sized spliterator
+     */
+    public static Spliterator<TodoTask> spliterator(List<Weekly> weeks) {
+        List<List<TodoTask>> lists = new ArrayList<>(weeks.size());
+        for(Weekly w : weeks) {
+            lists.add(w.tasks());
+        }
+        return new WeeksSpliterator(lists);
+    }
+
+    /**
+     * Get stream of tasks of several weeks, see @see spliterator(List).
+     * @param weeks weeklies
+     * @return sequential stream, it can be turned parallel
+     */
+    public static Stream<TodoTask> stream(List<Weekly> weeks) {
+        return StreamSupport.stream(spliterator(weeks), false);
+    }
+
+    /**
+     * Get the last published snapshot of this weekly: its tasks and memo as
+     * they were saved. This method can be called from any thread, it does
+     * not wait for the editing thread except the first call which reads
+     * the week from the database. Later snapshots are published by @see
+     * sync, so changes made through the editor are never seen half done.
+     * @return immutable weekly snapshot
+     */
+    public WeekSnapshot snapshot() {
+        WeekSnapshot s = published;
+        if(null == s) {
+            synchronized(publishLock) {
+                s = published;
+                if(null == s) try {
+                    // loaded parts may have unsaved changes, so they are not used
+                    s = makeSnapshot(false);
+                    published = s;
+                } catch(IOException ex) {
+                    throw new RuntimeException(ex.toString());
+                }
+            }
+        }
+        return s;
+    }
+
+    /**
+     * Get column layout of the tasks. It's built once and kept until the
+     * tasks list changes.
+     * @return tasks columns
+     */
+    public WeeklyColumns columns() {
+        List<TodoTask> list = tasks();
+        if(null == columns) {
+            columns = new WeeklyColumns(list);
+        }
+        return columns;
     }
 
     /**
@@ -132,12 +348,41 @@ public class Weekly {
         return monday;
     }
 
+    /**
+     * Get group name of this weekly.
+     * @return group name or null for default group
+     */
+    public String group() {
+        return groupName;
+    }
+
+    /**
+     * Get number of records skipped on loading as they don't match their
+     * checksums. The week is still readable and new tasks can be appended,
+     * but changed memo or tasks cannot be saved until the damaged records
+     * are repaired or dropped by the database verification.
+     * @return number of damaged records of the loaded parts
+     */
+    public int damagedRecords() {
+        int count = 0;
+        for(List<Integer> damaged : damagedRecords.values()) {
+            count += damaged.size();
+        }
+        return count;
+    }
+
     /**
      * Get memo string for this weekly.
      * @return string with memo text
      */
     public String memo() {
-        return memoText == null ? "" : memoText;
+        refreshStaleParts();
+        if(null == memoText) try {
+            loadMemo();
+        } catch(IOException ex) {
+            throw new RuntimeException(ex.toString());
+        }
+        return memoText;
     }
 
     /**
@@ -160,19 +405,42 @@ public class Weekly {
             return new Weekly.IEditor() {
                 @Override
                 public void setMemo(String txt) {
-                    memoText = txt;
-                    wasChanged = true;
+                    memoText = (null == txt) ? "" : txt;
+                    memoChanged = true;
+                    pendingEvents.add(new WeeklyEvent(WeeklyEvent.Type.MEMO_CHANGED,
+                        groupName, monday, -1, memoText));
                 }
                 @Override
                 public void addTask(String description) {
-                    tasks.add(new TodoTask(description));
-                    wasChanged = true;
+                    add(new TodoTask(description));
+                }
+                @Override
+                public void carryOver(TodoTask task) {
+                    add(TodoTask.carryOver(task));
+                }
+                private void add(TodoTask tt) {
+                    int idx = -1;
+                    if(null == tasks) {
+                        // tasks are not loaded, new one is appended on save
+                        appendedTasks.add(tt);
+                    } else {
+                        idx = tasks.size();
+                        tasks.add(tt);
+                        tasksChanged = true;
+                        columns = null;
+                    }
+                    pendingEvents.add(new WeeklyEvent(WeeklyEvent.Type.TASK_ADDED,
+                        groupName, monday, idx, tt.title()));
                 }
                 @Override
                 public void markTaskCompleted(TodoTask task) {
-                    if((null != task) && tasks.contains(task)) {
+                    int idx = (null == task) ? -1 : tasks().indexOf(task);
+                    if(idx >= 0) {
                         task.markCompleted();
-                        wasChanged = true;
+                        tasksChanged = true;
+                        columns = null;
+                        pendingEvents.add(new WeeklyEvent(WeeklyEvent.Type.TASK_COMPLETED,
+                            groupName, monday, idx, task.title()));
                     }
                 }
             };
@@ -181,85 +449,423 @@ public class Weekly {
     }
 
     /**
-     * Save weekly changes if any.
-     * @throws IOException
+     * Save weekly changes if any and publish the new snapshot, see @see
+     * snapshot. Change events are published to the group change feed, see
+     * @see ChangeFeed.
+     * @throws IOException if saving fails or a changed part was also
+     *  changed outside since it was loaded, nothing is written then
      */
     public void sync() throws IOException {
-        if(wasChanged) {
-            save();
-            wasChanged = false;
+        synchronized(publishLock) {
+            if(memoChanged || tasksChanged || !appendedTasks.isEmpty()) {
+                save();
+                // snapshots are kept only after someone asked for them
+                if(null != published) {
+                    published = makeSnapshot(true);
+                }
+            }
+        }
+        if(!pendingEvents.isEmpty()) {
+            // events are kept for the next sync if they cannot be recorded
+            ChangeFeed.record(this, new ArrayList<>(pendingEvents));
+            pendingEvents.clear();
         }
     }
 
     /**
-     * Load weekly from the database.
-     * @throws IOException
+     * Mark parts of this weekly as possibly changed outside of this object,
+     * they are loaded again on next access if their files differ from the
+     * ones this object read or wrote. Parts changed through the editor and
+     * not saved yet are kept, saving them fails then. This method can be
+     * called from any thread.
+     * @param parts set of changed parts
+     */
+    void invalidate(Set<Part> parts) {
+        int mask = 0;
+        for(Part p : parts) {
+            mask |= 1 << p.ordinal();
+        }
+        final int bits = mask;
+        staleParts.getAndUpdate(v -> v | bits);
+        published = null;
+    }
+
+    /**
+     * Drop parts marked by @see invalidate, so they are loaded again. Parts
+     * which files are the same as this object read or wrote them are kept,
+     * so own saves don't invalidate the weekly. Really changed parts having
+     * unsaved changes stay marked as the conflict found on saving.
      */
-    private void load() throws IOException {
-        // verify checksum
-        if(!dbbundle.checkConsistency()) {
-            throw new ChecksumException();
-        }
-
-        // load memo
-        if(Files.exists(dbbundle.getMemoFilePath())) {
-            StringBuilder memoBuf;
-            try(BufferedReader memobr = Files.newBufferedReader(dbbundle.getMemoFilePath())) {
-                memoBuf = new StringBuilder();
-                while(memobr.ready()) {
-                    String nextLine = memobr.readLine();
-                    if(nextLine.length() > 0) {
-                        memoBuf.append(nextLine);
-                        memoBuf.append('\n');
+    private void refreshStaleParts() {
+        int stale = staleParts.getAndSet(0);
+        if(0 != stale) {
+            int conflicts = 0;
+            boolean dropped = false;
+            for(Part p : Part.values()) {
+                int bit = 1 << p.ordinal();
+                if(0 == (stale & bit)) {
+                    continue;
+                }
+                String stamp = stampOf(dbbundle, monday, p);
+                if(Objects.equals(stamp, fileStamps.get(p))) {
+                    continue;
+                }
+                if(Part.MEMO == p) {
+                    if(memoChanged) {
+                        conflicts |= bit;
+                    } else {
+                        memoText = null;
+                        dropped = true;
+                    }
+                } else {
+                    if(tasksChanged) {
+                        conflicts |= bit;
+                    } else {
+                        tasks = null;
+                        columns = null;
+                        dropped = true;
                     }
                 }
             }
-            memoText = memoBuf.toString();
+            if(dropped) {
+                // bundle caches checksums, so the fresh one is needed
+                dbbundle = openBundle();
+            }
+            if(0 != conflicts) {
+                final int bits = conflicts;
+                staleParts.getAndUpdate(v -> v | bits);
+            }
         }
+    }
 
-        // load todos
-        try(BufferedReader todobr = Files.newBufferedReader(dbbundle.getTodoListFilePath())) {
-            while(todobr.ready()) {
-                String nextLine = todobr.readLine();
-                if(nextLine.length() > 0) {
-                    TodoTask tt = new TodoTask("x"); // fake parameters
-                    if(!tt.fromString(nextLine)) {
-                        throw new RuntimeException("Cannot parse todo record: " + nextLine);
-                    }
-                    tasks.add(tt);
+    /**
+     * Remember the state of the part file, it's done before reading the part
+     * and after writing it.
+     * @param p weekly part
+     */
+    private void rememberStamp(Part p) {
+        String stamp = stampOf(dbbundle, monday, p);
+        if(null == stamp) {
+            fileStamps.remove(p);
+        } else {
+            fileStamps.put(p, stamp);
+        }
+    }
+
+    /**
+     * Get the state of the part file: its modification time and size. Parts
+     * of packed weeks are represented by the pack file.
+     * @param bundle files bundle of the week
+     * @param monday Monday of the week
+     * @param p weekly part
+     * @return state string, null if the file cannot be read
+     */
+    private static String stampOf(AppDatabase.FilesBundle bundle, TaskDate monday, Part p) {
+        Path file = (Part.MEMO == p) ? bundle.getMemoFilePath() : bundle.getTodoListFilePath();
+        try {
+            if(!Files.exists(file)) {
+                file = DatabaseLayout.packFilePath(file.getParent(), monday.year());
+            }
+            BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            return attrs.lastModifiedTime() + ":" + attrs.size();
+        } catch(IOException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Get files bundle of this weekly.
+     * @return files bundle object
+     */
+    private AppDatabase.FilesBundle openBundle() {
+        return openBundle(monday, groupName);
+    }
+
+    /**
+     * Get files bundle of the week.
+     * @param monday Monday date
+     * @param groupName group name or null for default group
+     * @return files bundle object
+     */
+    private static AppDatabase.FilesBundle openBundle(TaskDate monday, String groupName) {
+        return (null == groupName)
+            ? AppDatabase.getFilesBundle(monday)
+            : AppDatabase.getFilesBundle(monday, groupName);
+    }
+
+    /**
+     * Get list of tasks, load it if not loaded yet.
+     * @return list of tasks
+     */
+    private List<TodoTask> tasks() {
+        refreshStaleParts();
+        if(null == tasks) try {
+            loadTasks();
+        } catch(IOException ex) {
+            throw new RuntimeException(ex.toString());
+        }
+        return tasks;
+    }
+
+    /**
+     * Make snapshot of the saved weekly state.
+     * @param useLoaded true if loaded parts can be taken as they are, it's
+     *  so right after saving; otherwise everything is read from the database
+     * @return new snapshot with the next version
+     * @throws IOException 
+     */
+    private WeekSnapshot makeSnapshot(boolean useLoaded) throws IOException {
+        AppDatabase.FilesBundle bundle = openBundle();
+        List<Integer> damaged = new ArrayList<>();
+        List<TodoTask> list = (useLoaded && (null != tasks))
+            ? tasks : parseTasks(readRecords(bundle, Component.TODOLIST, damaged), bundle, damaged);
+        String memo = (useLoaded && (null != memoText))
+            ? memoText : parseMemo(readRecords(bundle, Component.MEMO, new ArrayList<>()));
+        return new WeekSnapshot(groupName, monday, ++version, list, memo);
+    }
+
+    /**
+     * Load memo from the database.
+     * @throws IOException
+     */
+    private void loadMemo() throws IOException {
+        rememberStamp(Part.MEMO);
+        List<Integer> damaged = new ArrayList<>();
+        applyMemo(readRecords(dbbundle, Component.MEMO, damaged), damaged);
+    }
+
+    /**
+     * Set memo from the memo component contents.
+     * @param data component contents
+     * @param damaged indexes of damaged records skipped in the contents
+     * @throws IOException
+     */
+    private void applyMemo(byte[] data, List<Integer> damaged) throws IOException {
+        memoText = parseMemo(data);
+        memoChanged = false;
+        damagedRecords.put(Part.MEMO, damaged);
+    }
+
+    /**
+     * Get memo text of the memo component contents.
+     * @param data component contents
+     * @return memo text, empty lines are dropped
+     * @throws IOException 
+     */
+    private static String parseMemo(byte[] data) throws IOException {
+        StringBuilder memoBuf = new StringBuilder();
+        for(String nextLine : readLines(data)) {
+            if(nextLine.length() > 0) {
+                memoBuf.append(nextLine);
+                memoBuf.append('\n');
+            }
+        }
+        return memoBuf.toString();
+    }
+
+    /**
+     * Load todo tasks from the database. Tasks added before loading are
+     * kept at the end of the list.
+     * @throws IOException
+     */
+    private void loadTasks() throws IOException {
+        rememberStamp(Part.TASKS);
+        List<Integer> damaged = new ArrayList<>();
+        applyTasks(readRecords(dbbundle, Component.TODOLIST, damaged), damaged);
+    }
+
+    /**
+     * Read the component contents. If records don't match their checksums
+     * the damaged ones are skipped, so the rest of the week can be read.
+     * @param bundle files bundle
+     * @param c component to read
+     * @param damaged list to add indexes of skipped records to
+     * @return component contents
+     * @throws IOException
+     * @throws ChecksumException if the contents is damaged not only in
+     *  separate records
+     */
+    private static byte[] readRecords(AppDatabase.FilesBundle bundle, Component c,
+                                      List<Integer> damaged) throws IOException {
+        try {
+            return bundle.readComponent(c);
+        } catch(ChecksumException ex) {
+            List<Integer> skipped = new ArrayList<>();
+            byte[] data = bundle.readIntactRecords(c, skipped);
+            if(skipped.isEmpty()) {
+                throw ex;
+            }
+            damaged.addAll(skipped);
+            return data;
+        }
+    }
+
+    /**
+     * Set tasks from the todo list component contents. Tasks added before
+     * loading are kept at the end of the list.
+     * @param data component contents
+     * @param damaged indexes of damaged records skipped in the contents
+     * @throws IOException
+     */
+    private void applyTasks(byte[] data, List<Integer> damaged) throws IOException {
+        ArrayList<TodoTask> loaded = parseTasks(data, dbbundle, damaged);
+        damagedRecords.put(Part.TASKS, damaged);
+        tasksChanged = !appendedTasks.isEmpty();
+        loaded.addAll(appendedTasks);
+        appendedTasks.clear();
+        tasks = loaded;
+        columns = null;
+    }
+
+    /**
+     * Get tasks of the todo list component contents with their lineage.
+     * @param data component contents
+     * @param bundle files bundle the contents is read from
+     * @param damaged indexes of records skipped as damaged in ascending
+     *  order, they keep their places for the lineage, or null
+     * @return list of tasks
+     * @throws IOException 
+     */
+    static ArrayList<TodoTask> parseTasks(byte[] data, AppDatabase.FilesBundle bundle,
+                                          List<Integer> damaged) throws IOException {
+        TitleDictionary dict = bundle.getTitleDictionary();
+        WeekLineage lineage = WeekLineage.read(bundle);
+        ArrayList<TodoTask> loaded = new ArrayList<>();
+        int index = 0;
+        int nextDamaged = 0;
+        for(String nextLine : readLines(data)) {
+            if(nextLine.length() > 0) {
+                while((null != damaged) && (nextDamaged < damaged.size()) && (damaged.get(nextDamaged) == index)) {
+                    ++nextDamaged;
+                    ++index;
                 }
+                TodoTask tt = TodoTask.parse(nextLine, dict);
+                if(null == tt) {
+                    throw new RuntimeException("Cannot parse todo record: " + nextLine);
+                }
+                lineage.apply(tt, index++);
+                loaded.add(tt);
             }
         }
+        return loaded;
+    }
 
-        wasChanged = false;
+    /**
+     * Split component data into text lines.
+     * @param data component contents
+     * @return list of lines
+     * @throws IOException 
+     */
+    private static List<String> readLines(byte[] data) throws IOException {
+        if(0 == data.length) {
+            return Collections.emptyList();
+        }
+        List<String> lines = new ArrayList<>();
+        try(BufferedReader br = new BufferedReader(new InputStreamReader(
+                new ByteArrayInputStream(data), StandardCharsets.UTF_8))) {
+            String nextLine;
+            while(null != (nextLine = br.readLine())) {
+                lines.add(nextLine);
+            }
+        }
+        return lines;
     }
 
     /**
-     * Save weekly to the database.
+     * Save weekly to the database. Only changed parts are written, tasks
+     * added without loading the list are appended to the todo list file.
      * @throws IOException
      */
     private void save() throws IOException {
+        refreshStaleParts();
+        if(!tasksChanged && !appendedTasks.isEmpty() && !WeekLineage.canAppend(dbbundle)) {
+            // lineage of the stored tasks is not known, the list is written as a whole
+            tasks();
+        }
+        int conflicts = staleParts.get();
+        if(memoChanged && (0 != (conflicts & (1 << Part.MEMO.ordinal())))) {
+            throw new IOException("memo of week " + monday + " was changed outside since it was loaded");
+        }
+        if(tasksChanged && (0 != (conflicts & (1 << Part.TASKS.ordinal())))) {
+            throw new IOException("tasks of week " + monday + " were changed outside since they were loaded");
+        }
+        // damaged records would be lost if the part is written as a whole
+        if(memoChanged && !damagedRecords.getOrDefault(Part.MEMO, Collections.emptyList()).isEmpty()) {
+            throw new IOException("memo of week " + monday + " has damaged records, verify the database first");
+        }
+        if(tasksChanged && !damagedRecords.getOrDefault(Part.TASKS, Collections.emptyList()).isEmpty()) {
+            throw new IOException("tasks of week " + monday + " have damaged records, verify the database first");
+        }
         // save memo
-        if(0 == memo().length()) {
-            // delete memo file if no memo found
-            Files.deleteIfExists(dbbundle.getMemoFilePath());
-        } else {
-            try(PrintStream memos = new PrintStream(Files.newOutputStream(dbbundle.getMemoFilePath()))) {
-                memos.print(memo());
-                memos.flush();
-            }
+        if(memoChanged) {
+            dbbundle.writeComponent(Component.MEMO, memo().getBytes(StandardCharsets.UTF_8));
         }
-         // save todos
-        try(PrintStream todos = new PrintStream(Files.newOutputStream(dbbundle.getTodoListFilePath()))) {
-            for(int i = 0; i < size(); ++i) {
-                todos.println(taskAt(i));
+        // save todos and their summary
+        List<TodoTask> appended = null;
+        if(tasksChanged) {
+            writeTasks(dbbundle, tasks);
+        } else if(!appendedTasks.isEmpty()) {
+            WeekSummary summary = WeekSummary.read(dbbundle);
+            dbbundle.appendComponent(Component.TODOLIST, tasksToBytes(appendedTasks, dbbundle));
+            WeekLineage.append(dbbundle, appendedTasks);
+            if(null != summary) {
+                for(TodoTask tt : appendedTasks) {
+                    summary.add(tt);
+                }
+                summary.write(dbbundle);
             }
-            todos.flush();
+            appended = new ArrayList<>(appendedTasks);
+            appendedTasks.clear();
         }
         // update checksum
         dbbundle.updateChecksum();
+        if(memoChanged) {
+            rememberStamp(Part.MEMO);
+        }
+        if(tasksChanged || (null != appended)) {
+            rememberStamp(Part.TASKS);
+        }
+        // period rollups follow the saved tasks
+        if(tasksChanged) {
+            PeriodRollups.replaceWeek(dbbundle.getRootDatabasePath(), groupName, monday, tasks);
+        } else if(null != appended) {
+            PeriodRollups.appendToWeek(dbbundle.getRootDatabasePath(), groupName, monday, appended);
+        }
+
+        memoChanged = false;
+        tasksChanged = false;
+    }
+
+    /**
+     * Replace the todo list of the bundle with the tasks: records, summary
+     * and lineage of the tasks are written. Checksum is not updated until
+     * @see AppDatabase.FilesBundle.updateChecksum is called.
+     * @param bundle files bundle
+     * @param list list of tasks
+     * @throws IOException 
+     */
+    public static void writeTasks(AppDatabase.FilesBundle bundle, List<? extends TodoTask> list) throws IOException {
+        bundle.writeComponent(Component.TODOLIST, tasksToBytes(list, bundle));
+        WeekSummary.of(list).write(bundle);
+        WeekLineage.write(bundle, list);
+    }
 
-        wasChanged = false;
+    /**
+     * Convert list of tasks to todo list file contents. Titles are encoded
+     * by the group dictionary if it's configured.
+     * @param list list of tasks
+     * @param bundle files bundle to write to
+     * @return bytes to be written
+     * @throws IOException 
+     */
+    static byte[] tasksToBytes(List<? extends TodoTask> list, AppDatabase.FilesBundle bundle) throws IOException {
+        TitleDictionary dict = AppDatabase.getAppConfig().doEncodeTitles() ? bundle.getTitleDictionary() : null;
+        StringBuilder sb = new StringBuilder();
+        for(TodoTask tt : list) {
+            sb.append((null == dict) ? tt.toString() : tt.toString(dict));
+            sb.append(System.lineSeparator());
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
     }
 
     /**
@@ -267,19 +873,66 @@ public class Weekly {
      */
     private TaskDate monday = null;
     /**
-     * List of todo tasks.
+     * Group name, null for default group.
+     */
+    private final String groupName;
+    /**
+     * List of todo tasks, null if not loaded yet.
      */
-    private final ArrayList<TodoTask> tasks = new ArrayList<>();
+    private ArrayList<TodoTask> tasks = null;
     /**
-     * String with memo text. If empty - no memo.
+     * Column layout of the tasks, null if not built or outdated.
      */
-    private String memoText = "";
+    private WeeklyColumns columns = null;
     /**
-     * Flag indicating that weekly data has been changed.
+     * Tasks added while the list of tasks is not loaded.
      */
-    private boolean wasChanged = false;
+    private final ArrayList<TodoTask> appendedTasks = new ArrayList<>();
+    /**
+     * Change events not published yet.
+     */
+    private final ArrayList<WeeklyEvent> pendingEvents = new ArrayList<>();
+    /**
+     * String with memo text. If empty - no memo, null if not loaded yet.
+     */
+    private String memoText = null;
+    /**
+     * Flag indicating that memo has been changed.
+     */
+    private boolean memoChanged = false;
+    /**
+     * Flag indicating that list of tasks has been changed.
+     */
+    private boolean tasksChanged = false;
+    /**
+     * Bit mask of parts changed outside, see @see invalidate.
+     */
+    private final AtomicInteger staleParts = new AtomicInteger();
+    /**
+     * States of parts files as they were read or written by this object,
+     * see @see stampOf.
+     */
+    private final Map<Part, String> fileStamps = new EnumMap<>(Part.class);
+    /**
+     * Indexes of damaged records skipped on loading the parts.
+     */
+    private final Map<Part, List<Integer>> damagedRecords = new EnumMap<>(Part.class);
     /**
      * Database manager object reference used to load this weekly.
      */
     private AppDatabase.FilesBundle dbbundle = null;
+    /**
+     * Last published snapshot, null if not requested yet or outdated by
+     * changes made outside.
+     */
+    private volatile WeekSnapshot published = null;
+    /**
+     * Version of the last made snapshot, guarded by publishLock.
+     */
+    private long version = 0;
+    /**
+     * Lock ordering saving and snapshot publishing, readers of published
+     * snapshots don't take it.
+     */
+    private final Object publishLock = new Object();
 }
@@ -0,0 +1,137 @@
+/*
+    (java) library for Weekly Plans and Reminder
+
+    Copyright (C) 2011  Stas Torgashov
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+/* File:    WeeklyColumns.java
+ * Author:  Stas Torgashov aka Crimson Cat (crimcat@yandex.ru)
+ * Created: 2026, October 19
+ */
+
+package org.crimcat.lib.wpr;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Column layout of the weekly tasks: creation dates as day numbers (see
+ * @see TaskDate.epochDay), completion flags as a bit set and titles. Task
+ * filters are simple loops over primitive arrays and bit set operations
+ * producing bit sets of matching task indexes. The object is a snapshot of
+ * the tasks list, see @see Weekly.columns.
+ */
+public final class WeeklyColumns {
+
+    WeeklyColumns(List<TodoTask> tasks) {
+        size = tasks.size();
+        days = new int[size];
+        titles = new String[size];
+        completed = new BitSet(size);
+        for(int i = 0; i < size; ++i) {
+            TodoTask tt = tasks.get(i);
+            days[i] = (int)tt.originatedOn().epochDay();
+            titles[i] = tt.title();
+            if(tt.isCompleted()) {
+                completed.set(i);
+            }
+        }
+    }
+
+    /**
+     * Get number of tasks.
+     * @return number of tasks
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Get task creation date.
+     * @param idx task index
+     * @return day number
+     */
+    public int epochDay(int idx) {
+        return days[idx];
+    }
+
+    /**
+     * Check if the task is completed.
+     * @param idx task index
+     * @return true if completed
+     */
+    public boolean isCompleted(int idx) {
+        return completed.get(idx);
+    }
+
+    /**
+     * Get task title.
+     * @param idx task index
+     * @return title string
+     */
+    public String title(int idx) {
+        return titles[idx];
+    }
+
+    /**
+     * Get completed tasks.
+     * @return new bit set of task indexes
+     */
+    public BitSet completed() {
+        return (BitSet)completed.clone();
+    }
+
+    /**
+     * Get active tasks.
+     * @return new bit set of task indexes
+     */
+    public BitSet active() {
+        BitSet bs = new BitSet(size);
+        bs.set(0, size);
+        bs.andNot(completed);
+        return bs;
+    }
+
+    /**
+     * Get tasks created on the given day.
+     * @param epochDay day number
+     * @return new bit set of task indexes
+     */
+    public BitSet createdOn(long epochDay) {
+        return createdBetween(epochDay, epochDay);
+    }
+
+    /**
+     * Get tasks created in the given range of days.
+     * @param fromDay first day number
+     * @param toDay last day number
+     * @return new bit set of task indexes
+     */
+    public BitSet createdBetween(long fromDay, long toDay) {
+        BitSet bs = new BitSet(size);
+        for(int i = 0; i < size; ++i) {
+            if((days[i] >= fromDay) && (days[i] <= toDay)) {
+                bs.set(i);
+            }
+        }
+        return bs;
+    }
+
+    private final int size;
+    private final int[] days;
+    private final BitSet completed;
+    private final String[] titles;
+}
@@ -0,0 +1,209 @@
+/*
+    (java) library for Weekly Plans and Reminder
+
+    Copyright (C) 2011  Stas Torgashov
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+/* File:    WeeklyEvent.java
+ * Author:  Stas Torgashov aka Crimson Cat (crimcat@yandex.ru)
+ * Created: 2026, October 19
+ */
+
+package org.crimcat.lib.wpr;
+
+/**
+ * Weekly change event, @see ChangeFeed. Events are immutable, every event
+ * has an offset: its sequence number in the group change feed.
+ */
+public class WeeklyEvent {
+
+    /**
+     * Event types.
+     */
+    public enum Type {
+        /**
+         * New task is added, text is the task title.
+         */
+        TASK_ADDED,
+        /**
+         * Task is marked completed, text is the task title.
+         */
+        TASK_COMPLETED,
+        /**
+         * Memo is changed, text is the new memo text.
+         */
+        MEMO_CHANGED,
+        /**
+         * The first change of the new week in the group, text is the Monday
+         * date of the previous changed week.
+         */
+        WEEK_ROLLED_OVER
+    }
+
+    /**
+     * Ctor: event without offset yet.
+     * @param type event type
+     * @param groupName group name or null for default group
+     * @param monday week Monday date
+     * @param taskIndex task index in weekly or -1 if not known or not applicable
+     * @param text event text
+     */
+    WeeklyEvent(Type type, String groupName, TaskDate monday, int taskIndex, String text) {
+        this(0, type, groupName, monday, taskIndex, text);
+    }
+
+    /**
+     * Ctor: event with offset.
+     * @param offset offset in the change feed
+     * @param type event type
+     * @param groupName group name or null for default group
+     * @param monday week Monday date
+     * @param taskIndex task index in weekly or -1
+     * @param text event text
+     */
+    WeeklyEvent(long offset, Type type, String groupName, TaskDate monday, int taskIndex, String text) {
+        this.offset = offset;
+        this.type = type;
+        this.groupName = groupName;
+        this.monday = monday;
+        this.taskIndex = taskIndex;
+        this.text = (null == text) ? "" : text;
+    }
+
+    /**
+     * Get event offset in the group change feed.
+     * @return offset, offsets of one group grow by 1 starting from 1
+     */
+    public long offset() {
+        return offset;
+    }
+
+    /**
+     * Get event type.
+     * @return type
+     */
+    public Type type() {
+        return type;
+    }
+
+    /**
+     * Get group name.
+     * @return group name or null for default group
+     */
+    public String group() {
+        return groupName;
+    }
+
+    /**
+     * Get Monday date of the changed week.
+     * @return Monday date
+     */
+    public TaskDate weekStartedOn() {
+        return monday;
+    }
+
+    /**
+     * Get task index in weekly.
+     * @return task index or -1 if not known or not applicable
+     */
+    public int taskIndex() {
+        return taskIndex;
+    }
+
+    /**
+     * Get event text, see @see Type for its meaning.
+     * @return text, not null
+     */
+    public String text() {
+        return text;
+    }
+
+    /**
+     * Get string representation, the format is following:
+     * OFFSET:TYPE:MONDAY:INDEX:TEXT, line breaks and backslashes in the text
+     * are escaped with backslash.
+     * @return event as string
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(offset).append(':').append(type).append(':').append(monday)
+            .append(':').append(taskIndex).append(':');
+        for(int i = 0; i < text.length(); ++i) {
+            char c = text.charAt(i);
+            switch(c) {
+                case '\\': sb.append("\\\\"); break;
+                case '\n': sb.append("\\n"); break;
+                case '\r': sb.append("\\r"); break;
+                default: sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Read event from the string, @see toString.
+     * @param str string to parse
+     * @param groupName group name of the event
+     * @return event or null if string is not recognized
+     */
+    static WeeklyEvent fromString(String str, String groupName) {
+        String[] parts = str.split(":", 5);
+        if(5 != parts.length) {
+            return null;
+        }
+        try {
+            TaskDate td = new TaskDate();
+            if(!td.fromString(parts[2])) {
+                return null;
+            }
+            StringBuilder text = new StringBuilder(parts[4].length());
+            for(int i = 0; i < parts[4].length(); ++i) {
+                char c = parts[4].charAt(i);
+                if(('\\' == c) && (i + 1 < parts[4].length())) {
+                    c = parts[4].charAt(++i);
+                    text.append(('n' == c) ? '\n' : ('r' == c) ? '\r' : c);
+                } else {
+                    text.append(c);
+                }
+            }
+            return new WeeklyEvent(Long.parseLong(parts[0]), Type.valueOf(parts[1]),
+                groupName, td, Integer.parseInt(parts[3]), text.toString());
+        } catch(IllegalArgumentException ex) {
+            return null;
+        }
+    }
+
+    /**
+     * Copy of this event with the offset assigned.
+     * @param newOffset offset in the change feed
+     * @return new event object
+     */
+    WeeklyEvent withOffset(long newOffset) {
+        return new WeeklyEvent(newOffset, type, groupName, monday, taskIndex, text);
+    }
+
+    private final long offset;
+    private final Type type;
+    private final String groupName;
+    private final TaskDate monday;
+    private final int taskIndex;
+    private final String text;
+    /**
+     * Position of the event line in the feed log, -1 if it's not stored.
+     */
+    long logPosition = -1;
+}
@@ -0,0 +1,310 @@
+/*
+    (java) library for Weekly Plans and Reminder
+
+    Copyright (C) 2011  Stas Torgashov
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+/* File:    WeeklyWatcher.java
+ * Author:  Stas Torgashov aka Crimson Cat (crimcat@yandex.ru)
+ * Created: 2026, October 19
+ */
+
+package org.crimcat.lib.wpr;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import org.crimcat.lib.wpr.impl.DatabaseLayout;
+
+/**
+ * Watcher of database files changes. It watches the database root and all
+ * group directories, maps changed bundle files to the group and week and
+ * invalidates changed parts of registered weekly objects, so they are loaded
+ * again on next access. Bursts of events (one save changes several files)
+ * are coalesced into one notification per week. Weekly objects ignore the
+ * events of their own saves, see @see Weekly.invalidate.
+ */
+public class WeeklyWatcher implements Closeable {
+
+    /**
+     * Listener of weeks changes.
+     */
+    public interface IListener {
+        /**
+         * Called from the watcher thread when bundle files are changed.
+         * @param groupName group name or null for default group
+         * @param monday week Monday date
+         * @param parts changed weekly parts
+         */
+        void weeklyChanged(String groupName, TaskDate monday, Set<Weekly.Part> parts);
+    }
+
+    /**
+     * Default time to wait for the next event of a burst, in milliseconds.
+     */
+    public static final long DEFAULT_COALESCE_MILLIS = 50;
+
+    /**
+     * Ctor: create watcher over the database root, it's not started yet.
+     * @param root database root directory
+     * @throws IOException 
+     */
+    public WeeklyWatcher(Path root) throws IOException {
+        this(root, DEFAULT_COALESCE_MILLIS);
+    }
+
+    /**
+     * Ctor: create watcher over the database root, it's not started yet.
+     * @param root database root directory
+     * @param coalesceMillis time to wait for the next event of a burst
+     * @throws IOException 
+     */
+    public WeeklyWatcher(Path root, long coalesceMillis) throws IOException {
+        this.coalesceMillis = coalesceMillis;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        registerDirectory(root, null);
+        for(String group : DatabaseLayout.listGroups(root)) {
+            registerDirectory(root.resolve(group), group);
+        }
+    }
+
+    /**
+     * Register weekly object to be invalidated on its files changes. Weekly
+     * objects are referenced weakly, so there is no need to unregister them.
+     * @param w weekly object
+     */
+    public void register(Weekly w) {
+        weeklies.computeIfAbsent(key(w.group(), w.startedOn().toString()),
+            k -> new CopyOnWriteArrayList<>()).add(new WeakReference<>(w));
+    }
+
+    /**
+     * Add listener of changes.
+     * @param listener listener object
+     */
+    public void addListener(IListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Start watching in a background daemon thread.
+     */
+    public synchronized void start() {
+        if(null == thread) {
+            thread = new Thread(this::run, "wpr-watcher");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Stop watching.
+     * @throws IOException 
+     */
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+    }
+
+    /**
+     * Watcher thread procedure: wait for the first event, then collect the
+     * following ones until there are no new events for the coalesce time.
+     */
+    private void run() {
+        try {
+            while(true) {
+                Map<String, Set<Weekly.Part>> changes = new LinkedHashMap<>();
+                WatchKey wk = watchService.take();
+                do {
+                    collect(wk, changes);
+                    wk = watchService.poll(coalesceMillis, TimeUnit.MILLISECONDS);
+                } while(null != wk);
+                dispatch(changes);
+            }
+        } catch(InterruptedException | ClosedWatchServiceException ex) {
+            // watcher is closed
+        }
+    }
+
+    /**
+     * Collect events of the watch key.
+     * @param wk watch key with events
+     * @param changes map of week keys to changed parts
+     */
+    private void collect(WatchKey wk, Map<String, Set<Weekly.Part>> changes) {
+        String group = groups.get(wk);
+        Path dir = (Path)wk.watchable();
+        for(WatchEvent<?> event : wk.pollEvents()) {
+            if(StandardWatchEventKinds.OVERFLOW == event.kind()) {
+                // events are lost, everything can be changed
+                for(String k : weeklies.keySet()) {
+                    changes.put(k, EnumSet.allOf(Weekly.Part.class));
+                }
+                continue;
+            }
+            String fileName = ((Path)event.context()).toString();
+            if((null == group) && (StandardWatchEventKinds.ENTRY_CREATE == event.kind()) &&
+               !fileName.startsWith(".") && Files.isDirectory(dir.resolve(fileName))) {
+                try {
+                    registerDirectory(dir.resolve(fileName), fileName);
+                } catch(IOException ex) {
+                    // the group cannot be watched, its weeks are not invalidated
+                }
+                continue;
+            }
+            if(fileName.endsWith(DatabaseLayout.EXT_PACK)) {
+                // all weeks of the year are in the pack
+                String prefix = key(group, fileName.substring(0, fileName.length() - DatabaseLayout.EXT_PACK.length()));
+                for(String k : weeklies.keySet()) {
+                    if(k.startsWith(prefix)) {
+                        changes.computeIfAbsent(k, x -> EnumSet.noneOf(Weekly.Part.class))
+                            .addAll(EnumSet.allOf(Weekly.Part.class));
+                    }
+                }
+                continue;
+            }
+            TaskDate monday = DatabaseLayout.weekOfFileName(fileName);
+            if(null != monday) {
+                changes.computeIfAbsent(key(group, monday.toString()), x -> EnumSet.noneOf(Weekly.Part.class))
+                    .addAll(partsOfFile(fileName));
+            }
+        }
+        if(!wk.reset()) {
+            groups.remove(wk);
+        }
+    }
+
+    /**
+     * Invalidate changed weekly objects and notify listeners.
+     * @param changes map of week keys to changed parts
+     */
+    private void dispatch(Map<String, Set<Weekly.Part>> changes) {
+        for(Map.Entry<String, Set<Weekly.Part>> change : changes.entrySet()) {
+            List<WeakReference<Weekly>> refs = weeklies.get(change.getKey());
+            if(null != refs) {
+                Iterator<WeakReference<Weekly>> it = refs.iterator();
+                List<WeakReference<Weekly>> cleared = new ArrayList<>();
+                while(it.hasNext()) {
+                    WeakReference<Weekly> ref = it.next();
+                    Weekly w = ref.get();
+                    if(null == w) {
+                        cleared.add(ref);
+                    } else {
+                        w.invalidate(change.getValue());
+                    }
+                }
+                refs.removeAll(cleared);
+            }
+            if(!listeners.isEmpty()) {
+                int sep = change.getKey().lastIndexOf('/');
+                String group = (0 == sep) ? null : change.getKey().substring(0, sep);
+                TaskDate monday = new TaskDate();
+                if(monday.fromString(change.getKey().substring(sep + 1))) {
+                    for(IListener l : listeners) {
+                        l.weeklyChanged(group, monday, change.getValue());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Register directory in watch service.
+     * @param dir directory
+     * @param group group name or null for default group
+     * @throws IOException 
+     */
+    private void registerDirectory(Path dir, String group) throws IOException {
+        if(Files.isDirectory(dir)) {
+            WatchKey wk = dir.register(watchService,
+                StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY,
+                StandardWatchEventKinds.ENTRY_DELETE);
+            if(null != group) {
+                groups.put(wk, group);
+            }
+        }
+    }
+
+    /**
+     * Get weekly parts stored in the bundle file.
+     * @param fileName bundle file name
+     * @return set of parts
+     */
+    private static Set<Weekly.Part> partsOfFile(String fileName) {
+        if(fileName.endsWith(DatabaseLayout.EXT_MEMO)) {
+            return EnumSet.of(Weekly.Part.MEMO);
+        }
+        if(fileName.endsWith(DatabaseLayout.EXT_TODOLIST)) {
+            return EnumSet.of(Weekly.Part.TASKS);
+        }
+        // checksum covers all parts
+        return EnumSet.allOf(Weekly.Part.class);
+    }
+
+    /**
+     * Make week key.
+     * @param group group name or null
+     * @param monday Monday date string
+     * @return key string
+     */
+    private static String key(String group, String monday) {
+        return ((null == group) ? "" : group) + "/" + monday;
+    }
+
+    /**
+     * Time to wait for the next event of a burst, in milliseconds.
+     */
+    private final long coalesceMillis;
+    /**
+     * Watch service.
+     */
+    private final WatchService watchService;
+    /**
+     * Group names of watched group directories.
+     */
+    private final Map<WatchKey, String> groups = new ConcurrentHashMap<>();
+    /**
+     * Registered weekly objects by week key.
+     */
+    private final Map<String, List<WeakReference<Weekly>>> weeklies = new ConcurrentHashMap<>();
+    /**
+     * Listeners of changes.
+     */
+    private final List<IListener> listeners = new CopyOnWriteArrayList<>();
+    /**
+     * Watcher thread.
+     */
+    private Thread thread = null;
+}
@@ -0,0 +1,153 @@
+/*
+    (java) library for Weekly Plans and Reminder
+
+    Copyright (C) 2011  Stas Torgashov
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+/* File:    WeeksSpliterator.java
+ * Author:  Stas Torgashov aka Crimson Cat (crimcat@yandex.ru)
+ * Created: 2026, October 19
+ */
+
+package org.crimcat.lib.wpr;
+
+import java.util.List;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Spliterator over tasks of several weeks in their order: weeks one by
+ * one, tasks of each week by index. Task lists are not copied, the range
+ * of global task indexes is split in halves, so both halves know their
+ * exact size.
+ */
+final class WeeksSpliterator implements Spliterator<TodoTask> {
+
+    /**
+     * Ctor: spliterator over all tasks of the given lists.
+     * @param weeks task lists of weeks, random access ones
+     */
+    WeeksSpliterator(List<List<TodoTask>> weeks) {
+        this.weeks = weeks;
+        starts = new long[weeks.size() + 1];
+        for(int i = 0; i < weeks.size(); ++i) {
+            starts[i + 1] = starts[i] + weeks.get(i).size();
+        }
+        origin = 0;
+        fence = starts[weeks.size()];
+        week = 0;
+    }
+
+    private WeeksSpliterator(List<List<TodoTask>> weeks, long[] starts, long origin, long fence) {
+        this.weeks = weeks;
+        this.starts = starts;
+        this.origin = origin;
+        this.fence = fence;
+        week = weekOf(origin);
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super TodoTask> action) {
+        if(origin >= fence) {
+            return false;
+        }
+        while(origin >= starts[week + 1]) {
+            ++week;
+        }
+        action.accept(weeks.get(week).get((int)(origin - starts[week])));
+        ++origin;
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super TodoTask> action) {
+        while(origin < fence) {
+            while(origin >= starts[week + 1]) {
+                ++week;
+            }
+            List<TodoTask> list = weeks.get(week);
+            int from = (int)(origin - starts[week]);
+            int to = (int)(Math.min(fence, starts[week + 1]) - starts[week]);
+            origin += to - from;
+            for(int i = from; i < to; ++i) {
+                action.accept(list.get(i));
+            }
+        }
+    }
+
+    @Override
+    public Spliterator<TodoTask> trySplit() {
+        long mid = (origin + fence) >>> 1;
+        if(mid <= origin) {
+            return null;
+        }
+        Spliterator<TodoTask> prefix = new WeeksSpliterator(weeks, starts, origin, mid);
+        origin = mid;
+        week = weekOf(mid);
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return fence - origin;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | SIZED | SUBSIZED | NONNULL;
+    }
+
+    /**
+     * Find week of the global task index.
+     * @param idx task index
+     * @return week index
+     */
+    private int weekOf(long idx) {
+        int lo = 0;
+        int hi = weeks.size() - 1;
+        while(lo < hi) {
+            int m = (lo + hi + 1) >>> 1;
+            if(starts[m] <= idx) {
+                lo = m;
+            } else {
+                hi = m - 1;
+            }
+        }
+        return Math.max(0, lo);
+    }
+
+    /**
+     * Task lists of weeks.
+     */
+    private final List<List<TodoTask>> weeks;
+
+    /**
+     * Global index of the first task of every week, the last element is
+     * the total number of tasks.
+     */
+    private final long[] starts;
+
+    /**
+     * Current and end global task indexes.
+     */
+    private long origin;
+    private final long fence;
+
+    /**
+     * Week of the current task.
+     */
+    private int week;
+}
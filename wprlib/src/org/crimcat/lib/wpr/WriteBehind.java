@@ -0,0 +1,224 @@
+/*
+    (java) library for Weekly Plans and Reminder
+
+    Copyright (C) 2011  Stas Torgashov
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+/* File:    WriteBehind.java
+ * Author:  Stas Torgashov aka Crimson Cat (crimcat@yandex.ru)
+ * Created: 2026, October 19
+ */
+
+package org.crimcat.lib.wpr;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Write-behind saving of weeklies for long running processes where many
+ * requests edit the same weeks. An edit is acknowledged as soon as it's
+ * applied in memory, weekly is saved by the background flusher when no more
+ * edits come during the debounce delay or when the number of unsaved edits
+ * reaches the threshold, so a burst of edits is written once.
+ * Unsaved edits are lost if the process dies before @see flush or
+ * @see close is called.
+ * Weekly objects given to this class are locked (by synchronization on the
+ * object) while being edited or saved, other users of the same objects
+ * should synchronize on them too.
+ */
+public class WriteBehind implements AutoCloseable {
+
+    /**
+     * Default delay after the last edit before saving, milliseconds.
+     */
+    public static final long DEFAULT_DEBOUNCE_MILLIS = 200;
+
+    /**
+     * Default number of unsaved edits of one weekly forcing its saving.
+     */
+    public static final int DEFAULT_MAX_EDITS = 100;
+
+    /**
+     * Ctor: write-behind with default delay and threshold.
+     */
+    public WriteBehind() {
+        this(DEFAULT_DEBOUNCE_MILLIS, DEFAULT_MAX_EDITS);
+    }
+
+    /**
+     * Ctor: write-behind with the given delay and threshold.
+     * @param debounceMillis delay after the last edit before saving
+     * @param maxEdits number of unsaved edits of one weekly forcing its saving
+     */
+    public WriteBehind(long debounceMillis, int maxEdits) {
+        this.debounceMillis = Math.max(0, debounceMillis);
+        this.maxEdits = Math.max(1, maxEdits);
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "wpr-flusher");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Edit the weekly, saving is scheduled.
+     * @param w weekly to edit
+     * @param edit editing action
+     * @return false if the weekly is not editable, see @see Weekly.getEditor
+     */
+    public boolean edit(Weekly w, Consumer<Weekly.IEditor> edit) {
+        synchronized(w) {
+            Weekly.IEditor editor = w.getEditor();
+            if(null == editor) {
+                return false;
+            }
+            edit.accept(editor);
+        }
+        schedule(w, 1);
+        return true;
+    }
+
+    /**
+     * Save all weeklies with unsaved edits now.
+     * @throws IOException if saving fails (here or in the background since
+     * the previous call)
+     */
+    public void flush() throws IOException {
+        List<Weekly> dirty;
+        synchronized(this) {
+            dirty = new ArrayList<>(pending.keySet());
+        }
+        for(Weekly w : dirty) {
+            save(w);
+        }
+        IOException ex;
+        synchronized(this) {
+            ex = failure;
+            failure = null;
+        }
+        if(null != ex) {
+            throw ex;
+        }
+    }
+
+    /**
+     * Save all unsaved edits and stop the background flusher.
+     * @throws IOException if saving fails
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized(this) {
+            closed = true;
+        }
+        flusher.shutdownNow();
+        flush();
+    }
+
+    /**
+     * Get number of weeklies with unsaved edits.
+     * @return number of weeklies
+     */
+    public synchronized int pendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Count new edits of the weekly and (re)schedule its saving.
+     * @param w edited weekly
+     * @param edits number of new edits
+     */
+    private synchronized void schedule(Weekly w, int edits) {
+        Pending p = pending.get(w);
+        if(null == p) {
+            p = new Pending();
+            pending.put(w, p);
+        }
+        p.edits += edits;
+        if(closed) {
+            return; // saved by close
+        }
+        if(null != p.timer) {
+            p.timer.cancel(false);
+        }
+        p.timer = flusher.schedule(() -> saveInBackground(w),
+            (p.edits >= maxEdits) ? 0 : debounceMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Save the weekly from the background flusher, failure is kept to be
+     * reported by @see flush.
+     * @param w weekly to save
+     */
+    private void saveInBackground(Weekly w) {
+        try {
+            save(w);
+        } catch(IOException ex) {
+            synchronized(this) {
+                failure = ex;
+            }
+        }
+    }
+
+    /**
+     * Save the weekly if it has unsaved edits. If saving fails the weekly is
+     * scheduled again.
+     * @param w weekly to save
+     * @throws IOException 
+     */
+    private void save(Weekly w) throws IOException {
+        Pending p;
+        synchronized(this) {
+            p = pending.remove(w);
+            if((null != p) && (null != p.timer)) {
+                p.timer.cancel(false);
+            }
+        }
+        if(null == p) {
+            return;
+        }
+        try {
+            synchronized(w) {
+                w.sync();
+            }
+        } catch(IOException | RuntimeException ex) {
+            schedule(w, p.edits);
+            throw (ex instanceof IOException) ? (IOException)ex : new IOException(ex.toString());
+        }
+    }
+
+    /**
+     * Unsaved edits of one weekly.
+     */
+    private static final class Pending {
+        int edits = 0;
+        ScheduledFuture<?> timer = null;
+    }
+
+    private final long debounceMillis;
+    private final int maxEdits;
+    private final ScheduledExecutorService flusher;
+    private final Map<Weekly, Pending> pending = new IdentityHashMap<>();
+    private IOException failure = null;
+    private boolean closed = false;
+}
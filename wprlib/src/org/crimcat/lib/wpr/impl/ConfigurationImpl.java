@@ -25,6 +25,7 @@
 package org.crimcat.lib.wpr.impl;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -49,17 +50,43 @@ public class ConfigurationImpl implements AppDatabase.Configuration {
      * Config option for verbose output on commands execution.
      */
     private static final String APP_OPTION_VERBOSE_OUTPUT = "verbose-output";
+    /**
+     * Config option for recording weekly change events.
+     */
+    private static final String APP_OPTION_RECORD_CHANGE_FEED = "record-change-feed";
+    /**
+     * Config option for storing task titles in group title dictionaries.
+     */
+    private static final String APP_OPTION_TITLE_DICTIONARY = "title-dictionary";
+    /**
+     * Config option for writing checksum of every record.
+     */
+    private static final String APP_OPTION_RECORD_CHECKSUMS = "record-checksums";
+    /**
+     * Config option for the file to export command metrics to.
+     */
+    private static final String APP_OPTION_METRICS_FILE = "metrics-file";
+    /**
+     * Config option for the local port of the metrics endpoint.
+     */
+    private static final String APP_OPTION_METRICS_PORT = "metrics-port";
     
+    /**
+     * Read configuration file. If there is no file, default options are used
+     * and nothing is written, so reading commands never create the database.
+     */
     public ConfigurationImpl() {
+        config.put(APP_OPTION_AUTO_COPY_FROM_THE_PAST, "false");
+        config.put(APP_OPTION_VERBOSE_OUTPUT, "false");
+        config.put(APP_OPTION_RECORD_CHANGE_FEED, "false");
+        config.put(APP_OPTION_TITLE_DICTIONARY, "false");
+        config.put(APP_OPTION_RECORD_CHECKSUMS, "false");
         try {
-            Path configPath = Paths.get(AppDatabase.getDefaultAppDatabasePath() +
-                System.getProperty("file.separator") + APP_CONFIG_FILE_NAME);
+            Path configPath = AppDatabase.getDefaultAppDatabasePath().resolve(APP_CONFIG_FILE_NAME);
             if(Files.exists(configPath) && Files.isReadable(configPath)) {
-                config.load(Files.newInputStream(configPath));
-            } else {
-                config.put(APP_OPTION_AUTO_COPY_FROM_THE_PAST, "false");
-                config.put(APP_OPTION_VERBOSE_OUTPUT, "false");
-                config.store(Files.newOutputStream(configPath), "");
+                try(InputStream is = Files.newInputStream(configPath)) {
+                    config.load(is);
+                }
             }
         } catch(IOException ex) {
             throw new RuntimeException(ex.toString());
@@ -78,6 +105,40 @@ public class ConfigurationImpl implements AppDatabase.Configuration {
         return "true".equalsIgnoreCase(prop);
     }
     
+    @Override
+    public boolean doRecordChangeFeed() {
+        String prop = config.getProperty(APP_OPTION_RECORD_CHANGE_FEED);
+        return "true".equalsIgnoreCase(prop);
+    }
+    
+    @Override
+    public boolean doEncodeTitles() {
+        String prop = config.getProperty(APP_OPTION_TITLE_DICTIONARY);
+        return "true".equalsIgnoreCase(prop);
+    }
+    
+    @Override
+    public boolean doRecordChecksums() {
+        String prop = config.getProperty(APP_OPTION_RECORD_CHECKSUMS);
+        return "true".equalsIgnoreCase(prop);
+    }
+    
+    @Override
+    public Path getMetricsFile() {
+        String prop = config.getProperty(APP_OPTION_METRICS_FILE);
+        return ((null == prop) || prop.trim().isEmpty()) ? null : Paths.get(prop.trim());
+    }
+    
+    @Override
+    public int getMetricsPort() {
+        String prop = config.getProperty(APP_OPTION_METRICS_PORT);
+        try {
+            return (null == prop) ? 0 : Integer.parseInt(prop.trim());
+        } catch(NumberFormatException ex) {
+            return 0;
+        }
+    }
+    
     /**
      * Properties read from configuration file.
      */
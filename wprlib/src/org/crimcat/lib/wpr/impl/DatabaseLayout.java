@@ -0,0 +1,213 @@
+/*
+    (Java) Weekly Plans and Reports - simple and handy todo planning tool.
+
+    Copyright (C) 2011-2014  Stas Torgashov
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+/* File:    DatabaseLayout.java
+ * Author:  Stas Torgashov aka Crimson Cat (crimcat@yandex.ru)
+ * Created: 2026, October 19
+ */
+
+package org.crimcat.lib.wpr.impl;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import org.crimcat.lib.wpr.TaskDate;
+
+/**
+ * Database files layout: names of files bundles and group directories.
+ * Every group is a directory in the database root (the default group is the
+ * root itself), every week of the group is a set of files named by the week
+ * Monday date, weeks of past years can be packed into one file per year.
+ * @author Stas Torgashov
+ */
+public final class DatabaseLayout {
+    /**
+     * Extention for todos list file.
+     */
+    public static final String EXT_TODOLIST = ".todolist";
+    /**
+     * Extention for memo file.
+     */
+    public static final String EXT_MEMO = ".memo";
+    /**
+     * Extention for checksum file.
+     */
+    public static final String EXT_CHECKSUM = ".checksum";
+    /**
+     * Extention for yearly pack file.
+     */
+    public static final String EXT_PACK = ".pack";
+    /**
+     * Name of the group change feed events log file.
+     */
+    public static final String EVENTS_FILE_NAME = ".events";
+    /**
+     * Name of the group title dictionary file.
+     */
+    public static final String TITLES_FILE_NAME = ".titles";
+    
+    /**
+     * Name of the group period rollups file.
+     */
+    public static final String ROLLUPS_FILE_NAME = ".rollups";
+    
+    /**
+     * Get directory of the group.
+     * @param root database root directory
+     * @param groupName group name or null for default group
+     * @return path to the group directory
+     */
+    public static Path groupDirectory(Path root, String groupName) {
+        return (null == groupName) ? root : root.resolve(groupName);
+    }
+    
+    /**
+     * Get path to the yearly pack file.
+     * @param dir group directory
+     * @param year year of the packed weeks Mondays
+     * @return path to the pack file
+     */
+    public static Path packFilePath(Path dir, int year) {
+        return dir.resolve(Integer.toString(year) + EXT_PACK);
+    }
+    
+    /**
+     * Get list of group names found in the database root.
+     * @param root database root directory
+     * @return sorted list of group names
+     * @throws IOException 
+     */
+    public static List<String> listGroups(Path root) throws IOException {
+        List<String> groups = new ArrayList<>();
+        if(Files.isDirectory(root)) {
+            try(DirectoryStream<Path> ds = Files.newDirectoryStream(root, Files::isDirectory)) {
+                for(Path p : ds) {
+                    String name = p.getFileName().toString();
+                    if(!name.startsWith(".")) {
+                        groups.add(name);
+                    }
+                }
+            }
+        }
+        groups.sort(null);
+        return groups;
+    }
+    
+    /**
+     * Get Mondays of weeks stored as separate files in the group directory.
+     * @param dir group directory
+     * @return list of Monday dates sorted from the past to the future
+     * @throws IOException 
+     */
+    public static List<TaskDate> listLooseWeeks(Path dir) throws IOException {
+        TreeMap<String, TaskDate> weeks = new TreeMap<>();
+        collectLooseWeeks(dir, weeks);
+        return new ArrayList<>(weeks.values());
+    }
+    
+    /**
+     * Get Mondays of all weeks of the group: stored as separate files and
+     * packed into yearly pack files.
+     * @param dir group directory
+     * @return list of Monday dates sorted from the past to the future
+     * @throws IOException 
+     */
+    public static List<TaskDate> listWeeks(Path dir) throws IOException {
+        TreeMap<String, TaskDate> weeks = new TreeMap<>();
+        collectLooseWeeks(dir, weeks);
+        if(Files.isDirectory(dir)) {
+            try(DirectoryStream<Path> ds = Files.newDirectoryStream(dir, "*" + EXT_PACK)) {
+                for(Path p : ds) {
+                    PackFile pack = PackFile.open(p);
+                    if(null != pack) {
+                        for(String monday : pack.weeks()) {
+                            TaskDate td = parseDate(monday);
+                            if(null != td) {
+                                weeks.putIfAbsent(monday, td);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        return new ArrayList<>(weeks.values());
+    }
+    
+    /**
+     * Get Monday date from the bundle file name.
+     * @param fileName file name
+     * @return date or null if it's not a bundle file
+     */
+    public static TaskDate weekOfFileName(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        if(dot <= 0) {
+            return null;
+        }
+        switch(fileName.substring(dot)) {
+            case EXT_TODOLIST:
+            case EXT_MEMO:
+            case EXT_CHECKSUM:
+                return parseDate(fileName.substring(0, dot));
+            default:
+                return null;
+        }
+    }
+    
+    /**
+     * Collect weeks stored as separate files.
+     * @param dir group directory
+     * @param weeks map to put found weeks to
+     * @throws IOException 
+     */
+    private static void collectLooseWeeks(Path dir, TreeMap<String, TaskDate> weeks) throws IOException {
+        if(Files.isDirectory(dir)) {
+            try(DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+                for(Path p : ds) {
+                    TaskDate td = weekOfFileName(p.getFileName().toString());
+                    if(null != td) {
+                        weeks.putIfAbsent(td.toString(), td);
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * Parse date string.
+     * @param str string with date as YYYY-MM-DD
+     * @return date or null if not recognized
+     */
+    private static TaskDate parseDate(String str) {
+        if(10 != str.length()) {
+            return null;
+        }
+        TaskDate td = new TaskDate();
+        return td.fromString(str) ? td : null;
+    }
+    
+    /**
+     * No class instances.
+     */
+    private DatabaseLayout() {
+    }
+}
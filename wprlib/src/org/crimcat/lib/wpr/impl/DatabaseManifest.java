@@ -0,0 +1,197 @@
+/*
+    (Java) Weekly Plans and Reports - simple and handy todo planning tool.
+
+    Copyright (C) 2011-2014  Stas Torgashov
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+/* File:    DatabaseManifest.java
+ * Author:  Stas Torgashov aka Crimson Cat (crimcat@yandex.ru)
+ * Created: 2026, October 19
+ */
+
+package org.crimcat.lib.wpr.impl;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import org.crimcat.lib.wpr.TaskDate;
+
+/**
+ * Manifest of the database files: list of entries, every entry is a files
+ * bundle of one week or another database file. Entry state is described by
+ * the bundle checksum value, total size of its files and the latest
+ * modification time, so it's found without reading data files.
+ * @author Stas Torgashov
+ */
+public final class DatabaseManifest {
+
+    /**
+     * Manifest entry.
+     */
+    public static final class Entry {
+        Entry(String key, String groupName, TaskDate monday, List<String> files,
+              String checksum, long size, long modified) {
+            this.key = key;
+            this.groupName = groupName;
+            this.monday = monday;
+            this.files = Collections.unmodifiableList(files);
+            this.checksum = checksum;
+            this.size = size;
+            this.modified = modified;
+        }
+
+        /**
+         * Get entry key: <code>[GROUP/]MONDAY</code> for files bundles,
+         * <code>[GROUP/]FILENAME</code> for other files.
+         * @return key string
+         */
+        public String key() {
+            return key;
+        }
+
+        /**
+         * Get group name.
+         * @return group name or null for default group
+         */
+        public String group() {
+            return groupName;
+        }
+
+        /**
+         * Get Monday of the bundle week.
+         * @return Monday date or null if the entry is not a files bundle
+         */
+        public TaskDate monday() {
+            return monday;
+        }
+
+        /**
+         * Get entry files.
+         * @return list of paths relative to database root, '/' separated
+         */
+        public List<String> files() {
+            return files;
+        }
+
+        /**
+         * Get signature of the entry contents: checksum value and size.
+         * It's the same for copies of the entry in different databases.
+         * @return signature string
+         */
+        public String contentSignature() {
+            return checksum + "/" + size;
+        }
+
+        /**
+         * Get signature of the entry state: contents and modification time.
+         * @return signature string
+         */
+        public String signature() {
+            return contentSignature() + "/" + modified;
+        }
+
+        private final String key;
+        private final String groupName;
+        private final TaskDate monday;
+        private final List<String> files;
+        private final String checksum;
+        private final long size;
+        private final long modified;
+    }
+
+    /**
+     * Scan the database: find all entries.
+     * @param root database root
+     * @return entries by their keys
+     * @throws IOException 
+     */
+    public static Map<String, Entry> scan(Path root) throws IOException {
+        Map<String, Entry> entries = new TreeMap<>();
+        List<String> groups = new ArrayList<>();
+        groups.add(null);
+        groups.addAll(DatabaseLayout.listGroups(root));
+        for(String group : groups) {
+            Path dir = DatabaseLayout.groupDirectory(root, group);
+            if(!Files.isDirectory(dir)) {
+                continue;
+            }
+            String prefix = (null == group) ? "" : group + "/";
+            Map<String, List<String>> files = new TreeMap<>();
+            Map<String, TaskDate> mondays = new TreeMap<>();
+            try(DirectoryStream<Path> ds = Files.newDirectoryStream(dir, Files::isRegularFile)) {
+                for(Path p : ds) {
+                    String name = p.getFileName().toString();
+                    TaskDate monday = DatabaseLayout.weekOfFileName(name);
+                    String key = prefix + ((null != monday) ? monday.toString() : name);
+                    files.computeIfAbsent(key, k -> new ArrayList<>()).add(prefix + name);
+                    if(null != monday) {
+                        mondays.put(key, monday);
+                    }
+                }
+            }
+            for(Map.Entry<String, List<String>> e : files.entrySet()) {
+                e.getValue().sort(null);
+                entries.put(e.getKey(), scanEntry(root, e.getKey(), group, mondays.get(e.getKey()), e.getValue()));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Get the current state of the entry.
+     * @param root database root
+     * @param key entry key
+     * @param groupName group name or null
+     * @param monday Monday of the bundle or null
+     * @param files entry files relative paths
+     * @return entry object
+     * @throws IOException 
+     */
+    public static Entry scanEntry(Path root, String key, String groupName, TaskDate monday,
+                                  List<String> files) throws IOException {
+        String checksum = "-";
+        long size = 0;
+        long modified = 0;
+        for(String f : files) {
+            Path p = root.resolve(f);
+            if(!Files.exists(p)) {
+                continue;
+            }
+            size += Files.size(p);
+            modified = Math.max(modified, Files.getLastModifiedTime(p).toMillis());
+            if(f.endsWith(DatabaseLayout.EXT_CHECKSUM)) {
+                try(BufferedReader br = Files.newBufferedReader(p)) {
+                    String line = br.readLine();
+                    checksum = (null == line) ? "-" : line.trim();
+                }
+            }
+        }
+        return new Entry(key, groupName, monday, new ArrayList<>(files), checksum, size, modified);
+    }
+
+    /**
+     * No class instances.
+     */
+    private DatabaseManifest() {
+    }
+}
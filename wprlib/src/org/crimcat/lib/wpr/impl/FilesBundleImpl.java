@@ -26,47 +26,111 @@ package org.crimcat.lib.wpr.impl;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousFileChannel;
+import java.nio.channels.CompletionHandler;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.zip.CRC32;
+import java.util.zip.CRC32C;
 import org.crimcat.lib.wpr.AppDatabase;
+import org.crimcat.lib.wpr.ChecksumException;
 import org.crimcat.lib.wpr.TaskDate;
 
 /**
- * Implementation of files bundle class. 
+ * Implementation of files bundle class.
+ * Checksum file keeps CRC32 of memo and todo list files together on the
+ * first line (compatible with other implementations), the following lines
+ * keep <code>key:value</code> metadata: CRC32 and size of every component
+ * to verify and update components independently, and any other values
+ * stored with @see setMetadata.
+ * Components can be stored in the record format: every line is prefixed
+ * with CRC32C of its contents (<code>hhhhhhhh record</code>) and metadata
+ * keeps number of records and the rollup CRC32C of all record checksums,
+ * so damaged records are found and skipped one by one. Callers always see
+ * the plain contents, prefixes are added and removed by the bundle.
+ * If none of the bundle files is found the bundle falls through to the
+ * yearly pack file (see @see PackFile), packed bundle is unpacked back to
+ * separate files when it's written.
  * @author Stas Torgashov
  */
 public class FilesBundleImpl implements AppDatabase.FilesBundle {
     
     /**
-     * Extention for todos list file.
+     * Metadata key suffix for component CRC32 value.
      */
-    private static final String EXT_TODOLIST = ".todolist";
+    private static final String META_CRC32 = ".crc32";
     /**
-     * Extention for memo file.
+     * Metadata key suffix for component size.
      */
-    private static final String EXT_MEMO = ".memo";
+    private static final String META_SIZE = ".size";
     /**
-     * Extention for checksum file.
+     * Metadata key suffix for component records count and rollup checksum,
+     * it's present for components stored in the record format.
      */
-    private static final String EXT_CHECKSUM = ".checksum";
+    private static final String META_RECORDS = ".records";
+    /**
+     * Size of the record checksum prefix: 8 hex digits and a space.
+     */
+    private static final int RECORD_PREFIX_SIZE = 9;
+    
+    /**
+     * Process wide counters of component bytes read and written.
+     */
+    private static final AtomicLong BYTES_READ = new AtomicLong();
+    private static final AtomicLong BYTES_WRITTEN = new AtomicLong();
         
     public FilesBundleImpl(TaskDate td) {
-        rootDatabasePath = AppDatabase.getDefaultAppDatabasePath();
-        basename = rootDatabasePath.toString() +
-            System.getProperty("file.separator") +
-            td.toString();
+        this(AppDatabase.getDefaultAppDatabasePath(), (String)null, td);
     }
     
     public FilesBundleImpl(TaskDate td, String groupName) {
-        rootDatabasePath = AppDatabase.getDefaultAppDatabasePath();
-        basename = rootDatabasePath.toString() +
-            System.getProperty("file.separator") + groupName +
-            System.getProperty("file.separator") + td.toString();
+        this(AppDatabase.getDefaultAppDatabasePath(), groupName, td);
+    }
+    
+    /**
+     * Ctor: files bundle of the given group in the given database.
+     * @param root database root directory
+     * @param groupName group name or null for default group
+     * @param td week Monday date
+     */
+    public FilesBundleImpl(Path root, String groupName, TaskDate td) {
+        this(root, DatabaseLayout.groupDirectory(root, groupName), td);
+    }
+    
+    /**
+     * Ctor: files bundle in the given directory.
+     * @param root database root directory
+     * @param dir group directory
+     * @param td week Monday date
+     */
+    FilesBundleImpl(Path root, Path dir, TaskDate td) {
+        rootDatabasePath = root;
+        groupDirectory = dir;
+        monday = td;
+        basename = dir.resolve(td.toString()).toString();
     }
     
     @Override
@@ -76,75 +140,879 @@ public class FilesBundleImpl implements AppDatabase.FilesBundle {
 
     @Override
     public Path getTodoListFilePath() {
-        Path todoFile = Paths.get(basename + EXT_TODOLIST);
-        if(!Files.exists(todoFile)) try {
-            Files.createFile(todoFile);
-        } catch(IOException ex) {
-            throw new RuntimeException(ex.toString());
-        }
-        return todoFile;
+        return Paths.get(basename + DatabaseLayout.EXT_TODOLIST);
     }
 
     @Override
     public Path getMemoFilePath() {
-        return Paths.get(basename + EXT_MEMO);
+        return Paths.get(basename + DatabaseLayout.EXT_MEMO);
     }
 
     @Override
-    public boolean checkConsistency() {
-        final Path checksumFilePath = getChecksumFilePath();
-        if(Files.exists(checksumFilePath) && Files.isReadable(checksumFilePath)) try {
-            CRC32 crc32 = new CRC32();
-            updateCRC32(crc32, getMemoFilePath());
-            updateCRC32(crc32, getTodoListFilePath());
-            String cksumStr;
-            try (BufferedReader br = Files.newBufferedReader(checksumFilePath)) {
-                cksumStr = br.readLine();
+    public byte[] readComponent(Component c) throws IOException {
+        byte[] data = readRaw(c);
+        RecordSet records = getComponentRecords(c);
+        if(null != records) {
+            return decodeRecords(data, records, true, null, null);
+        }
+        Checksum expected = getComponentChecksum(c);
+        if(null != expected) {
+            Checksum actual = calcChecksum(data);
+            if((expected.value != actual.value) || (expected.size != actual.size)) {
+                throw new ChecksumException();
             }
-            return crc32.getValue() == Long.parseLong(cksumStr);
+        } else if(!checkLegacyConsistency()) {
+            throw new ChecksumException();
+        }
+        return (null == data) ? new byte[0] : data;
+    }
+
+    @Override
+    public byte[] readComponentUnverified(Component c) throws IOException {
+        byte[] data = readRaw(c);
+        if(null != getComponentRecords(c)) {
+            return decodeRecords(data, null, false, null, null);
+        }
+        return (null == data) ? new byte[0] : data;
+    }
+    
+    @Override
+    public byte[] readIntactRecords(Component c, List<Integer> damaged) throws IOException {
+        if(null == getComponentRecords(c)) {
+            return readComponent(c);
+        }
+        return decodeRecords(readRaw(c), null, true, null, damaged);
+    }
+    
+    /**
+     * Check if the component is stored in the record format.
+     * @param c component
+     * @return true if every component record has its own checksum
+     */
+    public boolean hasRecordChecksums(Component c) {
+        return null != getComponentRecords(c);
+    }
+    
+    /**
+     * Check if the component is verified only by the legacy checksum common
+     * for all components, as the C++ and .NET versions write it.
+     * @param c component
+     * @return true if the component has no checksum of its own
+     */
+    public boolean hasCommonChecksumOnly(Component c) {
+        return (null == getComponentRecords(c)) && (null == getComponentChecksum(c));
+    }
+    
+    /**
+     * Find records which don't match their checksums.
+     * @param c component
+     * @return line numbers (1-based) of damaged records, empty list if
+     *  all records are intact or the component is not in the record format
+     * @throws IOException 
+     */
+    public List<Integer> findDamagedRecords(Component c) throws IOException {
+        List<Integer> damaged = new ArrayList<>();
+        if(null != getComponentRecords(c)) {
+            decodeRecords(readRaw(c), null, true, damaged, null);
+        }
+        return damaged;
+    }
+
+    @Override
+    public CompletableFuture<Map<Component, byte[]>> readComponentsAsync(Set<Component> components) {
+        if(isPacked()) {
+            // pack blocks are small and compressed, they are read by the pool
+            return CompletableFuture.supplyAsync(() -> {
+                Map<Component, byte[]> result = new EnumMap<>(Component.class);
+                try {
+                    for(Component c : components) {
+                        result.put(c, readComponent(c));
+                    }
+                } catch(IOException ex) {
+                    throw new CompletionException(ex);
+                }
+                return result;
+            });
+        }
+        // legacy common checksum needs all the components to be verified
+        Set<Component> toRead = EnumSet.noneOf(Component.class);
+        toRead.addAll(components);
+        for(Component c : components) {
+            if((null == getComponentChecksum(c)) && (null == getComponentRecords(c))) {
+                toRead.addAll(EnumSet.allOf(Component.class));
+            }
+        }
+        Map<Component, CompletableFuture<byte[]>> reads = new EnumMap<>(Component.class);
+        for(Component c : toRead) {
+            reads.put(c, readFileAsync(getComponentPath(c)));
+        }
+        return CompletableFuture.allOf(reads.values().toArray(new CompletableFuture<?>[0])).thenApply(v -> {
+            Map<Component, byte[]> data = new EnumMap<>(Component.class);
+            for(Map.Entry<Component, CompletableFuture<byte[]>> e : reads.entrySet()) {
+                data.put(e.getKey(), e.getValue().join());
+            }
+            Map<Component, byte[]> result = new EnumMap<>(Component.class);
+            for(Component c : components) {
+                RecordSet records = getComponentRecords(c);
+                if(null != records) {
+                    result.put(c, decodeRecords(data.get(c), records, true, null, null));
+                    continue;
+                }
+                Checksum expected = getComponentChecksum(c);
+                boolean ok;
+                if(null != expected) {
+                    Checksum actual = calcChecksum(data.get(c));
+                    ok = (expected.value == actual.value) && (expected.size == actual.size);
+                } else if(null == legacyChecksum) {
+                    ok = true; // we do not check if no checksum file found
+                } else {
+                    Checksum memo = calcChecksum(data.get(Component.MEMO));
+                    Checksum todo = calcChecksum(data.get(Component.TODOLIST));
+                    ok = legacyChecksum == combineCRC32(memo.value, todo.value, todo.size);
+                }
+                if(!ok) {
+                    throw new ChecksumException();
+                }
+                result.put(c, (null == data.get(c)) ? new byte[0] : data.get(c));
+            }
+            return result;
+        });
+    }
+
+    @Override
+    public void writeComponent(Component c, byte[] data) throws IOException {
+        unpack();
+        final Path path = getComponentPath(c);
+        RecordSet records = null;
+        if((0 != data.length) && AppDatabase.getAppConfig().doRecordChecksums()) {
+            records = new RecordSet(0, 0);
+            data = encodeRecords(data, records);
+        }
+        writtenRecords.put(c, records);
+        if((Component.MEMO == c) && (0 == data.length)) {
+            Files.deleteIfExists(path);
+        } else {
+            createParentDirectory(path);
+            Files.write(path, data);
+            BYTES_WRITTEN.addAndGet(data.length);
+        }
+        CRC32 crc32 = new CRC32();
+        crc32.update(data);
+        written.put(c, new Checksum(crc32.getValue(), data.length));
+    }
+
+    @Override
+    public void appendComponent(Component c, byte[] data) throws IOException {
+        unpack();
+        final Path path = getComponentPath(c);
+        Checksum before = written.containsKey(c) ? written.get(c) : getComponentChecksum(c);
+        RecordSet records = getComponentRecords(c);
+        if((null == records) && AppDatabase.getAppConfig().doRecordChecksums() &&
+           ((null != before) ? (0 == before.size) : !Files.exists(path))) {
+            // new component is started in the record format
+            records = new RecordSet(0, 0);
+        }
+        if(null != records) {
+            records = new RecordSet(records.count, records.rollup);
+            data = encodeRecords(data, records);
+        }
+        writtenRecords.put(c, records);
+        createParentDirectory(path);
+        Files.write(path, data, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        BYTES_WRITTEN.addAndGet(data.length);
+        if(null == before) {
+            // unknown checksum of the existing contents, it's calculated on update
+            written.remove(c);
+        } else {
+            CRC32 crc32 = new CRC32();
+            crc32.update(data);
+            written.put(c, new Checksum(
+                combineCRC32(before.value, crc32.getValue(), data.length),
+                before.size + data.length));
+        }
+    }
+
+    @Override
+    public boolean checkConsistency() {
+        return checkConsistency(Component.MEMO) && checkConsistency(Component.TODOLIST);
+    }
+
+    @Override
+    public boolean checkConsistency(Component c) {
+        RecordSet records = getComponentRecords(c);
+        if(null != records) try {
+            decodeRecords(readRaw(c), records, true, null, null);
+            return true;
+        } catch(ChecksumException ex) {
+            return false;
+        } catch(IOException ex) {
+            throw new RuntimeException(ex.toString());
+        }
+        Checksum expected = getComponentChecksum(c);
+        if(null == expected) {
+            return checkLegacyConsistency();
+        }
+        try {
+            Checksum actual = isPacked() ? calcChecksum(readRaw(c)) : calcChecksum(getComponentPath(c));
+            return (expected.value == actual.value) && (expected.size == actual.size);
         } catch(IOException ex) {
             throw new RuntimeException(ex.toString());
         }
-        return true; // we do not check if no checksum file found or is not accessible
+    }
+
+    @Override
+    public String getMetadata(String key) {
+        return getMetadataMap().get(key);
+    }
+
+    @Override
+    public void setMetadata(String key, String value) {
+        if(null == value) {
+            getMetadataMap().remove(key);
+        } else {
+            getMetadataMap().put(key, value);
+        }
     }
 
     @Override
     public void updateChecksum() {
         try {
-            CRC32 crc32 = new CRC32();
-            updateCRC32(crc32, getMemoFilePath());
-            updateCRC32(crc32, getTodoListFilePath());
-            try (BufferedWriter bw = Files.newBufferedWriter(getChecksumFilePath())) {
-                bw.write(Long.toUnsignedString(crc32.getValue()));
+            unpack();
+            Checksum memo = getActualChecksum(Component.MEMO);
+            Checksum todo = getActualChecksum(Component.TODOLIST);
+            setComponentChecksum(Component.MEMO, memo);
+            setComponentChecksum(Component.TODOLIST, todo);
+            for(Map.Entry<Component, RecordSet> e : writtenRecords.entrySet()) {
+                RecordSet records = e.getValue();
+                setMetadata(componentKey(e.getKey()) + META_RECORDS,
+                    (null == records) ? null : records.count + ":" + records.rollup);
+            }
+            writtenRecords.clear();
+            legacyChecksum = combineCRC32(memo.value, todo.value, todo.size);
+            legacyConsistent = true;
+            written.clear();
+            final Path checksumFilePath = getChecksumFilePath();
+            createParentDirectory(checksumFilePath);
+            try (BufferedWriter bw = Files.newBufferedWriter(checksumFilePath)) {
+                bw.write(Long.toUnsignedString(legacyChecksum));
+                for(Map.Entry<String, String> e : getMetadataMap().entrySet()) {
+                    bw.newLine();
+                    bw.write(e.getKey() + ":" + e.getValue());
+                }
             }
         } catch(IOException ex) {
             throw new RuntimeException(ex.toString());
         }
     }
     
+    @Override
+    public TitleDictionary getTitleDictionary() {
+        return TitleDictionary.forDirectory(groupDirectory);
+    }
+    
+    @Override
+    public void rebuildChecksum() {
+        for(Component c : Component.values()) {
+            setMetadata(componentKey(c) + META_CRC32, null);
+            setMetadata(componentKey(c) + META_SIZE, null);
+        }
+        written.clear();
+        writtenRecords.clear();
+        try {
+            for(Component c : Component.values()) {
+                if(null != getComponentRecords(c)) {
+                    // record checksums are kept, so damaged records stay detectable
+                    writtenRecords.put(c, scanRecords(readRaw(c)));
+                }
+            }
+        } catch(IOException ex) {
+            throw new RuntimeException(ex.toString());
+        }
+        updateChecksum();
+    }
+    
     /**
      * Internal method to obtain a path to the checksum file.
      * @return path to checksum file object
      */
     private Path getChecksumFilePath() {
-        return Paths.get(basename + EXT_CHECKSUM);
+        return Paths.get(basename + DatabaseLayout.EXT_CHECKSUM);
+    }
+    
+    /**
+     * Internal method to obtain a path to the component file.
+     * @param c component
+     * @return path to the component file
+     */
+    private Path getComponentPath(Component c) {
+        return (Component.MEMO == c) ? getMemoFilePath() : getTodoListFilePath();
+    }
+    
+    /**
+     * Get metadata map, it's read from the checksum file on first access.
+     * @return map of metadata values
+     */
+    private Map<String, String> getMetadataMap() {
+        if(null == metadata) {
+            metadata = new TreeMap<>();
+            try {
+                Reader reader = null;
+                if(isPacked()) {
+                    byte[] data = pack.read(monday.toString(), PackFile.BLOCK_CHECKSUM);
+                    if(null != data) {
+                        reader = new InputStreamReader(new ByteArrayInputStream(data), StandardCharsets.UTF_8);
+                    }
+                } else {
+                    final Path checksumFilePath = getChecksumFilePath();
+                    if(Files.exists(checksumFilePath) && Files.isReadable(checksumFilePath)) {
+                        reader = Files.newBufferedReader(checksumFilePath);
+                    }
+                }
+                if(null != reader) {
+                    try (BufferedReader br = new BufferedReader(reader)) {
+                        String line = br.readLine();
+                        if(null != line) {
+                            legacyChecksum = Long.parseLong(line.trim());
+                        }
+                        while(null != (line = br.readLine())) {
+                            int sep = line.indexOf(':');
+                            if(sep > 0) {
+                                metadata.put(line.substring(0, sep), line.substring(sep + 1));
+                            }
+                        }
+                    }
+                }
+            } catch(IOException | NumberFormatException ex) {
+                throw new RuntimeException(ex.toString());
+            }
+        }
+        return metadata;
+    }
+    
+    /**
+     * Check if the bundle is read from the yearly pack file. It's so if
+     * there is no separate files of the bundle and the pack contains it.
+     * @return true if the bundle is packed
+     */
+    private boolean isPacked() {
+        if(null == packed) {
+            packed = false;
+            if(!Files.exists(getTodoListFilePath()) && !Files.exists(getMemoFilePath()) &&
+               !Files.exists(getChecksumFilePath())) try {
+                pack = PackFile.open(DatabaseLayout.packFilePath(groupDirectory, monday.year()));
+                packed = (null != pack) && pack.contains(monday.toString());
+            } catch(IOException ex) {
+                throw new RuntimeException(ex.toString());
+            }
+        }
+        return packed;
+    }
+    
+    /**
+     * Restore separate files of the packed bundle, so they can be modified.
+     * The pack is not rewritten, separate files take precedence over its
+     * outdated copy until the year is packed again.
+     * @throws IOException 
+     */
+    private void unpack() throws IOException {
+        if(isPacked()) {
+            final String date = monday.toString();
+            final Path[] files = { getMemoFilePath(), getTodoListFilePath(), getChecksumFilePath() };
+            final int[] blocks = { PackFile.BLOCK_MEMO, PackFile.BLOCK_TODOLIST, PackFile.BLOCK_CHECKSUM };
+            for(int i = 0; i < files.length; ++i) {
+                byte[] data = pack.read(date, blocks[i]);
+                if(null != data) {
+                    Files.write(files[i], data);
+                }
+            }
+            packed = false;
+        }
+    }
+    
+    /**
+     * Read component contents as is, from separate file or from pack.
+     * @param c component
+     * @return contents or null if component is not present
+     * @throws IOException 
+     */
+    private byte[] readRaw(Component c) throws IOException {
+        if(isPacked()) {
+            byte[] data = pack.read(monday.toString(),
+                (Component.MEMO == c) ? PackFile.BLOCK_MEMO : PackFile.BLOCK_TODOLIST);
+            if(null != data) {
+                BYTES_READ.addAndGet(data.length);
+            }
+            return data;
+        }
+        final Path path = getComponentPath(c);
+        byte[] data = Files.exists(path) ? Files.readAllBytes(path) : null;
+        if(null != data) {
+            BYTES_READ.addAndGet(data.length);
+        }
+        return data;
+    }
+    
+    /**
+     * Get number of component bytes read by all bundles of the process.
+     * Packed components are counted unpacked.
+     * @return number of bytes
+     */
+    public static long bytesRead() {
+        return BYTES_READ.get();
+    }
+    
+    /**
+     * Get number of component bytes written by all bundles of the process.
+     * @return number of bytes
+     */
+    public static long bytesWritten() {
+        return BYTES_WRITTEN.get();
+    }
+    
+    /**
+     * Get stored checksum of the component.
+     * @param c component
+     * @return checksum or null if it's not stored for this component
+     */
+    private Checksum getComponentChecksum(Component c) {
+        String crc = getMetadata(componentKey(c) + META_CRC32);
+        String size = getMetadata(componentKey(c) + META_SIZE);
+        if((null != crc) && (null != size)) try {
+            return new Checksum(Long.parseLong(crc), Long.parseLong(size));
+        } catch(NumberFormatException ex) { }
+        return null;
+    }
+    
+    /**
+     * Store checksum of the component in metadata.
+     * @param c component
+     * @param cs checksum value
+     */
+    private void setComponentChecksum(Component c, Checksum cs) {
+        setMetadata(componentKey(c) + META_CRC32, Long.toString(cs.value));
+        setMetadata(componentKey(c) + META_SIZE, Long.toString(cs.size));
+    }
+    
+    /**
+     * Get records count and rollup checksum of the component.
+     * @param c component
+     * @return records set or null if the component is not in the record format
+     */
+    private RecordSet getComponentRecords(Component c) {
+        if(writtenRecords.containsKey(c)) {
+            return writtenRecords.get(c);
+        }
+        String value = getMetadata(componentKey(c) + META_RECORDS);
+        if(null != value) try {
+            int sep = value.indexOf(':');
+            return new RecordSet(Long.parseLong(value.substring(0, sep)), Long.parseLong(value.substring(sep + 1)));
+        } catch(NumberFormatException | IndexOutOfBoundsException ex) { }
+        return null;
+    }
+    
+    /**
+     * Get checksum of the current component contents. Checksums of the
+     * components saved through this object are known, checksums of untouched
+     * components are taken from metadata, so they are not read again.
+     * @param c component
+     * @return checksum of the component
+     * @throws IOException 
+     */
+    private Checksum getActualChecksum(Component c) throws IOException {
+        if(written.containsKey(c)) {
+            return written.get(c);
+        }
+        Checksum stored = getComponentChecksum(c);
+        return (null != stored) ? stored : calcChecksum(getComponentPath(c));
+    }
+    
+    /**
+     * Check consistency of the bundle which has no per component checksums,
+     * all files are read to verify the common checksum. The result is cached.
+     * @return true if data is ok
+     */
+    private boolean checkLegacyConsistency() {
+        if(null == legacyConsistent) {
+            getMetadataMap();
+            if(null == legacyChecksum) {
+                legacyConsistent = true; // we do not check if no checksum file found or is not accessible
+            } else try {
+                Checksum memo = calcChecksum(readRaw(Component.MEMO));
+                Checksum todo = calcChecksum(readRaw(Component.TODOLIST));
+                legacyConsistent = legacyChecksum == combineCRC32(memo.value, todo.value, todo.size);
+            } catch(IOException ex) {
+                throw new RuntimeException(ex.toString());
+            }
+        }
+        return legacyConsistent;
     }
     
     /**
-     * Private method: accumulative calculation of CRC32 for the given file.
-     * Needed to find CRC32 for all database files for the give date.
-     * @param crc32 CRC32 accumulator object (cannot be null)
-     * @param file file to append its CRC32 to the result
+     * Get metadata key prefix for the component.
+     * @param c component
+     * @return key prefix string
+     */
+    private static String componentKey(Component c) {
+        return (Component.MEMO == c) ? "memo" : "todolist";
+    }
+    
+    /**
+     * Create parent directory for the given file if it does not exist yet.
+     * @param path file path
+     * @throws IOException 
+     */
+    private static void createParentDirectory(Path path) throws IOException {
+        Path parent = path.getParent();
+        if((null != parent) && !Files.exists(parent)) {
+            Files.createDirectories(parent);
+        }
+    }
+    
+    /**
+     * Private method: calculation of CRC32 and size for the given file.
+     * Not existing file has zero checksum and size.
+     * @param path file to calculate checksum for
+     * @return checksum object
      * @throws IOException
      */
-    private static void updateCRC32(CRC32 crc32, Path path) throws IOException {
+    private static Checksum calcChecksum(Path path) throws IOException {
+        CRC32 crc32 = new CRC32();
+        long size = 0;
         if(Files.exists(path, LinkOption.NOFOLLOW_LINKS) && Files.isReadable(path)) {
             try(InputStream is = Files.newInputStream(path)) {
-                while(is.available() > 0) {
-                    crc32.update(is.read());
+                byte[] buf = new byte[8192];
+                int n;
+                while((n = is.read(buf)) > 0) {
+                    crc32.update(buf, 0, n);
+                    size += n;
                 }
             }
         }
+        return new Checksum(crc32.getValue(), size);
+    }
+    
+    /**
+     * Read the whole file through asynchronous channel.
+     * @param path file path
+     * @return future contents, null if the file does not exist
+     */
+    private static CompletableFuture<byte[]> readFileAsync(Path path) {
+        CompletableFuture<byte[]> result = new CompletableFuture<>();
+        final AsynchronousFileChannel channel;
+        final ByteBuffer bb;
+        try {
+            channel = AsynchronousFileChannel.open(path, StandardOpenOption.READ);
+            bb = ByteBuffer.allocate((int)channel.size());
+        } catch(NoSuchFileException ex) {
+            result.complete(null);
+            return result;
+        } catch(IOException ex) {
+            result.completeExceptionally(ex);
+            return result;
+        }
+        channel.read(bb, 0, null, new CompletionHandler<Integer, Void>() {
+            @Override
+            public void completed(Integer n, Void attachment) {
+                if((n < 0) || !bb.hasRemaining()) {
+                    close();
+                    BYTES_READ.addAndGet(bb.position());
+                    result.complete(Arrays.copyOf(bb.array(), bb.position()));
+                } else {
+                    channel.read(bb, bb.position(), null, this);
+                }
+            }
+
+            @Override
+            public void failed(Throwable ex, Void attachment) {
+                close();
+                result.completeExceptionally(ex);
+            }
+
+            private void close() {
+                try {
+                    channel.close();
+                } catch(IOException ex) { }
+            }
+        });
+        return result;
+    }
+    
+    /**
+     * Private method: calculation of CRC32 and size for the given data.
+     * @param data data to calculate checksum for, null is the same as empty
+     * @return checksum object
+     */
+    private static Checksum calcChecksum(byte[] data) {
+        CRC32 crc32 = new CRC32();
+        if(null == data) {
+            return new Checksum(crc32.getValue(), 0);
+        }
+        crc32.update(data);
+        return new Checksum(crc32.getValue(), data.length);
+    }
+    
+    /**
+     * Prefix every non-empty line of the data with CRC32C of its contents.
+     * @param data plain contents
+     * @param records records set to add the encoded records to
+     * @return contents in the record format
+     */
+    private static byte[] encodeRecords(byte[] data, RecordSet records) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length + data.length / 4);
+        CRC32C crc = new CRC32C();
+        CRC32C rollup = new CRC32C();
+        long count = 0;
+        byte[] prefix = new byte[RECORD_PREFIX_SIZE];
+        for(int start = 0; start < data.length; ) {
+            int end = lineEnd(data, start);
+            if(!isBlankRecord(data, start, end)) {
+                crc.reset();
+                crc.update(data, start, end - start);
+                int value = (int)crc.getValue();
+                writeHex(prefix, value);
+                prefix[8] = ' ';
+                out.write(prefix, 0, prefix.length);
+                updateRollup(rollup, value);
+                ++count;
+            }
+            out.write(data, start, Math.min(end + 1, data.length) - start);
+            start = end + 1;
+        }
+        records.rollup = combineCRC32C(records.rollup, rollup.getValue(), 4 * count);
+        records.count += count;
+        return out.toByteArray();
+    }
+    
+    /**
+     * Strip record checksums from the contents in the record format.
+     * @param data contents in the record format, null is the same as empty
+     * @param expected expected records count and rollup checksum, null to
+     *  skip the rollup verification
+     * @param verify true to verify records checksums: damaged records are
+     *  skipped if no rollup checksum is expected, otherwise they make the
+     *  whole contents damaged; false to keep all records as they are
+     * @param damaged list to add line numbers (1-based) of damaged records to or null
+     * @param damagedRecords list to add indexes (0-based, blank lines are not
+     *  counted) of damaged records to or null
+     * @return plain contents
+     * @throws ChecksumException if the records don't match expected checksums
+     */
+    private static byte[] decodeRecords(byte[] data, RecordSet expected, boolean verify,
+                                        List<Integer> damaged, List<Integer> damagedRecords) {
+        if(null == data) {
+            data = new byte[0];
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length);
+        CRC32C crc = new CRC32C();
+        CRC32C rollup = new CRC32C();
+        long count = 0;
+        int lineNo = 0;
+        int recordNo = -1;
+        for(int start = 0; start < data.length; ) {
+            int end = lineEnd(data, start);
+            int next = Math.min(end + 1, data.length);
+            ++lineNo;
+            if(isBlankRecord(data, start, end)) {
+                out.write(data, start, next - start);
+            } else {
+                ++recordNo;
+                boolean intact = false;
+                int recordStart = start;
+                if(hasRecordPrefix(data, start, end)) {
+                    int stored = readHex(data, start);
+                    updateRollup(rollup, stored);
+                    ++count;
+                    recordStart = start + RECORD_PREFIX_SIZE;
+                    if(verify) {
+                        crc.reset();
+                        crc.update(data, recordStart, end - recordStart);
+                        intact = stored == (int)crc.getValue();
+                    }
+                }
+                if(verify && !intact) {
+                    if(null != expected) {
+                        throw new ChecksumException();
+                    }
+                    if(null != damaged) {
+                        damaged.add(lineNo);
+                    }
+                    if(null != damagedRecords) {
+                        damagedRecords.add(recordNo);
+                    }
+                } else {
+                    out.write(data, recordStart, next - recordStart);
+                }
+            }
+            start = next;
+        }
+        if((null != expected) && ((expected.count != count) || (expected.rollup != rollup.getValue()))) {
+            throw new ChecksumException();
+        }
+        return out.toByteArray();
+    }
+    
+    /**
+     * Calculate records count and rollup checksum from the stored record
+     * checksums, records contents are not verified.
+     * @param data contents in the record format
+     * @return records set
+     */
+    private static RecordSet scanRecords(byte[] data) {
+        CRC32C rollup = new CRC32C();
+        long count = 0;
+        if(null != data) {
+            for(int start = 0; start < data.length; ) {
+                int end = lineEnd(data, start);
+                if(hasRecordPrefix(data, start, end)) {
+                    updateRollup(rollup, readHex(data, start));
+                    ++count;
+                }
+                start = end + 1;
+            }
+        }
+        return new RecordSet(count, rollup.getValue());
+    }
+    
+    private static int lineEnd(byte[] data, int start) {
+        int end = start;
+        while((end < data.length) && ('\n' != data[end])) {
+            ++end;
+        }
+        return end;
+    }
+    
+    private static boolean isBlankRecord(byte[] data, int start, int end) {
+        return (end == start) || ((end == start + 1) && ('\r' == data[start]));
+    }
+    
+    private static boolean hasRecordPrefix(byte[] data, int start, int end) {
+        if((end - start < RECORD_PREFIX_SIZE) || (' ' != data[start + 8])) {
+            return false;
+        }
+        for(int i = start; i < start + 8; ++i) {
+            if(Character.digit(data[i], 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static int readHex(byte[] data, int start) {
+        int value = 0;
+        for(int i = start; i < start + 8; ++i) {
+            value = (value << 4) | Character.digit(data[i], 16);
+        }
+        return value;
+    }
+    
+    private static void writeHex(byte[] buf, int value) {
+        for(int i = 7; i >= 0; --i, value >>>= 4) {
+            buf[i] = (byte)Character.forDigit(value & 0xF, 16);
+        }
+    }
+    
+    private static void updateRollup(CRC32C rollup, int value) {
+        rollup.update(value >>> 24);
+        rollup.update(value >>> 16);
+        rollup.update(value >>> 8);
+        rollup.update(value);
+    }
+    
+    /**
+     * Combine two CRC32 values: get CRC32 of two data blocks concatenation
+     * knowing only CRC32 of each block and the size of the second one.
+     * It's the same algorithm as zlib crc32_combine uses.
+     * @param crc1 CRC32 of the first block
+     * @param crc2 CRC32 of the second block
+     * @param len2 size of the second block
+     * @return CRC32 of the concatenated blocks
+     */
+    static long combineCRC32(long crc1, long crc2, long len2) {
+        return combineCRC(0xEDB88320L, crc1, crc2, len2);
+    }
+    
+    /**
+     * Combine two CRC32C values, the same as @see combineCRC32 does.
+     * @param crc1 CRC32C of the first block
+     * @param crc2 CRC32C of the second block
+     * @param len2 size of the second block
+     * @return CRC32C of the concatenated blocks
+     */
+    static long combineCRC32C(long crc1, long crc2, long len2) {
+        return combineCRC(0x82F63B78L, crc1, crc2, len2);
+    }
+    
+    private static long combineCRC(long polynomial, long crc1, long crc2, long len2) {
+        if(len2 <= 0) {
+            return crc1;
+        }
+        long[] even = new long[32];
+        long[] odd = new long[32];
+        // operator for one zero bit
+        odd[0] = polynomial;
+        long row = 1;
+        for(int n = 1; n < 32; ++n) {
+            odd[n] = row;
+            row <<= 1;
+        }
+        gf2MatrixSquare(even, odd); // two zero bits
+        gf2MatrixSquare(odd, even); // four zero bits
+        do {
+            gf2MatrixSquare(even, odd);
+            if(0 != (len2 & 1)) {
+                crc1 = gf2MatrixTimes(even, crc1);
+            }
+            len2 >>= 1;
+            if(0 == len2) {
+                break;
+            }
+            gf2MatrixSquare(odd, even);
+            if(0 != (len2 & 1)) {
+                crc1 = gf2MatrixTimes(odd, crc1);
+            }
+            len2 >>= 1;
+        } while(0 != len2);
+        return (crc1 ^ crc2) & 0xFFFFFFFFL;
+    }
+    
+    private static long gf2MatrixTimes(long[] mat, long vec) {
+        long sum = 0;
+        for(int i = 0; 0 != vec; ++i, vec >>>= 1) {
+            if(0 != (vec & 1)) {
+                sum ^= mat[i];
+            }
+        }
+        return sum;
+    }
+    
+    private static void gf2MatrixSquare(long[] square, long[] mat) {
+        for(int n = 0; n < 32; ++n) {
+            square[n] = gf2MatrixTimes(mat, mat[n]);
+        }
+    }
+    
+    /**
+     * Checksum value with size of the checked data.
+     */
+    private static final class Checksum {
+        Checksum(long value, long size) {
+            this.value = value;
+            this.size = size;
+        }
+        final long value;
+        final long size;
+    }
+    
+    /**
+     * Number of records and rollup CRC32C of their checksums.
+     */
+    private static final class RecordSet {
+        RecordSet(long count, long rollup) {
+            this.count = count;
+            this.rollup = rollup;
+        }
+        long count;
+        long rollup;
     }
     
     /**
@@ -152,8 +1020,54 @@ public class FilesBundleImpl implements AppDatabase.FilesBundle {
      */
     private final Path rootDatabasePath;
     
+    /**
+     * Directory of the bundle group.
+     */
+    private final Path groupDirectory;
+    
+    /**
+     * Monday date of the bundle week.
+     */
+    private final TaskDate monday;
+    
     /**
      * Base name to construct bundle elements names.
      */
     private final String basename;
+    
+    /**
+     * Flag if bundle is read from the pack, null if not checked yet.
+     */
+    private Boolean packed = null;
+    
+    /**
+     * Pack file containing the bundle.
+     */
+    private PackFile pack = null;
+    
+    /**
+     * Metadata read from checksum file, null if not read yet.
+     */
+    private Map<String, String> metadata = null;
+    
+    /**
+     * Common checksum of all bundle files, null if not known.
+     */
+    private Long legacyChecksum = null;
+    
+    /**
+     * Cached result of common checksum verification, null if not verified yet.
+     */
+    private Boolean legacyConsistent = null;
+    
+    /**
+     * Checksums of components written through this object.
+     */
+    private final Map<Component, Checksum> written = new EnumMap<>(Component.class);
+    
+    /**
+     * Records of components written through this object, null value for
+     * components written in the plain format.
+     */
+    private final Map<Component, RecordSet> writtenRecords = new EnumMap<>(Component.class);
 }
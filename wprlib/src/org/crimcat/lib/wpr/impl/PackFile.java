@@ -0,0 +1,363 @@
+/*
+    (Java) Weekly Plans and Reports - simple and handy todo planning tool.
+
+    Copyright (C) 2011-2014  Stas Torgashov
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+/* File:    PackFile.java
+ * Author:  Stas Torgashov aka Crimson Cat (crimcat@yandex.ru)
+ * Created: 2026, October 19
+ */
+
+package org.crimcat.lib.wpr.impl;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import org.crimcat.lib.wpr.ChecksumException;
+import org.crimcat.lib.wpr.TaskDate;
+
+/**
+ * Yearly pack file: all weeks of one year of a group in one file.
+ * The file starts with a directory of packed weeks: Monday date and offset,
+ * compressed and raw size of every bundle file (memo, todo list, checksum),
+ * followed by separately deflated file blocks, so one file of one week can
+ * be read without inflating anything else.
+ * @author Stas Torgashov
+ */
+public final class PackFile {
+    /**
+     * Block index of memo file.
+     */
+    public static final int BLOCK_MEMO = 0;
+    /**
+     * Block index of todo list file.
+     */
+    public static final int BLOCK_TODOLIST = 1;
+    /**
+     * Block index of checksum file.
+     */
+    public static final int BLOCK_CHECKSUM = 2;
+    
+    /**
+     * Open pack file and read its directory. Directories are cached while
+     * the file is not modified.
+     * @param path pack file path
+     * @return pack file object or null if file does not exist
+     * @throws IOException 
+     */
+    public static PackFile open(Path path) throws IOException {
+        if(!Files.exists(path)) {
+            return null;
+        }
+        FileTime modified = Files.getLastModifiedTime(path);
+        PackFile cached = openedPacks.get(path);
+        if((null != cached) && cached.modified.equals(modified)) {
+            return cached;
+        }
+        PackFile pack = new PackFile(path, modified);
+        openedPacks.put(path, pack);
+        return pack;
+    }
+    
+    /**
+     * Get Monday dates of packed weeks.
+     * @return sorted set of dates as strings
+     */
+    public Set<String> weeks() {
+        return Collections.unmodifiableSet(directory.keySet());
+    }
+    
+    /**
+     * Check if the week is packed.
+     * @param monday Monday date as string
+     * @return true if the pack contains the week
+     */
+    public boolean contains(String monday) {
+        return directory.containsKey(monday);
+    }
+    
+    /**
+     * Read and inflate one file of the packed week.
+     * @param monday Monday date as string
+     * @param block block index: BLOCK_MEMO, BLOCK_TODOLIST or BLOCK_CHECKSUM
+     * @return file contents or null if the week has no such file
+     * @throws IOException 
+     */
+    public byte[] read(String monday, int block) throws IOException {
+        long[] entry = directory.get(monday);
+        if((null == entry) || (entry[3 * block + 2] < 0)) {
+            return null;
+        }
+        final long offset = entry[3 * block];
+        final int compressedSize = (int)entry[3 * block + 1];
+        final int rawSize = (int)entry[3 * block + 2];
+        ByteBuffer compressed = ByteBuffer.allocate(compressedSize);
+        try(FileChannel fc = FileChannel.open(path, StandardOpenOption.READ)) {
+            while(compressed.hasRemaining()) {
+                if(fc.read(compressed, offset + compressed.position()) < 0) {
+                    throw new ChecksumException();
+                }
+            }
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed.array());
+            byte[] raw = new byte[rawSize];
+            int n = 0;
+            while((n < rawSize) && !inflater.finished()) {
+                int got = inflater.inflate(raw, n, rawSize - n);
+                if((0 == got) && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                n += got;
+            }
+            if(n != rawSize) {
+                throw new ChecksumException();
+            }
+            return raw;
+        } catch(DataFormatException ex) {
+            throw new ChecksumException();
+        } finally {
+            inflater.end();
+        }
+    }
+    
+    /**
+     * Pack all weeks of the given past year found as separate files in the
+     * group directory. Weeks already packed before are kept in the pack,
+     * separate files of the packed weeks are removed. A packed week written
+     * again has separate files superseding its copy in the pack, the copy is
+     * replaced here. The current year is never packed, its weeks can still
+     * be edited.
+     * @param dir group directory
+     * @param year year of weeks Mondays
+     * @param today today date
+     * @return number of newly packed weeks
+     * @throws IOException 
+     * @throws IllegalArgumentException if the year is not a past one
+     * @throws ChecksumException if one of the weeks is damaged, nothing is packed then
+     */
+    public static int pack(Path dir, int year, TaskDate today) throws IOException {
+        if(year >= today.year()) {
+            throw new IllegalArgumentException("only years before " + today.year() + " can be packed");
+        }
+        final TaskDate currentMonday = today.shiftToWeekDay(TaskDate.WeekDay.MONDAY);
+        final Path packPath = DatabaseLayout.packFilePath(dir, year);
+        TreeMap<String, byte[][]> weeks = readAll(packPath);
+        TreeMap<String, Path[]> loose = new TreeMap<>();
+        for(TaskDate monday : DatabaseLayout.listLooseWeeks(dir)) {
+            if((monday.year() != year) || (monday.compare(currentMonday) >= 0)) {
+                continue;
+            }
+            if(!new FilesBundleImpl(dir, dir, monday).checkConsistency()) {
+                throw new ChecksumException();
+            }
+            Path[] files = new Path[] {
+                dir.resolve(monday.toString() + DatabaseLayout.EXT_MEMO),
+                dir.resolve(monday.toString() + DatabaseLayout.EXT_TODOLIST),
+                dir.resolve(monday.toString() + DatabaseLayout.EXT_CHECKSUM)
+            };
+            byte[][] blocks = new byte[files.length][];
+            for(int i = 0; i < files.length; ++i) {
+                blocks[i] = Files.exists(files[i]) ? Files.readAllBytes(files[i]) : null;
+            }
+            weeks.put(monday.toString(), blocks);
+            loose.put(monday.toString(), files);
+        }
+        if(loose.isEmpty()) {
+            return 0;
+        }
+        write(packPath, weeks);
+        for(Path[] files : loose.values()) {
+            for(Path p : files) {
+                Files.deleteIfExists(p);
+            }
+        }
+        return loose.size();
+    }
+    
+    /**
+     * Read all files of all weeks of the pack.
+     * @param packPath pack file path
+     * @return map of Monday dates to files contents (memo, todo list and
+     *  checksum, null for not present ones), empty if there is no pack
+     * @throws IOException 
+     */
+    private static TreeMap<String, byte[][]> readAll(Path packPath) throws IOException {
+        TreeMap<String, byte[][]> weeks = new TreeMap<>();
+        PackFile existing = open(packPath);
+        if(null != existing) {
+            for(String monday : existing.weeks()) {
+                weeks.put(monday, new byte[][] {
+                    existing.read(monday, BLOCK_MEMO),
+                    existing.read(monday, BLOCK_TODOLIST),
+                    existing.read(monday, BLOCK_CHECKSUM)
+                });
+            }
+        }
+        return weeks;
+    }
+    
+    /**
+     * Write weeks to the pack file replacing it atomically.
+     * @param packPath pack file path
+     * @param weeks map of Monday dates to files contents
+     * @throws IOException 
+     */
+    private static void write(Path packPath, TreeMap<String, byte[][]> weeks) throws IOException {
+        // compress blocks and build the directory
+        final int headerSize = MAGIC.length + 4 + weeks.size() * (DATE_LENGTH + BLOCKS_COUNT * ENTRY_SIZE);
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        ByteArrayOutputStream header = new ByteArrayOutputStream(headerSize);
+        DataOutputStream dos = new DataOutputStream(header);
+        dos.write(MAGIC);
+        dos.writeInt(weeks.size());
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            for(Map.Entry<String, byte[][]> week : weeks.entrySet()) {
+                dos.write(week.getKey().getBytes(StandardCharsets.US_ASCII));
+                for(byte[] raw : week.getValue()) {
+                    if(null == raw) {
+                        dos.writeLong(0);
+                        dos.writeInt(0);
+                        dos.writeInt(-1);
+                    } else {
+                        byte[] compressed = deflate(deflater, raw);
+                        dos.writeLong(headerSize + data.size());
+                        dos.writeInt(compressed.length);
+                        dos.writeInt(raw.length);
+                        data.write(compressed);
+                    }
+                }
+            }
+        } finally {
+            deflater.end();
+        }
+        dos.flush();
+        
+        // replace pack file
+        Path tmpPath = packPath.resolveSibling(packPath.getFileName().toString() + ".tmp");
+        try(OutputStream os = Files.newOutputStream(tmpPath)) {
+            header.writeTo(os);
+            data.writeTo(os);
+        }
+        Files.move(tmpPath, packPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        openedPacks.remove(packPath);
+    }
+    
+    /**
+     * Ctor: read pack directory.
+     * @param path pack file path
+     * @param modified pack file modification time
+     * @throws IOException 
+     */
+    private PackFile(Path path, FileTime modified) throws IOException {
+        this.path = path;
+        this.modified = modified;
+        try(DataInputStream dis = new DataInputStream(Files.newInputStream(path))) {
+            byte[] magic = new byte[MAGIC.length];
+            dis.readFully(magic);
+            if(!Arrays.equals(MAGIC, magic)) {
+                throw new ChecksumException();
+            }
+            int count = dis.readInt();
+            byte[] date = new byte[DATE_LENGTH];
+            for(int i = 0; i < count; ++i) {
+                dis.readFully(date);
+                long[] entry = new long[3 * BLOCKS_COUNT];
+                for(int b = 0; b < BLOCKS_COUNT; ++b) {
+                    entry[3 * b] = dis.readLong();
+                    entry[3 * b + 1] = dis.readInt();
+                    entry[3 * b + 2] = dis.readInt();
+                }
+                directory.put(new String(date, StandardCharsets.US_ASCII), entry);
+            }
+        }
+    }
+    
+    /**
+     * Compress the block.
+     * @param deflater deflater to use, it's reset before compression
+     * @param raw data to compress
+     * @return compressed data
+     */
+    private static byte[] deflate(Deflater deflater, byte[] raw) {
+        deflater.reset();
+        deflater.setInput(raw);
+        deflater.finish();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2 + 16);
+        byte[] buf = new byte[8192];
+        while(!deflater.finished()) {
+            int n = deflater.deflate(buf);
+            out.write(buf, 0, n);
+        }
+        return out.toByteArray();
+    }
+    
+    /**
+     * Pack file signature.
+     */
+    private static final byte[] MAGIC = { 'W', 'P', 'R', 'P', 'A', 'C', 'K', 1 };
+    /**
+     * Length of Monday date string.
+     */
+    private static final int DATE_LENGTH = 10;
+    /**
+     * Number of blocks per week.
+     */
+    private static final int BLOCKS_COUNT = 3;
+    /**
+     * Size of block entry in directory: offset, compressed and raw size.
+     */
+    private static final int ENTRY_SIZE = 8 + 4 + 4;
+    /**
+     * Directories of opened pack files.
+     */
+    private static final Map<Path, PackFile> openedPacks = new ConcurrentHashMap<>();
+    
+    /**
+     * Pack file path.
+     */
+    private final Path path;
+    /**
+     * Pack file modification time when the directory was read.
+     */
+    private final FileTime modified;
+    /**
+     * Pack directory: Monday date to blocks offsets and sizes.
+     */
+    private final TreeMap<String, long[]> directory = new TreeMap<>();
+}
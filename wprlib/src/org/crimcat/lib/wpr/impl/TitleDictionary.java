@@ -0,0 +1,262 @@
+/*
+    (Java) Weekly Plans and Reports - simple and handy todo planning tool.
+
+    Copyright (C) 2011-2014  Stas Torgashov
+
+    This program is free software: you can redistribute it and/or modify
+    it under the terms of the GNU General Public License as published by
+    the Free Software Foundation, either version 3 of the License, or
+    (at your option) any later version.
+
+    This program is distributed in the hope that it will be useful,
+    but WITHOUT ANY WARRANTY; without even the implied warranty of
+    MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+    GNU General Public License for more details.
+
+    You should have received a copy of the GNU General Public License
+    along with this program.  If not, see <http://www.gnu.org/licenses/>.
+*/
+
+/* File:    TitleDictionary.java
+ * Author:  Stas Torgashov aka Crimson Cat (crimcat@yandex.ru)
+ * Created: 2026, October 19
+ */
+
+package org.crimcat.lib.wpr.impl;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * Dictionary of task titles of one group. Every title is stored once in the
+ * dictionary file as <code>CODE\tTITLE</code> line, todo list records refer
+ * to it by the code. The code is made of title contents (CRC32), so
+ * dictionaries of different copies of the database can be merged by simple
+ * union. A title whose code is taken by another title is not encoded.
+ * The code is also the checksum of the entry: entries whose code does not
+ * match the title are damaged, they are skipped and counted.
+ * The file is append only, it's read incrementally when it grows. Decoded
+ * titles are shared string objects.
+ * @author Stas Torgashov
+ */
+public final class TitleDictionary {
+    
+    /**
+     * Get dictionary of the group directory. Dictionaries are cached.
+     * @param dir group directory
+     * @return dictionary object
+     */
+    public static TitleDictionary forDirectory(Path dir) {
+        Path path = dir.resolve(DatabaseLayout.TITLES_FILE_NAME);
+        return dictionaries.computeIfAbsent(path, TitleDictionary::new);
+    }
+    
+    /**
+     * Get title by its code.
+     * @param code title code
+     * @return title string or null if the code is unknown
+     * @throws IOException 
+     */
+    public synchronized String decode(String code) throws IOException {
+        String title = titles.get(code);
+        if(null == title) {
+            readTail();
+            title = titles.get(code);
+        }
+        return title;
+    }
+    
+    /**
+     * Get code of the title, the title is added to the dictionary if needed.
+     * @param title title string
+     * @return title code or null if the title cannot be encoded
+     * @throws IOException 
+     */
+    public synchronized String encode(String title) throws IOException {
+        String code = codeOf(title);
+        String known = titles.get(code);
+        if(null == known) {
+            add(Collections.singletonList(new String[] { code, title }));
+            known = titles.get(code);
+        }
+        return title.equals(known) ? code : null;
+    }
+    
+    /**
+     * Add entries of another dictionary which this one does not have.
+     * @param other another dictionary
+     * @return list of codes which have different titles in the dictionaries
+     * @throws IOException 
+     */
+    public List<String> merge(TitleDictionary other) throws IOException {
+        List<String[]> entries;
+        synchronized(other) {
+            other.readTail();
+            entries = new ArrayList<>(other.titles.size());
+            for(Map.Entry<String, String> e : other.titles.entrySet()) {
+                entries.add(new String[] { e.getKey(), e.getValue() });
+            }
+        }
+        List<String> conflicts = new ArrayList<>();
+        synchronized(this) {
+            readTail();
+            List<String[]> missing = new ArrayList<>();
+            for(String[] e : entries) {
+                String known = titles.get(e[0]);
+                if(null == known) {
+                    missing.add(e);
+                } else if(!known.equals(e[1])) {
+                    conflicts.add(e[0]);
+                }
+            }
+            if(!missing.isEmpty()) {
+                add(missing);
+            }
+        }
+        return conflicts;
+    }
+    
+    /**
+     * Get number of damaged entries of the dictionary file: the title does
+     * not match its code.
+     * @return number of damaged entries
+     * @throws IOException 
+     */
+    public synchronized int damagedCount() throws IOException {
+        readTail();
+        return damaged;
+    }
+    
+    /**
+     * Get code of the title.
+     * @param title title string
+     * @return code string
+     */
+    private static String codeOf(String title) {
+        CRC32 crc = new CRC32();
+        crc.update(title.getBytes(StandardCharsets.UTF_8));
+        return Long.toHexString(crc.getValue());
+    }
+    
+    /**
+     * Ctor: dictionary stored in the file.
+     * @param path dictionary file path
+     */
+    private TitleDictionary(Path path) {
+        this.path = path;
+    }
+    
+    /**
+     * Append entries to the dictionary file. Entries added by others are
+     * read first, so only really new ones are written.
+     * @param entries list of code and title pairs
+     * @throws IOException 
+     */
+    private void add(List<String[]> entries) throws IOException {
+        Files.createDirectories(path.getParent());
+        try(FileChannel fc = FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            FileLock lock = fc.lock();
+            try {
+                readTail(fc);
+                StringBuilder sb = new StringBuilder();
+                for(String[] e : entries) {
+                    if(!titles.containsKey(e[0])) {
+                        sb.append(e[0]).append('\t').append(e[1]).append('\n');
+                    }
+                }
+                ByteBuffer bb = ByteBuffer.wrap(sb.toString().getBytes(StandardCharsets.UTF_8));
+                long writeAt = fc.size();
+                while(bb.hasRemaining()) {
+                    writeAt += fc.write(bb, writeAt);
+                }
+                readTail(fc);
+            } finally {
+                lock.release();
+            }
+        }
+    }
+    
+    /**
+     * Read entries appended to the file since the last reading.
+     * @throws IOException 
+     */
+    private void readTail() throws IOException {
+        if(Files.exists(path) && (Files.size(path) > loaded)) {
+            try(FileChannel fc = FileChannel.open(path, StandardOpenOption.READ)) {
+                FileLock lock = fc.lock(0, Long.MAX_VALUE, true);
+                try {
+                    readTail(fc);
+                } finally {
+                    lock.release();
+                }
+            }
+        }
+    }
+    
+    /**
+     * Read entries appended to the file since the last reading, the file is
+     * locked by caller. Incomplete last line is left for the next reading.
+     * @param fc file channel
+     * @throws IOException 
+     */
+    private void readTail(FileChannel fc) throws IOException {
+        long size = fc.size();
+        if(size < loaded) {
+            // file was replaced, known entries stay valid as codes are made of titles
+            loaded = 0;
+            damaged = 0;
+        }
+        if(size == loaded) {
+            return;
+        }
+        ByteBuffer bb = ByteBuffer.allocate((int)(size - loaded));
+        long readAt = loaded;
+        while(bb.hasRemaining()) {
+            int n = fc.read(bb, readAt);
+            if(n < 0) {
+                break;
+            }
+            readAt += n;
+        }
+        byte[] data = bb.array();
+        int start = 0;
+        for(int i = 0; i < bb.position(); ++i) {
+            if('\n' == data[i]) {
+                String line = new String(data, start, i - start, StandardCharsets.UTF_8);
+                int tab = line.indexOf('\t');
+                String code = (tab > 0) ? line.substring(0, tab) : null;
+                String title = (tab > 0) ? line.substring(tab + 1) : null;
+                if((null != code) && code.equals(codeOf(title))) {
+                    titles.putIfAbsent(code, title);
+                } else if(i > start) {
+                    ++damaged;
+                }
+                start = i + 1;
+            }
+        }
+        loaded += start;
+    }
+    
+    /**
+     * Cache of dictionaries by file paths.
+     */
+    private static final Map<Path, TitleDictionary> dictionaries = new ConcurrentHashMap<>();
+    
+    private final Path path;
+    private final Map<String, String> titles = new ConcurrentHashMap<>();
+    private long loaded = 0;
+    private int damaged = 0;
+}